@@ -0,0 +1,169 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compiles several Java-- files in a single JVM, writing the OLLIR, Jasmin and class file of each input to the
+ * output folder, together with an aggregated report of the whole batch.
+ * <p>
+ * Files are independent compilation units and are compiled concurrently on a work-stealing pool. Results are always
+ * returned (and reported) in the order of the input files, regardless of the order in which they finish.
+ * <p>
+ * Outputs are named after the input file (and the class file after its class), so two inputs can claim the same
+ * output, e.g. {@code a/Foo.jmm} and {@code b/Foo.jmm}. Outputs are written in the order of the input files and an
+ * input whose outputs were already claimed by an earlier one fails with an error instead of overwriting them.
+ */
+public class BatchCompiler {
+
+    public static final String REPORT_FILENAME = "report.txt";
+
+    private final JmmCompiler compiler;
+    private final File outputDir;
+    private final int parallelism;
+    private long elapsedNanos;
+
+    public BatchCompiler(File outputDir) {
+        this(outputDir, 1);
+    }
+
+    public BatchCompiler(File outputDir, int parallelism) {
+        this(outputDir, parallelism, null);
+    }
+
+    /**
+     * @param cache where compilations are looked up before compiling, or null to compile every file
+     */
+    public BatchCompiler(File outputDir, int parallelism, CompilationCache cache) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1, got " + parallelism);
+        }
+
+        this.compiler = new JmmCompiler(cache);
+        this.outputDir = outputDir;
+        this.parallelism = parallelism;
+    }
+
+    public List<CompilationResult> compile(List<File> inputFiles, Map<String, String> config) {
+        SpecsIo.mkdir(outputDir);
+
+        var start = System.nanoTime();
+        var pool = new ForkJoinPool(parallelism);
+        List<CompilationResult> results = new ArrayList<>();
+        try {
+            List<ForkJoinTask<CompilationResult>> tasks = new ArrayList<>();
+            for (var inputFile : inputFiles) {
+                tasks.add(pool.submit(() -> compileFile(inputFile, config)));
+            }
+
+            // joining in submission order keeps the results, and which input owns each output, deterministic
+            Map<String, File> claimedOutputs = new HashMap<>();
+            for (var task : tasks) {
+                var result = task.join();
+                writeOutputs(result, claimedOutputs);
+                results.add(result);
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        elapsedNanos = System.nanoTime() - start;
+
+        SpecsIo.write(new File(outputDir, REPORT_FILENAME), buildReport(results));
+
+        return results;
+    }
+
+    private CompilationResult compileFile(File inputFile, Map<String, String> config) {
+        // each file gets its own config, with the input file pointing to itself
+        var fileConfig = new HashMap<>(config);
+        fileConfig.put(CompilerConfig.INPUT_FILE, inputFile.getAbsolutePath());
+
+        return compiler.compile(inputFile, Collections.unmodifiableMap(fileConfig));
+    }
+
+    private void writeOutputs(CompilationResult result, Map<String, File> claimedOutputs) {
+        var basename = SpecsIo.removeExtension(result.getInputFile().getName());
+
+        var outputs = new ArrayList<String>();
+        result.getOllirCode().ifPresent(ollir -> outputs.add(basename + ".ollir"));
+        result.getJasminCode().ifPresent(jasmin -> outputs.add(basename + ".j"));
+        if (result.isSuccess()) {
+            outputs.add(result.getClassName().orElse(basename) + ".class");
+        }
+
+        for (var output : outputs) {
+            var owner = claimedOutputs.get(output);
+            if (owner != null) {
+                result.addReport(Report.newError(Stage.OTHER, -1, -1, "Output '" + output
+                        + "' is already written for '" + owner + "', no outputs were written for this file", null));
+                return;
+            }
+        }
+        outputs.forEach(output -> claimedOutputs.put(output, result.getInputFile()));
+
+        result.getOllirCode().ifPresent(ollir -> SpecsIo.write(new File(outputDir, basename + ".ollir"), ollir));
+        result.getJasminCode().ifPresent(jasmin -> SpecsIo.write(new File(outputDir, basename + ".j"), jasmin));
+
+        if (!result.isSuccess()) {
+            return;
+        }
+
+        var classFile = new File(outputDir, result.getClassName().orElse(basename) + ".class");
+        try {
+            Files.write(classFile.toPath(), result.getClassBytes().get());
+        } catch (IOException e) {
+            result.addReport(Report.newError(Stage.GENERATION, -1, -1, "Could not write '" + classFile + "'", e));
+        }
+    }
+
+    public String buildReport(List<CompilationResult> results) {
+        var report = new StringBuilder();
+
+        int failed = 0;
+        for (var result : results) {
+            var status = result.isSuccess() ? "OK" : "FAILED";
+            if (!result.isSuccess()) {
+                failed++;
+            }
+
+            report.append(result.getInputFile().getPath()).append(": ").append(status)
+                    .append(" (").append(toMillis(result.getElapsedNanos())).append(" ms)\n");
+
+            for (var fileReport : result.getReports()) {
+                if (fileReport.getType() == ReportType.LOG) {
+                    continue;
+                }
+
+                report.append("    ").append(fileReport).append("\n");
+            }
+        }
+
+        report.append("\nCompiled ").append(results.size()).append(" file(s): ")
+                .append(results.size() - failed).append(" succeeded, ")
+                .append(failed).append(" failed in ")
+                .append(toMillis(elapsedNanos)).append(" ms using ")
+                .append(parallelism).append(" thread(s)\n");
+
+        compiler.getCache().ifPresent(cache -> report.append(cache.getStatsReport().getMessage()).append("\n"));
+
+        return report.toString();
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+}
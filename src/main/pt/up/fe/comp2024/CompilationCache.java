@@ -0,0 +1,369 @@
+package pt.up.fe.comp2024;
+
+import jasmin.ClassFile;
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+
+/**
+ * On-disk cache of successful compilations, addressed by a hash of the source code and of the options that change
+ * the generated code.
+ * <p>
+ * Each entry is a folder named after its key, holding the class name, the OLLIR and Jasmin code and the class file.
+ * The cache is bounded in size, the least recently used entries are evicted first.
+ * <p>
+ * Keys include a stamp of the build of the compiler, and of the OLLIR and Jasmin libraries it uses. When that stamp
+ * cannot be computed the cache is disabled, since entries of another build could be served otherwise.
+ */
+public class CompilationCache {
+
+    // bump whenever the layout of an entry changes
+    private static final String FORMAT_VERSION = "2";
+
+    private static final String CLASS_NAME_FILE = "class-name";
+    private static final String OLLIR_FILE = "code.ollir";
+    private static final String JASMIN_FILE = "code.j";
+    private static final String CLASS_FILE = "code.class";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File cacheDir;
+    private final long maxBytes;
+    // null when the cache is disabled
+    private final String compilerStamp;
+    private final String disabledReason;
+
+    // entry key to entry size, in access order
+    private final LinkedHashMap<String, Long> entries;
+    private long currentBytes;
+
+    private int hits;
+    private int misses;
+    private int evictions;
+
+    public CompilationCache(File cacheDir, long maxBytes) {
+        this(cacheDir, maxBytes, CompilationCache::getCompilerStamp);
+    }
+
+    /**
+     * @param compilerStamp computes the stamp of the build, the cache is disabled if it throws
+     */
+    CompilationCache(File cacheDir, long maxBytes, Callable<String> compilerStamp) {
+        this.cacheDir = SpecsIo.mkdir(cacheDir);
+        this.maxBytes = maxBytes;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.currentBytes = 0;
+
+        String stamp;
+        String reason;
+        try {
+            stamp = compilerStamp.call();
+            reason = null;
+        } catch (Exception e) {
+            stamp = null;
+            reason = "Compilation cache disabled, could not identify the build of the compiler: " + e.getMessage();
+        }
+        this.compilerStamp = stamp;
+        this.disabledReason = reason;
+
+        if (isEnabled()) {
+            loadEntries();
+        }
+    }
+
+    /**
+     * @return false if the build of the compiler could not be identified, in which case nothing is looked up or stored
+     */
+    public boolean isEnabled() {
+        return compilerStamp != null;
+    }
+
+    /**
+     * @return why the cache is disabled, if it is
+     */
+    public Optional<String> getDisabledReason() {
+        return Optional.ofNullable(disabledReason);
+    }
+
+    private void loadEntries() {
+        var folders = cacheDir.listFiles(File::isDirectory);
+        if (folders == null) {
+            return;
+        }
+
+        // oldest first, so that the access order of the map starts with the least recently used
+        Arrays.sort(folders, Comparator.comparingLong(File::lastModified));
+
+        for (var folder : folders) {
+            // leftovers of an interrupted store
+            if (folder.getName().endsWith(TEMP_SUFFIX) || !new File(folder, CLASS_FILE).isFile()) {
+                SpecsIo.deleteFolder(folder);
+                continue;
+            }
+
+            var size = getSize(folder);
+            entries.put(folder.getName(), size);
+            currentBytes += size;
+        }
+
+        // the limit may have been lowered since the last run
+        for (var evictedKey : evict()) {
+            SpecsIo.deleteFolder(new File(cacheDir, evictedKey));
+        }
+    }
+
+    /**
+     * @param source
+     * @param config
+     * @return the key that identifies the compilation of the given source with the given options
+     */
+    public String getKey(String source, Map<String, String> config) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(("jmm-cache-" + FORMAT_VERSION + "\n" + compilerStamp + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(("optimize=" + CompilerConfig.getOptimize(config) + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(("registerAllocation=" + CompilerConfig.getRegisterAllocation(config) + "\n")
+                    .getBytes(StandardCharsets.UTF_8));
+            digest.update(("classFile=" + CompilerConfig.isClassFileBackend(config) + "\n"
+                    + "emitJasmin=" + CompilerConfig.getEmitJasmin(config) + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(source.getBytes(StandardCharsets.UTF_8));
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+
+    public Optional<CompilationResult> get(String key, File inputFile) {
+        synchronized (this) {
+            // looking the entry up also marks it as the most recently used
+            if (entries.get(key) == null) {
+                misses++;
+                return Optional.empty();
+            }
+        }
+
+        var folder = new File(cacheDir, key);
+        try {
+            var className = SpecsIo.read(new File(folder, CLASS_NAME_FILE));
+            var ollirCode = SpecsIo.read(new File(folder, OLLIR_FILE));
+            // the class file backend only prints Jasmin code when asked for
+            var jasminFile = new File(folder, JASMIN_FILE);
+            var jasminCode = jasminFile.isFile() ? SpecsIo.read(jasminFile) : null;
+            var classBytes = Files.readAllBytes(new File(folder, CLASS_FILE).toPath());
+
+            if (className == null || ollirCode == null) {
+                throw new IOException("Incomplete cache entry " + key);
+            }
+
+            // keep the access order across runs
+            folder.setLastModified(System.currentTimeMillis());
+            synchronized (this) {
+                hits++;
+            }
+
+            var hit = Report.newLog(Stage.OTHER, -1, -1, "Loaded from compilation cache (" + key + ")", null);
+            return Optional.of(new CompilationResult(inputFile, className, ollirCode, jasminCode, classBytes,
+                    List.of(hit), 0));
+        } catch (IOException | RuntimeException e) {
+            // entry was removed, evicted or damaged behind our back, forget it and compile again
+            synchronized (this) {
+                forget(key);
+                misses++;
+            }
+            SpecsIo.deleteFolder(folder);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores a successful compilation, unless it is already stored.
+     * <p>
+     * Only the bookkeeping is done while holding the lock of the cache, the files are written, measured and deleted
+     * outside it, so that concurrent compilations do not wait for each other's disk work.
+     *
+     * @throws UncheckedIOException if the entry could not be written
+     */
+    public void put(String key, CompilationResult result) {
+        if (!result.isSuccess()) {
+            return;
+        }
+
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                return;
+            }
+        }
+
+        var folder = new File(cacheDir, key);
+        // other processes, and other threads of this one, may be storing the same entry in the same cache
+        var tempFolder = new File(cacheDir, key + "." + ProcessHandle.current().pid() + "-"
+                + Thread.currentThread().getId() + TEMP_SUFFIX);
+        try {
+            // unlike SpecsIo, every failure to write is an IOException
+            Files.createDirectories(tempFolder.toPath());
+            Files.writeString(new File(tempFolder, CLASS_NAME_FILE).toPath(), result.getClassName().orElseThrow());
+            Files.writeString(new File(tempFolder, OLLIR_FILE).toPath(), result.getOllirCode().orElseThrow());
+            if (result.getJasminCode().isPresent()) {
+                Files.writeString(new File(tempFolder, JASMIN_FILE).toPath(), result.getJasminCode().get());
+            }
+            Files.write(new File(tempFolder, CLASS_FILE).toPath(), result.getClassBytes().orElseThrow());
+
+            // entries only become visible once complete, another compiler may have stored the same entry meanwhile
+            if (folder.exists()) {
+                SpecsIo.deleteFolder(tempFolder);
+            } else {
+                try {
+                    Files.move(tempFolder.toPath(), folder.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // the other compiler won the race after the check above, which Linux reports as a plain
+                    // FileSystemException rather than a DirectoryNotEmptyException
+                    if (!folder.exists()) {
+                        throw e;
+                    }
+                    SpecsIo.deleteFolder(tempFolder);
+                }
+            }
+        } catch (IOException e) {
+            SpecsIo.deleteFolder(tempFolder);
+            throw new UncheckedIOException("Could not store compilation cache entry " + key, e);
+        }
+
+        var size = getSize(folder);
+
+        List<String> evicted;
+        synchronized (this) {
+            // another thread stored the same entry meanwhile
+            if (entries.containsKey(key)) {
+                return;
+            }
+
+            entries.put(key, size);
+            currentBytes += size;
+            evicted = evict();
+        }
+
+        for (var evictedKey : evicted) {
+            SpecsIo.deleteFolder(new File(cacheDir, evictedKey));
+        }
+    }
+
+    /**
+     * Drops the least recently used entries until the cache fits its limit.
+     *
+     * @return the keys of the dropped entries, whose folders are still to be deleted
+     */
+    private List<String> evict() {
+        var evicted = new ArrayList<String>();
+
+        var iterator = entries.entrySet().iterator();
+        while (currentBytes > maxBytes && iterator.hasNext()) {
+            var eldest = iterator.next();
+            iterator.remove();
+
+            currentBytes -= eldest.getValue();
+            evicted.add(eldest.getKey());
+            evictions++;
+        }
+
+        return evicted;
+    }
+
+    private void forget(String key) {
+        var size = entries.remove(key);
+        if (size != null) {
+            currentBytes -= size;
+        }
+    }
+
+    public synchronized long getCurrentBytes() {
+        return currentBytes;
+    }
+
+    public synchronized Report getStatsReport() {
+        if (!isEnabled()) {
+            return Report.newLog(Stage.OTHER, -1, -1, disabledReason, null);
+        }
+
+        var message = "Compilation cache: " + hits + " hit(s), " + misses + " miss(es), " + evictions
+                + " eviction(s), " + entries.size() + " entries using " + currentBytes + " of " + maxBytes + " bytes";
+
+        return Report.newLog(Stage.OTHER, -1, -1, message, null);
+    }
+
+    private static long getSize(File folder) {
+        long size = 0;
+        for (var file : SpecsIo.getFilesRecursive(folder)) {
+            size += file.length();
+        }
+
+        return size;
+    }
+
+    /**
+     * Entries produced by a different build of the compiler must not be reused. The build is identified by the jars or
+     * folders of classes the compiler and the OLLIR and Jasmin libraries were loaded from, as all of them shape the
+     * generated code.
+     */
+    private static String getCompilerStamp() throws IOException, URISyntaxException {
+        var stamp = new StringBuilder();
+
+        for (var type : List.of(JmmCompiler.class, ClassUnit.class, ClassFile.class)) {
+            var codeSource = type.getProtectionDomain().getCodeSource();
+            if (codeSource == null) {
+                throw new IOException("no location for " + type.getName());
+            }
+
+            stamp.append(getCompilerStamp(new File(codeSource.getLocation().toURI()))).append("\n");
+        }
+
+        return stamp.toString();
+    }
+
+    /**
+     * @return a hash of the contents of a jar, or of the path, size and modification time of each file under a folder,
+     * since rebuilding the classes in a folder does not change the folder itself
+     */
+    static String getCompilerStamp(File location) throws IOException {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+
+            if (location.isDirectory()) {
+                var root = location.toPath();
+                try (var files = Files.walk(root)) {
+                    for (var file : files.filter(Files::isRegularFile).sorted().toList()) {
+                        var stamp = root.relativize(file) + ":" + Files.size(file) + ":"
+                                + Files.getLastModifiedTime(file).toMillis() + "\n";
+                        digest.update(stamp.getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+            } else {
+                digest.update(Files.readAllBytes(location.toPath()));
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Outcome of compiling a single Java-- source file through the whole pipeline.
+ * <p>
+ * The OLLIR and Jasmin code, and the assembled class, are null when compilation stopped before the corresponding
+ * stage.
+ */
+public class CompilationResult {
+
+    private final File inputFile;
+    private final String className;
+    private final String ollirCode;
+    private final String jasminCode;
+    private final byte[] classBytes;
+    private final List<Report> reports;
+    private final long elapsedNanos;
+
+    public CompilationResult(File inputFile, String className, String ollirCode, String jasminCode,
+                             byte[] classBytes, List<Report> reports, long elapsedNanos) {
+        this.inputFile = inputFile;
+        this.className = className;
+        this.ollirCode = ollirCode;
+        this.jasminCode = jasminCode;
+        this.classBytes = classBytes;
+        this.reports = new ArrayList<>(reports);
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public File getInputFile() {
+        return inputFile;
+    }
+
+    public Optional<String> getClassName() {
+        return Optional.ofNullable(className);
+    }
+
+    public Optional<String> getOllirCode() {
+        return Optional.ofNullable(ollirCode);
+    }
+
+    public Optional<String> getJasminCode() {
+        return Optional.ofNullable(jasminCode);
+    }
+
+    public Optional<byte[]> getClassBytes() {
+        return Optional.ofNullable(classBytes);
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public void addReport(Report report) {
+        reports.add(report);
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public boolean isSuccess() {
+        return classBytes != null && !ReportUtils.anyError(reports);
+    }
+}
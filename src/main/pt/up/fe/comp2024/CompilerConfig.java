@@ -1,15 +1,37 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.utilities.StringLines;
+
 import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 public class CompilerConfig {
 
-    private static final String INPUT_FILE = "inputFile";
+    static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String BATCH = "batch";
+    private static final String OUTPUT_DIR = "outputDir";
+    private static final String PARALLELISM = "parallelism";
+    private static final String SERVER = "server";
+    private static final String CACHE_DIR = "cacheDir";
+    private static final String CACHE_SIZE = "cacheSize";
+    private static final String BACKEND = "backend";
+    private static final String EMIT_JASMIN = "emitJasmin";
+    private static final String ALL_ERRORS = "allErrors";
+
+    private static final String DEFAULT_OUTPUT_DIR = "jmm-out";
+    private static final long DEFAULT_CACHE_SIZE_MB = 64;
+    private static final int DEFAULT_MAX_ERRORS = 100;
+
+    private static final String JASMIN_BACKEND = "jasmin";
+    private static final String CLASS_FILE_BACKEND = "classfile";
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,6 +40,15 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("b", CompilerConfig.BATCH);
+        shortToLong.put("d", CompilerConfig.OUTPUT_DIR);
+        shortToLong.put("p", CompilerConfig.PARALLELISM);
+        shortToLong.put("s", CompilerConfig.SERVER);
+        shortToLong.put("c", CompilerConfig.CACHE_DIR);
+        shortToLong.put("m", CompilerConfig.CACHE_SIZE);
+        shortToLong.put("e", CompilerConfig.BACKEND);
+        shortToLong.put("j", CompilerConfig.EMIT_JASMIN);
+        shortToLong.put("a", CompilerConfig.ALL_ERRORS);
     }
 
 
@@ -32,6 +63,187 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    public static boolean isServer(Map<String, String> config) {
+        return config.containsKey(SERVER);
+    }
+
+    /**
+     * @param config
+     * @return the Unix socket the daemon listens on, or empty if requests are read from the standard input
+     */
+    public static Optional<Path> getServerSocket(Map<String, String> config) {
+        var server = config.get(SERVER);
+
+        if (server == null || server.equals("true")) {
+            return Optional.empty();
+        }
+
+        return Optional.of(Path.of(server));
+    }
+
+    /**
+     * @param config
+     * @return the options given to the daemon, used as defaults for each of its requests
+     */
+    public static Map<String, String> getServerDefaults(Map<String, String> config) {
+        var defaults = new HashMap<>(config);
+        defaults.remove(SERVER);
+
+        return defaults;
+    }
+
+    public static boolean isBatch(Map<String, String> config) {
+        return config.containsKey(BATCH);
+    }
+
+    /**
+     * The batch input is either a folder, in which case all .jmm files found inside it are compiled, or a text file
+     * listing one source file per line.
+     *
+     * @param config
+     * @return the files to compile in batch mode, in a deterministic order
+     */
+    public static List<File> getBatchInputs(Map<String, String> config) {
+        var batch = config.get(BATCH);
+
+        if (batch == null) {
+            return List.of();
+        }
+
+        var batchFile = new File(batch);
+
+        if (batchFile.isDirectory()) {
+            var files = new ArrayList<>(SpecsIo.getFilesRecursive(batchFile, "jmm"));
+            files.sort(null);
+            return files;
+        }
+
+        var files = new ArrayList<File>();
+        for (var line : StringLines.getLines(SpecsIo.read(batchFile))) {
+            line = line.strip();
+
+            // skip empty lines and comments
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            var file = new File(line);
+            if (!file.isFile()) {
+                throw new RuntimeException("Could not find input file '" + line + "' listed in '" + batchFile + "'");
+            }
+
+            files.add(file);
+        }
+
+        return files;
+    }
+
+    public static File getOutputDir(Map<String, String> config) {
+        return new File(config.getOrDefault(OUTPUT_DIR, DEFAULT_OUTPUT_DIR));
+    }
+
+    /**
+     * @param config
+     * @return the number of files compiled concurrently in batch mode, defaults to the number of available processors
+     */
+    public static int getParallelism(Map<String, String> config) {
+        var parallelism = config.get(PARALLELISM);
+
+        if (parallelism == null) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        var value = Integer.parseInt(parallelism);
+        if (value < 1) {
+            throw new RuntimeException("Option '-p' expects a positive number, got '" + parallelism + "'");
+        }
+
+        return value;
+    }
+
+    public static Optional<File> getCacheDir(Map<String, String> config) {
+        var cacheDir = config.get(CACHE_DIR);
+
+        if (cacheDir == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(cacheDir));
+    }
+
+    /**
+     * @param config
+     * @return the maximum size of the compilation cache in bytes, given in megabytes with '-m'
+     */
+    public static long getCacheSize(Map<String, String> config) {
+        var megabytes = Long.parseLong(config.getOrDefault(CACHE_SIZE, String.valueOf(DEFAULT_CACHE_SIZE_MB)));
+
+        if (megabytes < 0) {
+            throw new RuntimeException("Option '-m' expects a non-negative number, got '" + megabytes + "'");
+        }
+
+        return megabytes * 1024 * 1024;
+    }
+
+    /**
+     * @param config
+     * @return the compilation cache given with '-c', if any
+     */
+    public static Optional<CompilationCache> getCache(Map<String, String> config) {
+        return getCacheDir(config).map(cacheDir -> new CompilationCache(cacheDir, getCacheSize(config)));
+    }
+
+    /**
+     * @param config
+     * @return true if classes are written directly from OLLIR, instead of assembling the Jasmin code
+     */
+    public static boolean isClassFileBackend(Map<String, String> config) {
+        var backend = config.getOrDefault(BACKEND, JASMIN_BACKEND);
+
+        return switch (backend) {
+            case JASMIN_BACKEND -> false;
+            case CLASS_FILE_BACKEND -> true;
+            default -> throw new RuntimeException("Option '-e' expects '" + JASMIN_BACKEND + "' or '"
+                    + CLASS_FILE_BACKEND + "', got '" + backend + "'");
+        };
+    }
+
+    /**
+     * @param config
+     * @return true if the class file backend should also print the Jasmin code of the class
+     */
+    public static boolean getEmitJasmin(Map<String, String> config) {
+        return Boolean.parseBoolean(config.getOrDefault(EMIT_JASMIN, "false"));
+    }
+
+    /**
+     * @param config
+     * @return true if semantic analysis runs every pass and reports all errors, instead of stopping at the first pass
+     * that reports any
+     */
+    public static boolean isCollectAllErrors(Map<String, String> config) {
+        return config.containsKey(ALL_ERRORS);
+    }
+
+    /**
+     * @param config
+     * @return the most errors reported when collecting all of them, given with '-a=N'
+     */
+    public static int getMaxErrors(Map<String, String> config) {
+        var allErrors = config.get(ALL_ERRORS);
+
+        if (allErrors == null || allErrors.equals("true")) {
+            return DEFAULT_MAX_ERRORS;
+        }
+
+        var value = Integer.parseInt(allErrors);
+        if (value < 1) {
+            throw new RuntimeException("Option '-a' expects a positive number, got '" + allErrors + "'");
+        }
+
+        return value;
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
@@ -64,7 +276,12 @@ public class CompilerConfig {
     public static Map<String, String> parseArgs(String[] args) {
 
         // default options for config
-        var config = getDefault();
+        return parseArgs(args, getDefault());
+    }
+
+    public static Map<String, String> parseArgs(String[] args, Map<String, String> defaults) {
+
+        var config = new HashMap<>(defaults);
 
         for (String arg : args) {
 
@@ -89,9 +306,35 @@ public class CompilerConfig {
             config.put(getLongOpt(shortOption), value);
         }
 
+        if (isServer(config)) {
+            getOptimize(config);
+            getRegisterAllocation(config);
+            getCacheSize(config);
+            isClassFileBackend(config);
+            getMaxErrors(config);
+
+            return config;
+        }
+
+        if (isBatch(config)) {
+            var batchFile = new File(config.get(BATCH));
+            if (!batchFile.exists()) {
+                throw new RuntimeException("Could not find batch input '" + batchFile + "'");
+            }
+
+            getOptimize(config);
+            getRegisterAllocation(config);
+            getParallelism(config);
+            getCacheSize(config);
+            isClassFileBackend(config);
+            getMaxErrors(config);
+
+            return config;
+        }
+
         if (!config.containsKey(INPUT_FILE)) {
 
-            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
+            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>', or a folder or file list, use '-b=<PATH>'");
         }
 
         // make sure we save the absolute path of the input file
@@ -106,6 +349,9 @@ public class CompilerConfig {
         // Verify if values are valid
         getOptimize(config);
         getRegisterAllocation(config);
+        getCacheSize(config);
+        isClassFileBackend(config);
+        getMaxErrors(config);
 
         return config;
     }
@@ -0,0 +1,210 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Long-running compiler that keeps the JVM, and the already loaded and JIT-compiled stages, alive between requests.
+ * <p>
+ * Each request is a single line with the same options accepted by the launcher (e.g. "-i=Foo.jmm -o -r=2"). The
+ * answer has one section per output, each starting with a "=== name" line, and always ends with "=== end ok" or
+ * "=== end failed". A request line with "ping" answers without compiling, and "shutdown" stops the daemon.
+ * <p>
+ * Options are separated by whitespace, and a backslash makes the character after it part of the option, so paths with
+ * spaces are sent as e.g. "-i=My\ Files/Foo.jmm". Only single files are compiled: batch ('-b') and daemon ('-s')
+ * requests are rejected.
+ * <p>
+ * Requests are read either from the standard input, answering on the standard output, or from a Unix domain socket,
+ * where each connection carries a single request.
+ */
+public class CompilerDaemon {
+
+    public static final String PING = "ping";
+    public static final String SHUTDOWN = "shutdown";
+
+    private static final String SECTION = "=== ";
+
+    private final JmmCompiler compiler;
+    private final Map<String, String> defaults;
+
+    public CompilerDaemon(Map<String, String> defaults) {
+        this.compiler = new JmmCompiler(CompilerConfig.getCache(defaults).orElse(null));
+        this.defaults = defaults;
+    }
+
+    /**
+     * Serves requests until the end of the input or a shutdown request.
+     */
+    public void serve(BufferedReader in, Writer out) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (!handle(line, out)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serves requests sent to the given socket path until a shutdown request.
+     */
+    public void serve(Path socketPath) throws IOException {
+        // a previous daemon that was killed may have left the socket file behind
+        Files.deleteIfExists(socketPath);
+
+        try (var server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+
+            boolean running = true;
+            while (running) {
+                try (var channel = server.accept();
+                     var in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel),
+                             StandardCharsets.UTF_8));
+                     var out = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8))) {
+
+                    var line = in.readLine();
+                    if (line != null) {
+                        running = handle(line, out);
+                    }
+                }
+            }
+        } finally {
+            Files.deleteIfExists(socketPath);
+        }
+    }
+
+    /**
+     * @return false if the request asked the daemon to stop
+     */
+    private boolean handle(String request, Writer out) throws IOException {
+        request = request.strip();
+
+        if (request.isEmpty()) {
+            return true;
+        }
+
+        if (request.equals(SHUTDOWN)) {
+            out.write(SECTION + "end ok\n");
+            out.flush();
+            return false;
+        }
+
+        if (request.equals(PING)) {
+            out.write("pong\n" + SECTION + "end ok\n");
+            out.flush();
+            return true;
+        }
+
+        out.write(compile(request));
+        out.flush();
+
+        return true;
+    }
+
+    private String compile(String request) {
+        var args = splitArgs(request);
+        // checked before parsing, which would look for the batch input from the folder of the daemon
+        for (var arg : args) {
+            if (arg.startsWith("-b") || arg.startsWith("-s")) {
+                return invalidRequest("'-b' and '-s' are not supported by the daemon, run them with a new JVM");
+            }
+        }
+
+        Map<String, String> config;
+        try {
+            config = CompilerConfig.parseArgs(args, defaults);
+        } catch (RuntimeException e) {
+            return invalidRequest(e.getMessage());
+        }
+
+        var inputFile = CompilerConfig.getInputFile(config);
+        if (inputFile.isEmpty()) {
+            return invalidRequest("expected an input file, use '-i=<PATH_TO_FILE>'");
+        }
+
+        var result = compiler.compile(inputFile.get(), config);
+
+        return buildResponse(result.getOllirCode().orElse(null), result.getJasminCode().orElse(null),
+                result.getReports(), result.isSuccess());
+    }
+
+    /**
+     * @return the options of the request, separated by whitespace that is not escaped with a backslash
+     */
+    static String[] splitArgs(String request) {
+        var args = new ArrayList<String>();
+        var arg = new StringBuilder();
+
+        for (int i = 0; i < request.length(); i++) {
+            var c = request.charAt(i);
+
+            if (c == '\\' && i + 1 < request.length()) {
+                arg.append(request.charAt(++i));
+            } else if (Character.isWhitespace(c)) {
+                if (!arg.isEmpty()) {
+                    args.add(arg.toString());
+                    arg.setLength(0);
+                }
+            } else {
+                arg.append(c);
+            }
+        }
+
+        if (!arg.isEmpty()) {
+            args.add(arg.toString());
+        }
+
+        return args.toArray(new String[0]);
+    }
+
+    private static String invalidRequest(String message) {
+        var error = Report.newError(Stage.OTHER, -1, -1, "Invalid request: " + message, null);
+        return buildResponse(null, null, List.of(error), false);
+    }
+
+    private static String buildResponse(String ollirCode, String jasminCode, List<Report> reports, boolean success) {
+        var response = new StringBuilder();
+
+        if (ollirCode != null) {
+            appendSection(response, "ollir", ollirCode);
+        }
+
+        if (jasminCode != null) {
+            appendSection(response, "jasmin", jasminCode);
+        }
+
+        var reportLines = new StringBuilder();
+        for (var report : reports) {
+            reportLines.append(report).append("\n");
+        }
+        appendSection(response, "reports", reportLines.toString());
+
+        response.append(SECTION).append("end ").append(success ? "ok" : "failed").append("\n");
+
+        return response.toString();
+    }
+
+    private static void appendSection(StringBuilder response, String name, String content) {
+        response.append(SECTION).append(name).append("\n");
+        response.append(content);
+
+        if (!content.isEmpty() && !content.endsWith("\n")) {
+            response.append("\n");
+        }
+    }
+}
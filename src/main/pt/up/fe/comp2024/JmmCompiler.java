@@ -0,0 +1,177 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.ClassFileBackend;
+import pt.up.fe.comp2024.backend.ClassFileResult;
+import pt.up.fe.comp2024.backend.JasminAssembler;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.OllirPrinter;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+import pt.up.fe.specs.util.SpecsSystem;
+
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Runs the parser, semantic analysis, optimization and backend stages over a single source file, and assembles the
+ * resulting Jasmin code into a class file. With the class file backend ('-e=classfile'), the class is written directly
+ * from OLLIR, and Jasmin code is only printed when asked for with '-j'.
+ * <p>
+ * Compilation stops at the first stage that reports an error. Unexpected exceptions are turned into error reports,
+ * so that a failing file never aborts the compilation of the others.
+ * <p>
+ * Every call works on its own stage results, so a single instance can compile several files concurrently.
+ * <p>
+ * When a {@link CompilationCache} is given, a source that was already compiled with the same options is loaded from
+ * the cache and none of the stages run. Failing to store a compilation in the cache, or a cache that is disabled, is
+ * only a warning.
+ */
+public class JmmCompiler {
+
+    private final JmmParserImpl parser;
+    private final JmmOptimizationImpl optimization;
+    private final JasminBackendImpl backend;
+    private final ClassFileBackend classFileBackend;
+    private final CompilationCache cache;
+
+    public JmmCompiler() {
+        this(null);
+    }
+
+    /**
+     * @param cache where successful compilations are stored and looked up, or null to always compile
+     */
+    public JmmCompiler(CompilationCache cache) {
+        this.parser = new JmmParserImpl();
+        this.optimization = new JmmOptimizationImpl();
+        this.backend = new JasminBackendImpl();
+        this.classFileBackend = new ClassFileBackend();
+        this.cache = cache;
+
+        // AntlrParser invokes the starting rule through SpecsSystem, which caches methods in a plain HashMap;
+        // resolving it here means concurrent parses only ever read from that cache
+        SpecsSystem.getMethod(JavammParser.class, parser.getDefaultRule());
+    }
+
+    public Optional<CompilationCache> getCache() {
+        return Optional.ofNullable(cache);
+    }
+
+    public CompilationResult compile(File inputFile, Map<String, String> config) {
+        var start = System.nanoTime();
+
+        String code = SpecsIo.read(inputFile);
+        if (code == null) {
+            var error = Report.newError(Stage.OTHER, -1, -1, "Could not read input file '" + inputFile + "'", null);
+            return new CompilationResult(inputFile, null, null, null, null, List.of(error), System.nanoTime() - start);
+        }
+
+        if (cache == null) {
+            return compile(inputFile, code, config, start);
+        }
+
+        if (!cache.isEnabled()) {
+            var result = compile(inputFile, code, config, start);
+            result.addReport(Report.newWarn(Stage.OTHER, -1, -1, cache.getDisabledReason().orElseThrow(), null));
+            return result;
+        }
+
+        var key = cache.getKey(code, config);
+        var cached = cache.get(key, inputFile);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        var result = compile(inputFile, code, config, start);
+        try {
+            cache.put(key, result);
+        } catch (UncheckedIOException e) {
+            // the class was compiled, only the next compilation of the same source will not be faster
+            result.addReport(Report.newWarn(Stage.OTHER, -1, -1, e.getMessage(), e));
+        }
+
+        return result;
+    }
+
+    private CompilationResult compile(File inputFile, String code, Map<String, String> config, long start) {
+        String className = null;
+        String ollirCode = null;
+        String jasminCode = null;
+        byte[] classBytes = null;
+        List<Report> reports = new ArrayList<>();
+
+        try {
+            // Parsing stage
+            JmmParserResult parserResult = parser.parse(code, config);
+            reports = parserResult.getReports();
+
+            if (!ReportUtils.anyError(reports)) {
+                // Semantic Analysis stage, analysis passes keep per-traversal state in fields,
+                // so every unit gets its own pass list
+                JmmSemanticsResult semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+                reports = semanticsResult.getReports();
+
+                if (!ReportUtils.anyError(reports)) {
+                    className = semanticsResult.getSymbolTable().getClassName();
+
+                    // Optimization stage
+                    semanticsResult = optimization.optimize(semanticsResult);
+                    OllirResult ollirResult = optimization.toOllir(semanticsResult);
+                    ollirResult = optimization.optimize(ollirResult);
+                    reports = ollirResult.getReports();
+                    // the OLLIR passes change the class in place, the code of the result is what they started from
+                    ollirCode = CompilerConfig.getOptimize(config) ?
+                            OllirPrinter.print(ollirResult.getOllirClass()) :
+                            ollirResult.getOllirCode();
+
+                    if (!ReportUtils.anyError(reports)) {
+                        // Code generation stage
+                        if (CompilerConfig.isClassFileBackend(config)) {
+                            var classFileResult = (ClassFileResult) classFileBackend.toJasmin(ollirResult);
+                            reports = classFileResult.getReports();
+                            classBytes = classFileResult.getClassBytes();
+
+                            // the listing is only printed when asked for
+                            if (CompilerConfig.getEmitJasmin(config)) {
+                                jasminCode = classFileResult.getJasminCode();
+                            }
+                        } else {
+                            JasminResult jasminResult = backend.toJasmin(ollirResult);
+                            reports = jasminResult.getReports();
+                            jasminCode = jasminResult.getJasminCode();
+
+                            if (!ReportUtils.anyError(reports)) {
+                                try {
+                                    classBytes = JasminAssembler.assemble(jasminResult).getBytes();
+                                } catch (RuntimeException e) {
+                                    reports = new ArrayList<>(reports);
+                                    reports.add(Report.newError(Stage.GENERATION, -1, -1,
+                                            "Could not assemble the generated Jasmin code", e));
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+        } catch (Exception e) {
+            reports = new ArrayList<>(reports);
+            reports.add(Report.newError(Stage.OTHER, -1, -1, "Exception while compiling '" + inputFile + "'", e));
+        }
+
+        return new CompilationResult(inputFile, className, ollirCode, jasminCode, classBytes, reports,
+                System.nanoTime() - start);
+    }
+}
@@ -1,17 +1,12 @@
 package pt.up.fe.comp2024;
 
 import pt.up.fe.comp.TestUtils;
-import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
-import pt.up.fe.comp.jmm.jasmin.JasminResult;
-import pt.up.fe.comp.jmm.ollir.OllirResult;
-import pt.up.fe.comp.jmm.parser.JmmParserResult;
-import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
-import pt.up.fe.comp2024.backend.JasminBackendImpl;
-import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
-import pt.up.fe.comp2024.parser.JmmParserImpl;
-import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
 import java.util.Map;
 
 public class Launcher {
@@ -21,41 +16,66 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
+        if (CompilerConfig.isServer(config)) {
+            serve(config);
+            return;
+        }
+
+        if (CompilerConfig.isBatch(config)) {
+            compileBatch(config);
+            return;
+        }
+
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
             throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
         }
-        String code = SpecsIo.read(inputFile);
 
-        // Parsing stage
-        JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
-        TestUtils.noErrors(parserResult.getReports());
+        // Parsing, semantic analysis, optimization and code generation stages,
+        // skipped altogether when the cache already has this source
+        var compiler = new JmmCompiler(CompilerConfig.getCache(config).orElse(null));
+        CompilationResult result = compiler.compile(inputFile, config);
+        TestUtils.noErrors(result.getReports());
 
-        // Print AST
-        //System.out.println(parserResult.getRootNode().toTree());
+        // Print OLLIR code
+        System.out.println(result.getOllirCode().orElseThrow());
 
-        // Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
-        JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
-        TestUtils.noErrors(semanticsResult.getReports());
+        // Print Jasmin code
+        //System.out.println(result.getJasminCode().orElseThrow());
+    }
 
+    private static void serve(Map<String, String> config) {
+        var daemon = new CompilerDaemon(CompilerConfig.getServerDefaults(config));
+        var socket = CompilerConfig.getServerSocket(config);
 
-        // Optimization stage
-        JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
-        TestUtils.noErrors(ollirResult.getReports());
+        try {
+            if (socket.isPresent()) {
+                daemon.serve(socket.get());
+            } else {
+                daemon.serve(new BufferedReader(new InputStreamReader(System.in)), new PrintWriter(System.out));
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Compiler daemon stopped unexpectedly", e);
+        }
+    }
 
-        // Print OLLIR code
-        System.out.println(ollirResult.getOllirCode());
+    private static void compileBatch(Map<String, String> config) {
+        var inputFiles = CompilerConfig.getBatchInputs(config);
+        var outputDir = CompilerConfig.getOutputDir(config);
 
-        // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
-        TestUtils.noErrors(jasminResult.getReports());
+        var parallelism = CompilerConfig.getParallelism(config);
 
-        // Print Jasmin code
-        //System.out.println(jasminResult.getJasminCode());
+        var cache = CompilerConfig.getCache(config).orElse(null);
+
+        var batchCompiler = new BatchCompiler(outputDir, parallelism, cache);
+        var results = batchCompiler.compile(inputFiles, config);
+
+        // Print aggregated report
+        System.out.println(batchCompiler.buildReport(results));
+
+        if (results.stream().anyMatch(result -> !result.isSuccess())) {
+            System.exit(1);
+        }
     }
 
 }
@@ -6,7 +6,11 @@ import pt.up.fe.comp.jmm.ast.PreorderJmmVisitor;
 import pt.up.fe.comp.jmm.report.Report;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.function.BiFunction;
 
 /**
  *
@@ -15,11 +19,24 @@ public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Vo
 
     private List<Report> reports;
 
+    // filled by buildVisitor, which runs in the super constructor before field initializers, so it has none
+    private Set<String> visitedKinds;
+
     public AnalysisVisitor() {
         reports = new ArrayList<>();
         setDefaultValue(() -> null);
     }
 
+    @Override
+    public void addVisit(String kind, BiFunction<JmmNode, SymbolTable, Void> method) {
+        if (visitedKinds == null) {
+            visitedKinds = new HashSet<>();
+        }
+        visitedKinds.add(kind);
+
+        super.addVisit(kind, method);
+    }
+
     protected void addReport(Report report) {
         reports.add(report);
     }
@@ -28,6 +45,19 @@ public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Vo
         return reports;
     }
 
+    /**
+     * @return the kinds of the nodes this pass has a visit for
+     */
+    public Set<String> getVisitedKinds() {
+        return visitedKinds == null ? Collections.emptySet() : Collections.unmodifiableSet(visitedKinds);
+    }
+
+    /**
+     * Visits only the given node, without its children, for a driver that does the traversal itself.
+     */
+    public void visitNode(JmmNode node, SymbolTable table) {
+        getVisit(node).apply(node, table);
+    }
 
     @Override
     public List<Report> analyze(JmmNode root, SymbolTable table) {
@@ -0,0 +1,171 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * Runs several analysis passes in a single preorder traversal of the AST.
+ * <p>
+ * Each node is given, in the order of the passes, to the passes that have a visit for its kind or one of its
+ * supertypes, so each pass sees the nodes in the same order as in a traversal of its own. A pass that throws is not
+ * given any more nodes. Passes that are not {@link AnalysisVisitor}s do their own traversal after the fused one.
+ * <p>
+ * The traversal can also be limited to the class without its methods, or to a single method, so that
+ * {@link ParallelAnalysis} can analyse each part with its own instances of the passes.
+ */
+public class FusedAnalysis {
+
+    /**
+     * The reports of a pass, or the exception that stopped it, in which case its reports are incomplete.
+     */
+    public record PassResult(AnalysisPass pass, List<Report> reports, Exception exception) {
+
+        public boolean failed() {
+            return exception != null;
+        }
+    }
+
+    private final List<AnalysisPass> passes;
+    private final List<AnalysisVisitor> visitors;
+    private final Map<String, int[]> visitorsByKind;
+    private final Map<AnalysisVisitor, Exception> exceptions;
+
+    public FusedAnalysis(List<AnalysisPass> passes) {
+        this(passes, new HashMap<>());
+    }
+
+    /**
+     * @param visitorsByKind the positions of the visitors for each node kind, which analyses of the same passes, in
+     *                       the same order, can share
+     */
+    FusedAnalysis(List<AnalysisPass> passes, Map<String, int[]> visitorsByKind) {
+        this.passes = passes;
+        this.visitors = passes.stream()
+                .filter(AnalysisVisitor.class::isInstance)
+                .map(AnalysisVisitor.class::cast)
+                .toList();
+        this.visitorsByKind = visitorsByKind;
+        this.exceptions = new HashMap<>();
+    }
+
+    /**
+     * @return the result of each pass, in the order of the passes
+     */
+    public List<PassResult> run(JmmNode root, SymbolTable table) {
+        if (!visitors.isEmpty()) {
+            visit(root, table, false);
+        }
+
+        return getResults(root, table, true);
+    }
+
+    /**
+     * Analyses the nodes outside the methods, which come before them in a traversal of the whole tree.
+     *
+     * @return the result of each pass, in the order of the passes
+     */
+    public List<PassResult> runClass(JmmNode root, SymbolTable table) {
+        if (!visitors.isEmpty()) {
+            visit(root, table, true);
+        }
+
+        return getResults(root, table, true);
+    }
+
+    /**
+     * Analyses a single method. Its ancestors are visited first, as in a traversal of the whole tree, so that the
+     * passes know the class they are in, but the reports of those visits are dropped. The root is left out: its
+     * visits check the whole program, which the class part already does, and would cost as much for each method.
+     *
+     * @return the result of each pass, in the order of the passes
+     */
+    public List<PassResult> runMethod(JmmNode method, SymbolTable table) {
+        var ancestors = new ArrayList<JmmNode>();
+        for (var node = method.getParent(); node != null && node.getParent() != null; node = node.getParent()) {
+            ancestors.add(0, node);
+        }
+
+        for (var ancestor : ancestors) {
+            visitNode(ancestor, table);
+        }
+        visitors.forEach(visitor -> visitor.getReports().clear());
+
+        visit(method, table, false);
+
+        return getResults(method, table, false);
+    }
+
+    /**
+     * @param analyzeOthers whether the passes that are not visitors run, which they do on the whole tree
+     */
+    private List<PassResult> getResults(JmmNode root, SymbolTable table, boolean analyzeOthers) {
+        var results = new ArrayList<PassResult>();
+        for (var pass : passes) {
+            if (pass instanceof AnalysisVisitor visitor) {
+                results.add(new PassResult(pass, visitor.getReports(), exceptions.get(visitor)));
+                continue;
+            }
+
+            if (!analyzeOthers) {
+                results.add(new PassResult(pass, Collections.emptyList(), null));
+                continue;
+            }
+
+            try {
+                results.add(new PassResult(pass, pass.analyze(root, table), null));
+            } catch (Exception e) {
+                results.add(new PassResult(pass, Collections.emptyList(), e));
+            }
+        }
+
+        return results;
+    }
+
+    private void visit(JmmNode node, SymbolTable table, boolean skipMethods) {
+        if (skipMethods && Kind.METHOD_DECL.check(node)) {
+            return;
+        }
+
+        visitNode(node, table);
+
+        for (var child : node.getChildren()) {
+            visit(child, table, skipMethods);
+        }
+    }
+
+    private void visitNode(JmmNode node, SymbolTable table) {
+        for (var position : getVisitors(node)) {
+            var visitor = visitors.get(position);
+            if (exceptions.containsKey(visitor)) {
+                continue;
+            }
+
+            try {
+                visitor.visitNode(node, table);
+            } catch (Exception e) {
+                exceptions.put(visitor, e);
+            }
+        }
+    }
+
+    /**
+     * @return the positions of the visitors with a visit for the kind of the node, computed once per kind
+     */
+    private int[] getVisitors(JmmNode node) {
+        return visitorsByKind.computeIfAbsent(node.getKind(), kind -> {
+            var hierarchy = node.getHierarchy();
+            return IntStream.range(0, visitors.size())
+                    .filter(i -> hierarchy.stream().anyMatch(visitors.get(i).getVisitedKinds()::contains))
+                    .toArray();
+        });
+    }
+}
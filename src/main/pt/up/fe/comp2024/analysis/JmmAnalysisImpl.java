@@ -6,8 +6,11 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
 import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.comp2024.analysis.passes.*;
+import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
 
 import java.util.ArrayList;
@@ -16,12 +19,11 @@ import java.util.List;
 public class JmmAnalysisImpl implements JmmAnalysis {
 
 
-    private final List<AnalysisPass> analysisPasses;
-
-    public JmmAnalysisImpl() {
-
-        this.analysisPasses = List.of(new UndeclaredVariable(), new UndeclaredMethod(), new ClassNotImported(), new DuplicatedParam(), new MainTest(), new WrongFields(), new ArrayLength(), new ArrayInitWrong1(), new varArgsSemantic(), new IncompatibleArguments(), new IncompatibleReturn(), new WrongWhileCondition(), new WrongIfCondition(), new WrongAssign(), new ArrayInitWrong(), new WrongArrayAcess(), new ArrayArithmeticCheck());
-
+    /**
+     * @return new instances of the analysis passes, in the order they report
+     */
+    static List<AnalysisPass> createPasses() {
+        return List.of(new UndeclaredVariable(), new UndeclaredMethod(), new ClassNotImported(), new DuplicatedParam(), new MainTest(), new WrongFields(), new ArrayLength(), new ArrayInitWrong1(), new varArgsSemantic(), new IncompatibleArguments(), new IncompatibleReturn(), new WrongWhileCondition(), new WrongIfCondition(), new WrongAssign(), new ArrayInitWrong(), new WrongArrayAcess(), new ArrayArithmeticCheck());
     }
 
     @Override
@@ -31,26 +33,78 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
 
-        List<Report> reports = new ArrayList<>();
+        // Type the expressions once, before the tasks below only read the tree
+        TypeUtils.annotateTypes(rootNode, table);
+
+        // Visit all nodes in the AST, one method per task
+        var results = new ParallelAnalysis(JmmAnalysisImpl::createPasses).run(rootNode, table);
+
+        var config = parserResult.getConfig();
+        List<Report> reports = CompilerConfig.isCollectAllErrors(config) ?
+                collectAll(results, CompilerConfig.getMaxErrors(config)) : collectFirst(results);
 
+        return new JmmSemanticsResult(parserResult, table, reports);
+    }
+
+    /**
+     * @return the reports up to the first pass that reported anything
+     */
+    private static List<Report> collectFirst(List<FusedAnalysis.PassResult> results) {
+        List<Report> reports = new ArrayList<>();
 
-        // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
+        for (var result : results) {
             if (!reports.isEmpty()) break;
-            try {
-                var passReports = analysisPass.analyze(rootNode, table);
-                reports.addAll(passReports);
-            } catch (Exception e) {
-                reports.add(Report.newError(Stage.SEMANTIC,
-                        -1,
-                        -1,
-                        "Problem while executing analysis pass '" + analysisPass.getClass() + "'",
-                        e)
-                );
+            if (result.failed()) {
+                reports.add(newPassError(result));
+                continue;
             }
 
+            reports.addAll(result.reports());
         }
 
-        return new JmmSemanticsResult(parserResult, table, reports);
+        return reports;
+    }
+
+    /**
+     * @return the reports of every pass, with an error for each pass that threw after the reports it made before, up to
+     * the given number of errors
+     */
+    private static List<Report> collectAll(List<FusedAnalysis.PassResult> results, int maxErrors) {
+        List<Report> reports = new ArrayList<>();
+        var errors = 0;
+        var skipped = 0;
+
+        for (var result : results) {
+            var passReports = new ArrayList<>(result.reports());
+            if (result.failed()) {
+                passReports.add(newPassError(result));
+            }
+
+            for (var report : passReports) {
+                if (report.getType() != ReportType.ERROR) {
+                    reports.add(report);
+                } else if (errors < maxErrors) {
+                    reports.add(report);
+                    errors++;
+                } else {
+                    skipped++;
+                }
+            }
+        }
+
+        if (skipped > 0) {
+            reports.add(Report.newLog(Stage.SEMANTIC, -1, -1,
+                    "Stopped after " + maxErrors + " errors, " + skipped + " more not reported", null));
+        }
+
+        return reports;
+    }
+
+    private static Report newPassError(FusedAnalysis.PassResult result) {
+        return Report.newError(Stage.SEMANTIC,
+                -1,
+                -1,
+                "Problem while executing analysis pass '" + result.pass().getClass() + "'",
+                result.exception());
     }
 }
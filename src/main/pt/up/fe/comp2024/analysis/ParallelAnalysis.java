@@ -0,0 +1,100 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+/**
+ * Runs the analysis passes over each method of the class concurrently, once the symbol table is built.
+ * <p>
+ * The class without its methods and each of the methods are analysed by a {@link FusedAnalysis} with their own
+ * instances of the passes, so the state a pass keeps while visiting, such as the current method, belongs to a single
+ * method. The tasks run on the pool of the calling thread if it is a fork-join worker, as in batch mode, and on the
+ * common pool otherwise.
+ * <p>
+ * The reports of each pass are merged in the order of a traversal of the whole tree: first the class, whose nodes
+ * come before the methods, then the methods in the order they are declared. A pass failed if it threw in any part, in
+ * which case the first exception in that order is kept.
+ */
+public class ParallelAnalysis {
+
+    private final Supplier<List<AnalysisPass>> passFactory;
+    private final boolean split;
+
+    /**
+     * @param passFactory creates new instances of the passes, in the order they report
+     */
+    public ParallelAnalysis(Supplier<List<AnalysisPass>> passFactory) {
+        // with a single processor the parts would only add the cost of their own instances of the passes
+        this(passFactory, Runtime.getRuntime().availableProcessors() > 1);
+    }
+
+    /**
+     * @param split whether to analyse the methods separately, or the whole tree in a single traversal
+     */
+    ParallelAnalysis(Supplier<List<AnalysisPass>> passFactory, boolean split) {
+        this.passFactory = passFactory;
+        this.split = split;
+    }
+
+    /**
+     * @return the result of each pass, in the order of the passes
+     */
+    public List<FusedAnalysis.PassResult> run(JmmNode root, SymbolTable table) {
+        var methods = root.getDescendants(Kind.METHOD_DECL.getNodeName());
+
+        // a single method is not worth the extra instances of the passes
+        if (!split || methods.size() < 2) {
+            return new FusedAnalysis(passFactory.get()).run(root, table);
+        }
+
+        // every part has the same passes, so they can share which passes visit each kind
+        var visitorsByKind = new ConcurrentHashMap<String, int[]>();
+
+        var tasks = new ArrayList<ForkJoinTask<List<FusedAnalysis.PassResult>>>();
+        tasks.add(ForkJoinTask.adapt(() -> new FusedAnalysis(passFactory.get(), visitorsByKind)
+                .runClass(root, table)));
+        for (var method : methods) {
+            tasks.add(ForkJoinTask.adapt(() -> new FusedAnalysis(passFactory.get(), visitorsByKind)
+                    .runMethod(method, table)));
+        }
+
+        ForkJoinTask.invokeAll(tasks);
+
+        // joining in tree order keeps the reports deterministic
+        var parts = new ArrayList<List<FusedAnalysis.PassResult>>();
+        for (var task : tasks) {
+            parts.add(task.join());
+        }
+
+        return merge(parts);
+    }
+
+    private static List<FusedAnalysis.PassResult> merge(List<List<FusedAnalysis.PassResult>> parts) {
+        var results = new ArrayList<FusedAnalysis.PassResult>();
+
+        for (int i = 0; i < parts.get(0).size(); i++) {
+            var reports = new ArrayList<Report>();
+            Exception exception = null;
+
+            for (var part : parts) {
+                var result = part.get(i);
+                reports.addAll(result.reports());
+                if (exception == null) {
+                    exception = result.exception();
+                }
+            }
+
+            results.add(new FusedAnalysis.PassResult(parts.get(0).get(i).pass(), reports, exception));
+        }
+
+        return results;
+    }
+}
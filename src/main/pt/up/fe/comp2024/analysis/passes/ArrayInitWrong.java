@@ -7,6 +7,8 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol;
 import pt.up.fe.specs.util.SpecsCheck;
 
 import static pt.up.fe.comp2024.ast.TypeUtils.getExprType;
@@ -34,31 +36,20 @@ public class ArrayInitWrong extends AnalysisVisitor {
 
         var varRefChildType = getExprType(varRefExpr.getChildren().get(0), table, currentMethod);
 
-        for (var parameter : table.getParameters(currentMethod)) {
-            if (parameter.getType().getName().equals(varRefName) && !parameter.getType().equals(varRefChildType) && varRefChildType.isArray()) {
-                String message = "It is not an array";
-                addReport(Report.newError(
-                        Stage.SEMANTIC,
-                        NodeUtils.getLine(varRefExpr),
-                        NodeUtils.getColumn(varRefExpr),
-                        message,
-                        null)
-                );
-                return null;
-            }
-        }
-        for (var localVariable : table.getLocalVariables(currentMethod)) {
-            if (localVariable.getName().equals(varRefName) && !localVariable.getType().equals(varRefChildType) && varRefChildType.isArray()) {
-                String message = "It is not an array";
-                addReport(Report.newError(
-                        Stage.SEMANTIC,
-                        NodeUtils.getLine(varRefExpr),
-                        NodeUtils.getColumn(varRefExpr),
-                        message,
-                        null)
-                );
-                return null;
-            }
+        // only locals and parameters are checked, a local hides the parameter with the same name
+        var target = JmmSymbolTable.resolve(table, currentMethod, varRefName)
+                .filter(resolved -> resolved.scope() == ResolvedSymbol.Scope.LOCAL
+                        || resolved.scope() == ResolvedSymbol.Scope.PARAMETER);
+        if (target.isPresent() && !target.get().symbol().getType().equals(varRefChildType) && varRefChildType.isArray()) {
+            String message = "It is not an array";
+            addReport(Report.newError(
+                    Stage.SEMANTIC,
+                    NodeUtils.getLine(varRefExpr),
+                    NodeUtils.getColumn(varRefExpr),
+                    message,
+                    null)
+            );
+            return null;
         }
         return null;
     }
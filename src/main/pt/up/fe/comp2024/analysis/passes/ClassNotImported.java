@@ -8,6 +8,7 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.specs.util.SpecsCheck;
 
 import static pt.up.fe.comp2024.ast.TypeUtils.getExprType;
@@ -34,9 +35,8 @@ public class ClassNotImported extends AnalysisVisitor {
     private Void visitImport_Extend(JmmNode classDecl, SymbolTable table) {
         String extendedName = classDecl.getOptional("extendedClass").orElse("");
         if (!extendedName.equals("")) {
-            for (var imp : table.getImports()) {
-                if (imp.equals(extendedName))
-                    return null;
+            if (JmmSymbolTable.isImported(table, extendedName)) {
+                return null;
             }
             var message = String.format("Class not imported", extendedName);
             addReport(Report.newError(
@@ -63,7 +63,7 @@ public class ClassNotImported extends AnalysisVisitor {
 
 
         if (!table.getMethods().stream().anyMatch(param -> param.equals(varRefName)) &&
-                !table.getImports().stream().anyMatch(imp -> imp.equals(childType.getName())) &&
+                !JmmSymbolTable.isImported(table, childType.getName()) &&
                 !(childType.getName().equals(table.getClassName()) && !table.getSuper().equals(""))) {
 
             for (var imp : table.getImports()) {
@@ -92,10 +92,8 @@ public class ClassNotImported extends AnalysisVisitor {
         var varDeclTypeName = varDeclType.getName();
         var className = table.getClassName();
         if (!varDeclTypeName.equals("int") && !varDeclTypeName.equals("boolean") && !varDeclTypeName.equals(className)) {
-            for (var imp : table.getImports()) {
-                if (imp.equals(varDeclTypeName)) {
-                    return null;
-                }
+            if (JmmSymbolTable.isImported(table, varDeclTypeName)) {
+                return null;
             }
             var message = String.format("Class not imported", varDeclTypeName);
             addReport(Report.newError(
@@ -122,10 +120,8 @@ public class ClassNotImported extends AnalysisVisitor {
         }
 
         if (!argDeclTypeName.equals("String") && !argDeclTypeName.equals("int") && !argDeclTypeName.equals("boolean") && !argDeclTypeName.equals(table.getClassName())) {
-            for (var imp : table.getImports()) {
-                if (imp.equals(argDeclTypeName)) {
-                    return null;
-                }
+            if (JmmSymbolTable.isImported(table, argDeclTypeName)) {
+                return null;
             }
             var message = String.format("Class not imported in Arguments", argDeclTypeName);
             addReport(Report.newError(
@@ -154,10 +150,8 @@ public class ClassNotImported extends AnalysisVisitor {
                 var fieldType = field.getType();
                 var fieldTypeName = fieldType.getName();
                 if (fieldTypeName.equals(varDeclTypeName)) {
-                    for (var imp : table.getImports()) {
-                        if (imp.equals(varDeclTypeName)) {
-                            return null;
-                        }
+                    if (JmmSymbolTable.isImported(table, varDeclTypeName)) {
+                        return null;
                     }
                     var message = String.format("Not imported in Fields", varDeclTypeName);
                     addReport(Report.newError(
@@ -9,6 +9,7 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import java.util.List;
 
@@ -56,10 +57,8 @@ public class IncompatibleArguments extends AnalysisVisitor {
         }
 
 
-        for (var imp : table.getImports()) {
-            if (imp.equals(callerType.getName())) {
-                return null;
-            }
+        if (JmmSymbolTable.isImported(table, callerType.getName())) {
+            return null;
         }
         if (callerType.getName().equals(table.getClassName())) {
             var functionCallName = functionCall.get("value");
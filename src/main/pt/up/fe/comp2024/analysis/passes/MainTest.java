@@ -7,6 +7,8 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol;
 
 import java.util.HashSet;
 
@@ -134,21 +136,18 @@ public class MainTest extends AnalysisVisitor {
     private Void visitIdentifierinMain(JmmNode identifier, SymbolTable table) {
         if (currentMethod.equals("main")){
             var varName = identifier.getOptional("value").orElse("");
-            if (!table.getLocalVariables(currentMethod).stream()
-                    .anyMatch(varDecl -> varDecl.getName().equals(varName))){
-                if (table.getFields().stream()
-                        .anyMatch(varDecl -> varDecl.getName().equals(varName))){
-                    String message = "Field cant be used in a static function.";
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(identifier),
-                            NodeUtils.getColumn(identifier),
-                            message,
-                            null)
-                    );
-                    return null;
-                }
-
+            // locals and parameters hide the fields with the same name
+            if (JmmSymbolTable.resolve(table, currentMethod, varName)
+                    .filter(ResolvedSymbol::isField).isPresent()){
+                String message = "Field cant be used in a static function.";
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(identifier),
+                        NodeUtils.getColumn(identifier),
+                        message,
+                        null)
+                );
+                return null;
             }
         }
         return null;
@@ -157,21 +156,18 @@ public class MainTest extends AnalysisVisitor {
     private Void visitAssignmentinMain(JmmNode assignment, SymbolTable table){
         if (currentMethod.equals("main")){
             var varName = assignment.getOptional("var").orElse("");;
-            if (!table.getLocalVariables(currentMethod).stream()
-                    .anyMatch(varDecl -> varDecl.getName().equals(varName))){
-                if (table.getFields().stream()
-                        .anyMatch(varDecl -> varDecl.getName().equals(varName))){
-                    String message = "Field cant be used in a static function.";
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(assignment),
-                            NodeUtils.getColumn(assignment),
-                            message,
-                            null)
-                    );
-                    return null;
-                }
-
+            // locals and parameters hide the fields with the same name
+            if (JmmSymbolTable.resolve(table, currentMethod, varName)
+                    .filter(ResolvedSymbol::isField).isPresent()){
+                String message = "Field cant be used in a static function.";
+                addReport(Report.newError(
+                        Stage.SEMANTIC,
+                        NodeUtils.getLine(assignment),
+                        NodeUtils.getColumn(assignment),
+                        message,
+                        null)
+                );
+                return null;
             }
         }
         return null;
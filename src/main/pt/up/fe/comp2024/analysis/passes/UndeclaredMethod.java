@@ -8,6 +8,7 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.comp2024.ast.TypeUtils;
 
 public class UndeclaredMethod extends AnalysisVisitor {
@@ -45,10 +46,8 @@ public class UndeclaredMethod extends AnalysisVisitor {
         String newClassKind = newClass.getKind();
         String className = newClass.getOptional("classname").orElse("");
 
-        for (var importName : table.getImports()) {
-            if (importName.equals(className)) {
-                return null;
-            }
+        if (JmmSymbolTable.isImported(table, className)) {
+            return null;
         }
 
         if (!tem_imports) {
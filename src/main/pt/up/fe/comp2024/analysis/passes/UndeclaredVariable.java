@@ -7,6 +7,7 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 import pt.up.fe.specs.util.SpecsCheck;
 
 /**
@@ -40,26 +41,8 @@ public class UndeclaredVariable extends AnalysisVisitor {
         // Check if exists a parameter or variable declaration with the same name as the variable reference
         var varRefName = varRefExpr.get("value");
 
-        // Var is a field, return
-        if (table.getFields().stream()
-                .anyMatch(param -> param.getName().equals(varRefName))) {
-            return null;
-        }
-
-        // Var is a parameter, return
-        if (table.getParameters(currentMethod).stream()
-                .anyMatch(param -> param.getName().equals(varRefName))) {
-            return null;
-        }
-
-        // Var is a declared variable, return
-        if (table.getLocalVariables(currentMethod).stream()
-                .anyMatch(varDecl -> varDecl.getName().equals(varRefName))) {
-            return null;
-        }
-
-        if (table.getImports().stream()
-                .anyMatch(param -> param.equals(varRefName))) {
+        // Var is a local variable, a parameter, a field or an import, return
+        if (JmmSymbolTable.resolve(table, currentMethod, varRefName).isPresent()) {
             return null;
         }
 
@@ -162,23 +145,7 @@ public class UndeclaredVariable extends AnalysisVisitor {
 
     private Void visitArrayAssignIDs(JmmNode ArrayAssign, SymbolTable table) {
         var ArrayAssignID = ArrayAssign.get("var");
-        if (table.getFields().stream()
-                .anyMatch(param -> param.getName().equals(ArrayAssignID))) {
-            return null;
-        }
-
-        if (table.getParameters(currentMethod).stream()
-                .anyMatch(param -> param.getName().equals(ArrayAssignID))) {
-            return null;
-        }
-
-        if (table.getLocalVariables(currentMethod).stream()
-                .anyMatch(varDecl -> varDecl.getName().equals(ArrayAssignID))) {
-            return null;
-        }
-
-        if (table.getImports().stream()
-                .anyMatch(param -> param.equals(ArrayAssignID))) {
+        if (JmmSymbolTable.resolve(table, currentMethod, ArrayAssignID).isPresent()) {
             return null;
         }
 
@@ -8,6 +8,8 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol;
 import pt.up.fe.specs.util.SpecsCheck;
 
 import static pt.up.fe.comp2024.ast.TypeUtils.getExprType;
@@ -31,32 +33,16 @@ public class WrongArrayAcess extends AnalysisVisitor {
         JmmNode arrayDeclChild = arrayDecl.getChildren().get(0);
         String varNameToCheck = arrayDeclChild.getOptional("value").orElse("");
 
-        for (var field : table.getFields()) {
-            if (field.getName().equals(varNameToCheck) && !field.getType().isArray()) {
-                String message = "It is not an array";
-                addReport(Report.newError(
-                        Stage.SEMANTIC,
-                        NodeUtils.getLine(arrayDecl),
-                        NodeUtils.getColumn(arrayDecl),
-                        message,
-                        null)
-                );
-                return null;
-            }
-        }
-
-        for (var localVariable : table.getLocalVariables(currentMethod)) {
-            if (localVariable.getName().equals(varNameToCheck) && !localVariable.getType().isArray()) {
-                String message = "It is not an array";
-                addReport(Report.newError(
-                        Stage.SEMANTIC,
-                        NodeUtils.getLine(arrayDecl),
-                        NodeUtils.getColumn(arrayDecl),
-                        message,
-                        null)
-                );
-                return null;
-            }
+        if (isNotArray(varNameToCheck, table)) {
+            String message = "It is not an array";
+            addReport(Report.newError(
+                    Stage.SEMANTIC,
+                    NodeUtils.getLine(arrayDecl),
+                    NodeUtils.getColumn(arrayDecl),
+                    message,
+                    null)
+            );
+            return null;
         }
 
         JmmNode arrayDeclChildSecond = arrayDecl.getChildren().get(1);
@@ -80,18 +66,16 @@ public class WrongArrayAcess extends AnalysisVisitor {
     private Void visitArrayAssign(JmmNode arrayAssign, SymbolTable table) {
         SpecsCheck.checkNotNull(currentMethod, () -> "Expected current method to be set");
         String varNameToCheck = arrayAssign.get("var");
-        for (var localVariable : table.getLocalVariables(currentMethod)) {
-            if (localVariable.getName().equals(varNameToCheck) && !localVariable.getType().isArray()) {
-                String message = "It is not an array";
-                addReport(Report.newError(
-                        Stage.SEMANTIC,
-                        NodeUtils.getLine(arrayAssign),
-                        NodeUtils.getColumn(arrayAssign),
-                        message,
-                        null)
-                );
-                return null;
-            }
+        if (isNotArray(varNameToCheck, table)) {
+            String message = "It is not an array";
+            addReport(Report.newError(
+                    Stage.SEMANTIC,
+                    NodeUtils.getLine(arrayAssign),
+                    NodeUtils.getColumn(arrayAssign),
+                    message,
+                    null)
+            );
+            return null;
         }
         String typeName = "";
         if (arrayAssign.getChildren().size() > 0) {
@@ -114,4 +98,15 @@ public class WrongArrayAcess extends AnalysisVisitor {
 
         return null;
     }
+
+    /**
+     * @return true if the name is declared, as the local, parameter or field it resolves to, with a type that is not
+     * an array
+     */
+    private boolean isNotArray(String varName, SymbolTable table) {
+        return JmmSymbolTable.resolve(table, currentMethod, varName)
+                .filter(resolved -> resolved.scope() != ResolvedSymbol.Scope.IMPORT)
+                .map(resolved -> !resolved.symbol().getType().isArray())
+                .orElse(false);
+    }
 }
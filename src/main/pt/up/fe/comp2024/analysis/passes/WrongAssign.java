@@ -8,6 +8,8 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.ResolvedSymbol;
 
 import static pt.up.fe.comp2024.ast.TypeUtils.getExprType;
 
@@ -184,21 +186,18 @@ public class WrongAssign extends AnalysisVisitor {
             Type rightOperandType = getExprType(operand, table, method);
 
 
-            for (var parameter : table.getLocalVariables(method)) {
-                if (parentOperand.getOptional("var").orElse("").equals(parameter.getName()) && !rightOperandType.getName().equals(parameter.getType().getName()) && !rightOperandType.getName().equals("object") && !table.getImports().stream().anyMatch(param -> param.equals(parentOperand.getOptional("var").orElse(""))) && !table.getImports().stream().anyMatch(param -> param.equals(parameter.getType().getName()))) {
-                    String message = "Wrong Assign Types";
-                    addReport(Report.newError(
-                            Stage.SEMANTIC,
-                            NodeUtils.getLine(stmtDecl),
-                            NodeUtils.getColumn(stmtDecl),
-                            message,
-                            null)
-                    );
-                    return null;
-                }
-            }
-            for (var parameter : table.getParameters(method)) {
-                if (parentOperand.getOptional("var").orElse("").equals(parameter.getName()) && !rightOperandType.getName().equals(parameter.getType().getName()) && !rightOperandType.getName().equals("object") && tem_imports) {
+            // locals hide the parameters with the same name
+            var varName = parentOperand.getOptional("var").orElse("");
+            var target = JmmSymbolTable.resolve(table, method, varName)
+                    .filter(resolved -> resolved.scope() == ResolvedSymbol.Scope.LOCAL
+                            || resolved.scope() == ResolvedSymbol.Scope.PARAMETER)
+                    .orElse(null);
+            if (target != null && !rightOperandType.getName().equals(target.symbol().getType().getName()) && !rightOperandType.getName().equals("object")) {
+                var targetTypeName = target.symbol().getType().getName();
+                boolean wrongTypes = target.scope() == ResolvedSymbol.Scope.LOCAL
+                        ? !JmmSymbolTable.isImported(table, varName) && !JmmSymbolTable.isImported(table, targetTypeName)
+                        : tem_imports;
+                if (wrongTypes) {
                     String message = "Wrong Assign Types";
                     addReport(Report.newError(
                             Stage.SEMANTIC,
@@ -7,6 +7,7 @@ import pt.up.fe.comp.jmm.report.Stage;
 import pt.up.fe.comp2024.analysis.AnalysisVisitor;
 import pt.up.fe.comp2024.ast.Kind;
 import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import static pt.up.fe.comp2024.ast.TypeUtils.getExprType;
 public class WrongFields extends AnalysisVisitor {
@@ -28,10 +29,8 @@ public class WrongFields extends AnalysisVisitor {
             return null;
         }
         else {
-            for (var imp: table.getImports()){
-                if (imp.equals(varType.getName())){
-                    return null;
-                }
+            if (JmmSymbolTable.isImported(table, varType.getName())) {
+                return null;
             }
         }
         String message = "Variable Type is not valid";
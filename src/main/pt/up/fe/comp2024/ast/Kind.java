@@ -4,7 +4,9 @@ import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.specs.util.SpecsStrings;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public enum Kind {
     PROGRAM,
@@ -60,6 +62,9 @@ public enum Kind {
     private static final Set<Kind> STATEMENTS = Set.of(ASSIGN_STMT, RETURN_STMT);
     private static final Set<Kind> EXPRESSIONS = Set.of(BINARY_EXPR, INTEGER_LITERAL, VAR_DECL);
 
+    private static final Map<String, Kind> BY_NODE_NAME = Arrays.stream(values())
+            .collect(Collectors.toUnmodifiableMap(Kind::getNodeName, k -> k));
+
     private final String name;
 
     private Kind(String name) {
@@ -72,10 +77,9 @@ public enum Kind {
 
     public static Kind fromString(String kind) {
 
-        for (Kind k : Kind.values()) {
-            if (k.getNodeName().equals(kind)) {
-                return k;
-            }
+        var k = BY_NODE_NAME.get(kind);
+        if (k != null) {
+            return k;
         }
         throw new RuntimeException("Could not convert string '" + kind + "' to a Kind");
     }
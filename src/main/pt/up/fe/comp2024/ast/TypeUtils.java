@@ -3,6 +3,11 @@ package pt.up.fe.comp2024.ast;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 public class TypeUtils {
 
@@ -10,6 +15,20 @@ public class TypeUtils {
 
     private static final String BOOLEAN_TYPE_NAME = "boolean";
 
+    // the kinds getExprType(JmmNode, SymbolTable, String) computes a type for
+    private static final Set<String> TYPED_KINDS = EnumSet.of(Kind.IDENTIFIER, Kind.VAR_DECL, Kind.INT, Kind.ID,
+                    Kind.ARRAYDEFINITION, Kind.ARRAY_DECLARATION, Kind.INTEGER, Kind.CLASS_INSTANTIATION,
+                    Kind.ARRAY_SUBSCRIPT, Kind.IFEXPR, Kind.ELSEEXPR, Kind.BINARY_EXPR, Kind.BINARY_OP,
+                    Kind.FUNCTION_CALL, Kind.NEW_CLASS, Kind.OBJECT, Kind.TRUE, Kind.FALSE, Kind.BRACKETS,
+                    Kind.LENGTH, Kind.ASSIGNMENT, Kind.ARRAY_ASSIGN, Kind.PARENTESIS, Kind.NEGATION)
+            .stream()
+            .map(Kind::getNodeName)
+            .collect(Collectors.toUnmodifiableSet());
+
+    // the kinds that take the type of their first child
+    private static final Set<String> OPERAND_KINDS = Set.of(Kind.BRACKETS.getNodeName(),
+            Kind.PARENTESIS.getNodeName(), Kind.NEGATION.getNodeName());
+
     public static String getIntTypeName() {
         return INT_TYPE_NAME;
     }
@@ -43,7 +62,62 @@ public class TypeUtils {
         return type;
     }
 
+    /**
+     * Infers the type of each expression in the methods of the program and stores it in the symbol table, from which
+     * {@link #getExprType(JmmNode, SymbolTable, String)} then returns it without computing it again.
+     * <p>
+     * The nodes are typed bottom-up, so an expression that takes the type of its operand reads the one already stored.
+     * Nodes whose type cannot be computed are left without one, and fail again when a pass asks for it.
+     */
+    public static void annotateTypes(JmmNode root, SymbolTable table) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            annotateTypes(root, jmmTable, null);
+        }
+    }
+
+    private static void annotateTypes(JmmNode node, JmmSymbolTable table, String currMethod) {
+        if (Kind.METHOD_DECL.check(node)) {
+            currMethod = node.get("name");
+        }
+
+        for (var child : node.getChildren()) {
+            annotateTypes(child, table, currMethod);
+        }
+
+        // only the expressions in methods, as the passes know the method they are in
+        if (currMethod == null || !TYPED_KINDS.contains(node.getKind())) {
+            return;
+        }
+
+        // blocks are brackets too, and an operand without a type would only fail again
+        if (OPERAND_KINDS.contains(node.getKind())
+                && (node.getNumChildren() == 0 || table.getExprType(node.getChild(0), currMethod).isEmpty())) {
+            return;
+        }
+
+        try {
+            table.putExprType(node, currMethod, computeExprType(node, table, currMethod));
+        } catch (RuntimeException e) {
+            // the pass that asks for this type reports the error
+        }
+    }
+
+    /**
+     * Gets the {@link Type} of an expression in the given method, as stored by
+     * {@link #annotateTypes(JmmNode, SymbolTable)} if it was.
+     */
     public static Type getExprType(JmmNode expr, SymbolTable table, String currMethod) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            var stored = jmmTable.getExprType(expr, currMethod);
+            if (stored.isPresent()) {
+                return stored.get();
+            }
+        }
+
+        return computeExprType(expr, table, currMethod);
+    }
+
+    private static Type computeExprType(JmmNode expr, SymbolTable table, String currMethod) {
         // TODO: Simple implementation that needs to be expanded
 
         var kind = Kind.fromString(expr.getKind());
@@ -111,68 +185,26 @@ public class TypeUtils {
         if (varName.equals("")) {
             varName = varRefExpr.getOptional("name").orElse("");
         }
-        var locals = table.getLocalVariables(currMethod);
-        for (var local : locals) {
-            if (local.getName().equals(varName)) {
-                return local.getType();
-            }
-        }
-        var params = table.getParameters(currMethod);
-        for (var param : params) {
-            if (param.getName().equals(varName)) {
-                return param.getType();
-            }
-        }
-        var fields = table.getFields();
-        for (var field : fields) {
-            if (field.getName().equals(varName)) {
-                return field.getType();
-            }
-        }
-        var imports = table.getImports();
-        for (var imp : imports) {
-            if (imp.equals(varName)) {
-                return new Type(imp, false);
-            }
+        var symbol = JmmSymbolTable.resolve(table, currMethod, varName);
+        if (symbol.isPresent()) {
+            return symbol.get().symbol().getType();
         }
         if (varName.equals("true") || varName.equals("false")) {
             return new Type("boolean", false);
         }
-        if (table.getImports().contains(varName)) {
-            return new Type(varName, false);
-        }
 
         return new Type(INT_TYPE_NAME, false);
     }
 
     private static Type getVarExprTypeForAssigment(JmmNode varRefExpr, SymbolTable table, String currMethod) {
         String varName = varRefExpr.get("var");
-        var locals = table.getLocalVariables(currMethod);
-        for (var local : locals) {
-            if (local.getName().equals(varName)) {
-                return local.getType();
-            }
-        }
-
-        var parameters = table.getParameters(currMethod);
-        for (var param : parameters) {
-            if (param.getName().equals(varName)) {
-                return param.getType();
-            }
-        }
-
-        var fields = table.getFields();
-        for (var field : fields) {
-            if (field.getName().equals(varName)) {
-                return field.getType();
-            }
+        var symbol = JmmSymbolTable.resolve(table, currMethod, varName);
+        if (symbol.isPresent()) {
+            return symbol.get().symbol().getType();
         }
         if (varName.equals("true") || varName.equals("false")) {
             return new Type("boolean", false);
         }
-        if (table.getImports().contains(varName)) {
-            return new Type(varName, false);
-        }
 
         return new Type(null, false);
     }
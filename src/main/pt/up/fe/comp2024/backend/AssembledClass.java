@@ -0,0 +1,291 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.specs.util.system.ProcessOutputAsString;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A class assembled from Jasmin code, which can be run in the current JVM.
+ * <p>
+ * Each run defines the class in a fresh class loader, with the given classpath as the only other source of classes
+ * besides the platform, so runs never see each other's static state. The standard streams are redirected while the
+ * program runs, so only one program runs at a time.
+ * <p>
+ * A program that does not finish in time cannot be stopped: its thread is interrupted and left running, and it fails
+ * with return value -1. The streams of a run only reach the threads the program started, and they are closed when the
+ * run ends, so such a program reads nothing and everything it writes afterwards is discarded instead of showing up in
+ * the output of later runs. Programs that may not terminate are better run in a separate process, e.g. with
+ * {@link pt.up.fe.comp.jmm.jasmin.JasminResult#run()}.
+ */
+public class AssembledClass {
+
+    private static final long TIMEOUT_MS = 5_000;
+    private static final Object RUN_LOCK = new Object();
+    // inherited by the threads the program starts
+    private static final InheritableThreadLocal<RunStreams> CURRENT_RUN = new InheritableThreadLocal<>();
+
+    private final String className;
+    private final byte[] bytes;
+    private final long timeoutMs;
+
+    public AssembledClass(String className, byte[] bytes) {
+        this(className, bytes, TIMEOUT_MS);
+    }
+
+    AssembledClass(String className, byte[] bytes, long timeoutMs) {
+        this.className = className;
+        this.bytes = bytes;
+        this.timeoutMs = timeoutMs;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    public String run() {
+        return run(Collections.emptyList());
+    }
+
+    public String run(String input) {
+        return runWithFullOutput(Collections.emptyList(), List.of(TestUtils.getLibsClasspath()), input).getOutput();
+    }
+
+    public String run(List<String> args) {
+        return runWithFullOutput(args).getOutput();
+    }
+
+    public ProcessOutputAsString runWithFullOutput() {
+        return runWithFullOutput(Collections.emptyList());
+    }
+
+    public ProcessOutputAsString runWithFullOutput(List<String> args) {
+        return runWithFullOutput(args, List.of(TestUtils.getLibsClasspath()), null);
+    }
+
+    /**
+     * Runs the main method of the class, mimicking the output of running it in a separate java process: the return
+     * value is 0 unless the program throws, and the output is collected line by line.
+     */
+    public ProcessOutputAsString runWithFullOutput(List<String> args, List<String> classpath, String input) {
+        synchronized (RUN_LOCK) {
+            var run = new RunStreams(input);
+
+            var previousOut = System.out;
+            var previousErr = System.err;
+            var previousIn = System.in;
+
+            int returnValue;
+            try (var loader = new SingleClassLoader(this, toUrls(classpath))) {
+                System.setOut(new PrintStream(new RoutedOutput(false, previousOut), true, StandardCharsets.UTF_8));
+                System.setErr(new PrintStream(new RoutedOutput(true, previousErr), true, StandardCharsets.UTF_8));
+                System.setIn(new RoutedInput(previousIn));
+
+                returnValue = runMain(loader, args, run);
+            } catch (Exception e) {
+                throw new RuntimeException("Could not run class " + className, e);
+            } finally {
+                run.close();
+                System.setOut(previousOut);
+                System.setErr(previousErr);
+                System.setIn(previousIn);
+            }
+
+            return new ProcessOutputAsString(returnValue, toLines(run.stdout), toLines(run.stderr));
+        }
+    }
+
+    private int runMain(ClassLoader loader, List<String> args, RunStreams run) throws Exception {
+        var mainMethod = loader.loadClass(className).getMethod("main", String[].class);
+        // the java launcher also runs main of classes that are not public
+        mainMethod.setAccessible(true);
+
+        Throwable[] thrown = new Throwable[1];
+        var thread = new Thread(() -> {
+            CURRENT_RUN.set(run);
+            try {
+                mainMethod.invoke(null, (Object) args.toArray(new String[0]));
+            } catch (InvocationTargetException e) {
+                thrown[0] = e.getCause();
+            } catch (Throwable e) {
+                thrown[0] = e;
+            }
+        }, "jmm-main-" + className);
+        thread.setDaemon(true);
+        thread.setContextClassLoader(loader);
+
+        thread.start();
+        thread.join(timeoutMs);
+
+        var err = new PrintStream(new RunOutput(run, true), true, StandardCharsets.UTF_8);
+        if (thread.isAlive()) {
+            thread.interrupt();
+            err.println("Timeout: " + className + " did not finish in " + timeoutMs + " ms");
+            return -1;
+        }
+
+        if (thrown[0] != null) {
+            err.print("Exception in thread \"main\" ");
+            thrown[0].printStackTrace(err);
+            return 1;
+        }
+
+        return 0;
+    }
+
+    private static URL[] toUrls(List<String> classpath) throws MalformedURLException {
+        var urls = new ArrayList<URL>();
+        for (var element : classpath) {
+            urls.add(new File(element).toURI().toURL());
+        }
+
+        return urls.toArray(new URL[0]);
+    }
+
+    // same as reading the output of a process line by line
+    private static String toLines(ByteArrayOutputStream stream) {
+        var output = new StringBuilder();
+        stream.toString(StandardCharsets.UTF_8).lines().forEach(line -> output.append(line).append("\n"));
+
+        return output.toString();
+    }
+
+    /**
+     * The standard streams of one run, which discard everything once the run ended.
+     */
+    private static class RunStreams {
+
+        private final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+        private final ByteArrayInputStream stdin;
+        private boolean closed;
+
+        RunStreams(String input) {
+            this.stdin = new ByteArrayInputStream(input == null ? new byte[0] : input.getBytes(StandardCharsets.UTF_8));
+        }
+
+        synchronized void write(boolean isErr, byte[] b, int off, int len) {
+            if (!closed) {
+                (isErr ? stderr : stdout).write(b, off, len);
+            }
+        }
+
+        synchronized int read(byte[] b, int off, int len) {
+            return closed ? -1 : stdin.read(b, off, len);
+        }
+
+        synchronized void close() {
+            closed = true;
+        }
+    }
+
+    private static class RunOutput extends OutputStream {
+
+        private final RunStreams run;
+        private final boolean isErr;
+
+        RunOutput(RunStreams run, boolean isErr) {
+            this.run = run;
+            this.isErr = isErr;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            run.write(isErr, b, off, len);
+        }
+    }
+
+    /**
+     * Writes to the run of the current thread, or to the previous stream for threads that are not part of a run.
+     */
+    private static class RoutedOutput extends OutputStream {
+
+        private final boolean isErr;
+        private final PrintStream fallback;
+
+        RoutedOutput(boolean isErr, PrintStream fallback) {
+            this.isErr = isErr;
+            this.fallback = fallback;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            var run = CURRENT_RUN.get();
+            if (run == null) {
+                fallback.write(b, off, len);
+                return;
+            }
+
+            run.write(isErr, b, off, len);
+        }
+    }
+
+    private static class RoutedInput extends InputStream {
+
+        private final InputStream fallback;
+
+        RoutedInput(InputStream fallback) {
+            this.fallback = fallback;
+        }
+
+        @Override
+        public int read() throws IOException {
+            var b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            var run = CURRENT_RUN.get();
+            return run == null ? fallback.read(b, off, len) : run.read(b, off, len);
+        }
+    }
+
+    private static class SingleClassLoader extends URLClassLoader {
+
+        private final AssembledClass assembledClass;
+
+        SingleClassLoader(AssembledClass assembledClass, URL[] classpath) {
+            super(classpath, ClassLoader.getPlatformClassLoader());
+            this.assembledClass = assembledClass;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            if (name.equals(assembledClass.getClassName())) {
+                var bytes = assembledClass.getBytes();
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+
+            return super.findClass(name);
+        }
+    }
+}
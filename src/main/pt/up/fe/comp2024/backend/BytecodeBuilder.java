@@ -0,0 +1,626 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the code of a single method as a list of symbolic instructions, which can be encoded into bytecode or
+ * printed as Jasmin.
+ * <p>
+ * Branch targets are {@link Label}s, resolved to offsets only when the code is encoded. The maximum stack size is
+ * tracked while instructions are added: after an unconditional jump, the stack size at the next label is the one
+ * recorded by the jumps to that label.
+ */
+public class BytecodeBuilder {
+
+    public static final int ICONST_M1 = 2;
+    public static final int BIPUSH = 16;
+    public static final int SIPUSH = 17;
+    public static final int LDC = 18;
+    public static final int LDC_W = 19;
+    public static final int ILOAD = 21;
+    public static final int ALOAD = 25;
+    public static final int ILOAD_0 = 26;
+    public static final int ALOAD_0 = 42;
+    public static final int IALOAD = 46;
+    public static final int AALOAD = 50;
+    public static final int ISTORE = 54;
+    public static final int ASTORE = 58;
+    public static final int ISTORE_0 = 59;
+    public static final int ASTORE_0 = 75;
+    public static final int IASTORE = 79;
+    public static final int AASTORE = 83;
+    public static final int POP = 87;
+    public static final int DUP = 89;
+    public static final int IADD = 96;
+    public static final int ISUB = 100;
+    public static final int IMUL = 104;
+    public static final int IDIV = 108;
+    public static final int IREM = 112;
+    public static final int INEG = 116;
+    public static final int ISHL = 120;
+    public static final int ISHR = 122;
+    public static final int IUSHR = 124;
+    public static final int IAND = 126;
+    public static final int IOR = 128;
+    public static final int IXOR = 130;
+    public static final int IINC = 132;
+    public static final int IFEQ = 153;
+    public static final int IFNE = 154;
+    public static final int IFLT = 155;
+    public static final int IFGE = 156;
+    public static final int IFGT = 157;
+    public static final int IFLE = 158;
+    public static final int IF_ICMPEQ = 159;
+    public static final int IF_ICMPNE = 160;
+    public static final int IF_ICMPLT = 161;
+    public static final int IF_ICMPGE = 162;
+    public static final int IF_ICMPGT = 163;
+    public static final int IF_ICMPLE = 164;
+    public static final int GOTO = 167;
+    public static final int IRETURN = 172;
+    public static final int ARETURN = 176;
+    public static final int RETURN = 177;
+    public static final int GETSTATIC = 178;
+    public static final int PUTSTATIC = 179;
+    public static final int GETFIELD = 180;
+    public static final int PUTFIELD = 181;
+    public static final int INVOKEVIRTUAL = 182;
+    public static final int INVOKESPECIAL = 183;
+    public static final int INVOKESTATIC = 184;
+    public static final int INVOKEINTERFACE = 185;
+    public static final int NEW = 187;
+    public static final int NEWARRAY = 188;
+    public static final int ANEWARRAY = 189;
+    public static final int ARRAYLENGTH = 190;
+    public static final int WIDE = 196;
+
+    /**
+     * Array type of newarray for int arrays.
+     */
+    public static final int T_INT = 10;
+
+    // names of the array types of newarray, indexed by their code
+    private static final String[] ARRAY_TYPES = {null, null, null, null, "boolean", "char", "float", "double", "byte",
+            "short", "int", "long"};
+
+    private static final String[] NAMES = new String[256];
+    private static final Map<String, Integer> OPCODES = new HashMap<>();
+
+    // stack effect of the instructions that have a fixed one
+    private static final int[] STACK = new int[256];
+
+    static {
+        for (int i = 0; i <= 6; i++) {
+            name(ICONST_M1 + i, i == 0 ? "iconst_m1" : "iconst_" + (i - 1), 1);
+        }
+        name(BIPUSH, "bipush", 1);
+        name(SIPUSH, "sipush", 1);
+        name(LDC, "ldc", 1);
+        name(LDC_W, "ldc_w", 1);
+        name(ILOAD, "iload", 1);
+        name(ALOAD, "aload", 1);
+        for (int i = 0; i <= 3; i++) {
+            name(ILOAD_0 + i, "iload_" + i, 1);
+            name(ALOAD_0 + i, "aload_" + i, 1);
+            name(ISTORE_0 + i, "istore_" + i, -1);
+            name(ASTORE_0 + i, "astore_" + i, -1);
+        }
+        name(IALOAD, "iaload", -1);
+        name(AALOAD, "aaload", -1);
+        name(ISTORE, "istore", -1);
+        name(ASTORE, "astore", -1);
+        name(IASTORE, "iastore", -3);
+        name(AASTORE, "aastore", -3);
+        name(POP, "pop", -1);
+        name(DUP, "dup", 1);
+        name(IADD, "iadd", -1);
+        name(ISUB, "isub", -1);
+        name(IMUL, "imul", -1);
+        name(IDIV, "idiv", -1);
+        name(IREM, "irem", -1);
+        name(INEG, "ineg", 0);
+        name(ISHL, "ishl", -1);
+        name(ISHR, "ishr", -1);
+        name(IUSHR, "iushr", -1);
+        name(IAND, "iand", -1);
+        name(IOR, "ior", -1);
+        name(IXOR, "ixor", -1);
+        name(IINC, "iinc", 0);
+        name(IFEQ, "ifeq", -1);
+        name(IFNE, "ifne", -1);
+        name(IFLT, "iflt", -1);
+        name(IFGE, "ifge", -1);
+        name(IFGT, "ifgt", -1);
+        name(IFLE, "ifle", -1);
+        name(IF_ICMPEQ, "if_icmpeq", -2);
+        name(IF_ICMPNE, "if_icmpne", -2);
+        name(IF_ICMPLT, "if_icmplt", -2);
+        name(IF_ICMPGE, "if_icmpge", -2);
+        name(IF_ICMPGT, "if_icmpgt", -2);
+        name(IF_ICMPLE, "if_icmple", -2);
+        name(GOTO, "goto", 0);
+        name(IRETURN, "ireturn", -1);
+        name(ARETURN, "areturn", -1);
+        name(RETURN, "return", 0);
+        name(GETSTATIC, "getstatic", 0);
+        name(PUTSTATIC, "putstatic", 0);
+        name(GETFIELD, "getfield", 0);
+        name(PUTFIELD, "putfield", 0);
+        name(INVOKEVIRTUAL, "invokevirtual", 0);
+        name(INVOKESPECIAL, "invokespecial", 0);
+        name(INVOKESTATIC, "invokestatic", 0);
+        name(INVOKEINTERFACE, "invokeinterface", 0);
+        name(NEW, "new", 1);
+        name(NEWARRAY, "newarray", 0);
+        name(ANEWARRAY, "anewarray", 0);
+        name(ARRAYLENGTH, "arraylength", 0);
+    }
+
+    private static void name(int opcode, String name, int stack) {
+        NAMES[opcode] = name;
+        STACK[opcode] = stack;
+        OPCODES.put(name, opcode);
+    }
+
+    /**
+     * @return the opcode of the instruction with the given name, or -1 if it is not supported
+     */
+    static int getOpcode(String name) {
+        return OPCODES.getOrDefault(name, -1);
+    }
+
+    /**
+     * @return the name of the instruction in Jasmin
+     */
+    static String getName(int opcode) {
+        return NAMES[opcode];
+    }
+
+    /**
+     * @return the stack effect of the instruction, if it does not depend on its operands
+     */
+    static int getStackEffect(int opcode) {
+        return STACK[opcode];
+    }
+
+    /**
+     * @return the stack effect of a field instruction, given the descriptor of the field
+     */
+    static int getFieldStackEffect(int opcode, String descriptor) {
+        var size = getSize(descriptor);
+        return switch (opcode) {
+            case GETFIELD -> size - 1;
+            case PUTFIELD -> -size - 1;
+            case GETSTATIC -> size;
+            case PUTSTATIC -> -size;
+            default -> throw new RuntimeException("Not a field instruction: " + NAMES[opcode]);
+        };
+    }
+
+    /**
+     * @return the stack effect of an invoke instruction, given the descriptor of the method
+     */
+    static int getInvokeStackEffect(int opcode, String descriptor) {
+        var argumentsSize = getArgumentsSize(descriptor);
+        var returnSize = getSize(descriptor.substring(descriptor.indexOf(')') + 1));
+        var receiverSize = opcode == INVOKESTATIC ? 0 : 1;
+
+        return returnSize - argumentsSize - receiverSize;
+    }
+
+    /**
+     * A position in the code, which is the target of jumps.
+     */
+    public static class Label {
+
+        private final String name;
+        private int offset;
+        private int stackSize;
+
+        private Label(String name) {
+            this.name = name;
+            this.offset = -1;
+            this.stackSize = -1;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+    private enum Kind {
+        LABEL,
+        SIMPLE,
+        LOCAL,
+        IINC,
+        INT,
+        LDC,
+        JUMP,
+        MEMBER,
+        CLASS,
+        NEWARRAY
+    }
+
+    private record Instruction(Kind kind, int opcode, int operand, int extra, Label target, String owner,
+                               String name, String descriptor) {
+    }
+
+    private final ConstantPool constantPool;
+    private final List<Instruction> instructions;
+
+    private int labelCount;
+    private int stackSize;
+    private int maxStack;
+    private int maxLocals;
+    private boolean reachable;
+
+    public BytecodeBuilder(ConstantPool constantPool) {
+        this.constantPool = constantPool;
+        this.instructions = new ArrayList<>();
+        this.labelCount = 0;
+        this.stackSize = 0;
+        this.maxStack = 0;
+        this.maxLocals = 0;
+        this.reachable = true;
+    }
+
+    public Label newLabel() {
+        return new Label("__L" + labelCount++);
+    }
+
+    public Label newLabel(String name) {
+        return new Label(name);
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * @return one more than the highest local variable used by the code
+     */
+    public int getMaxLocals() {
+        return maxLocals;
+    }
+
+    public void mark(Label label) {
+        if (!reachable) {
+            // only reachable through jumps, which recorded the stack size
+            stackSize = Math.max(label.stackSize, 0);
+            reachable = true;
+        }
+
+        instructions.add(new Instruction(Kind.LABEL, -1, 0, 0, label, null, null, null));
+    }
+
+    /**
+     * Adds an instruction without operands and with a fixed stack effect.
+     */
+    public void add(int opcode) {
+        addInstruction(new Instruction(Kind.SIMPLE, opcode, 0, 0, null, null, null, null), STACK[opcode]);
+
+        if (opcode == IRETURN || opcode == ARETURN || opcode == RETURN) {
+            reachable = false;
+        }
+    }
+
+    public void iload(int reg) {
+        local(ILOAD, reg);
+    }
+
+    public void aload(int reg) {
+        local(ALOAD, reg);
+    }
+
+    public void istore(int reg) {
+        local(ISTORE, reg);
+    }
+
+    public void astore(int reg) {
+        local(ASTORE, reg);
+    }
+
+    private void local(int opcode, int reg) {
+        useLocal(reg);
+
+        var selected = InstructionSelector.getLocalOpcode(opcode, reg);
+        if (selected != opcode) {
+            addInstruction(new Instruction(Kind.SIMPLE, selected, 0, 0, null, null, null, null), STACK[opcode]);
+            return;
+        }
+
+        addInstruction(new Instruction(Kind.LOCAL, opcode, reg, 0, null, null, null, null), STACK[opcode]);
+    }
+
+    public void iinc(int reg, int increment) {
+        if (!InstructionSelector.fitsIinc(increment)) {
+            throw new RuntimeException("Increment out of range for iinc: " + increment);
+        }
+
+        useLocal(reg);
+        addInstruction(new Instruction(Kind.IINC, IINC, reg, increment, null, null, null, null), 0);
+    }
+
+    /**
+     * Pushes an integer constant, using the shortest instruction that can hold it.
+     */
+    public void iconst(int value) {
+        var opcode = InstructionSelector.getConstantOpcode(value);
+        if (opcode != BIPUSH && opcode != SIPUSH && opcode != LDC) {
+            addInstruction(new Instruction(Kind.SIMPLE, opcode, 0, 0, null, null, null, null), 1);
+        } else if (opcode != LDC) {
+            addInstruction(new Instruction(Kind.INT, opcode, value, 0, null, null, null, null), 1);
+        } else {
+            var index = constantPool.integer(value);
+            addInstruction(new Instruction(Kind.LDC, index <= 0xFF ? LDC : LDC_W, index, value, null, null, null,
+                    null), 1);
+        }
+    }
+
+    public void jump(int opcode, Label target) {
+        addInstruction(new Instruction(Kind.JUMP, opcode, 0, 0, target, null, null, null), STACK[opcode]);
+
+        if (target.stackSize < 0) {
+            target.stackSize = stackSize;
+        }
+
+        if (opcode == GOTO) {
+            reachable = false;
+        }
+    }
+
+    public void field(int opcode, String owner, String name, String descriptor) {
+        var stack = getFieldStackEffect(opcode, descriptor);
+        var index = constantPool.fieldRef(owner, name, descriptor);
+
+        addInstruction(new Instruction(Kind.MEMBER, opcode, index, 0, null, owner, name, descriptor), stack);
+    }
+
+    public void invoke(int opcode, String owner, String name, String descriptor) {
+        var argumentsSize = getArgumentsSize(descriptor);
+        var receiverSize = opcode == INVOKESTATIC ? 0 : 1;
+
+        var index = opcode == INVOKEINTERFACE ?
+                constantPool.interfaceMethodRef(owner, name, descriptor) :
+                constantPool.methodRef(owner, name, descriptor);
+
+        addInstruction(new Instruction(Kind.MEMBER, opcode, index, argumentsSize + receiverSize, null, owner, name,
+                descriptor), getInvokeStackEffect(opcode, descriptor));
+    }
+
+    /**
+     * Adds an instruction that refers to a class, new or anewarray.
+     */
+    public void type(int opcode, String internalName) {
+        var index = constantPool.classRef(internalName);
+        addInstruction(new Instruction(Kind.CLASS, opcode, index, 0, null, internalName, null, null), STACK[opcode]);
+    }
+
+    public void newarray(int arrayType) {
+        if (arrayType < 4 || arrayType >= ARRAY_TYPES.length) {
+            throw new RuntimeException("Invalid array type for newarray: " + arrayType);
+        }
+
+        addInstruction(new Instruction(Kind.NEWARRAY, NEWARRAY, arrayType, 0, null, null, null, null), 0);
+    }
+
+    private void useLocal(int reg) {
+        if (reg < 0 || reg > 0xFFFF) {
+            throw new RuntimeException("Invalid local variable " + reg);
+        }
+
+        maxLocals = Math.max(maxLocals, reg + 1);
+    }
+
+    private void addInstruction(Instruction instruction, int stackEffect) {
+        instructions.add(instruction);
+
+        stackSize += stackEffect;
+        maxStack = Math.max(maxStack, stackSize);
+    }
+
+    /**
+     * @param descriptor a field descriptor
+     * @return the number of stack slots taken by a value of the given type
+     */
+    private static int getSize(String descriptor) {
+        return switch (descriptor.charAt(0)) {
+            case 'V' -> 0;
+            case 'J', 'D' -> 2;
+            default -> 1;
+        };
+    }
+
+    private static int getArgumentsSize(String methodDescriptor) {
+        int size = 0;
+        int i = 1;
+        while (methodDescriptor.charAt(i) != ')') {
+            var start = i;
+            while (methodDescriptor.charAt(i) == '[') {
+                i++;
+            }
+
+            if (methodDescriptor.charAt(i) == 'L') {
+                i = methodDescriptor.indexOf(';', i);
+            }
+
+            // arrays are references, even of longs and doubles
+            size += i == start ? getSize(methodDescriptor.substring(i)) : 1;
+            i++;
+        }
+
+        return size;
+    }
+
+    private static int getLength(Instruction instruction) {
+        return switch (instruction.kind()) {
+            case LABEL -> 0;
+            case SIMPLE -> 1;
+            case LOCAL -> instruction.operand() <= 0xFF ? 2 : 4;
+            case IINC -> instruction.operand() <= 0xFF && instruction.extra() >= Byte.MIN_VALUE
+                    && instruction.extra() <= Byte.MAX_VALUE ? 3 : 6;
+            case INT -> instruction.opcode() == BIPUSH ? 2 : 3;
+            case LDC -> instruction.opcode() == LDC ? 2 : 3;
+            case JUMP, CLASS -> 3;
+            case MEMBER -> instruction.opcode() == INVOKEINTERFACE ? 5 : 3;
+            case NEWARRAY -> 2;
+        };
+    }
+
+    /**
+     * Encodes the instructions, resolving the offsets of the labels.
+     *
+     * @return the bytecode of the method
+     */
+    public byte[] toByteArray() {
+        int offset = 0;
+        for (var instruction : instructions) {
+            if (instruction.kind() == Kind.LABEL) {
+                instruction.target().offset = offset;
+            }
+
+            offset += getLength(instruction);
+        }
+
+        if (offset > 0xFFFF) {
+            throw new RuntimeException("Code of method is too large: " + offset + " bytes");
+        }
+
+        var bytes = new ByteArrayOutputStream(offset);
+        var out = new DataOutputStream(bytes);
+
+        try {
+            for (var instruction : instructions) {
+                write(instruction, out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private static void write(Instruction instruction, DataOutputStream out) throws IOException {
+        var opcode = instruction.opcode();
+
+        switch (instruction.kind()) {
+            case LABEL -> {
+            }
+            case SIMPLE -> out.writeByte(opcode);
+            case LOCAL -> {
+                if (instruction.operand() > 0xFF) {
+                    out.writeByte(WIDE);
+                    out.writeByte(opcode);
+                    out.writeShort(instruction.operand());
+                } else {
+                    out.writeByte(opcode);
+                    out.writeByte(instruction.operand());
+                }
+            }
+            case IINC -> {
+                if (getLength(instruction) == 6) {
+                    out.writeByte(WIDE);
+                    out.writeByte(opcode);
+                    out.writeShort(instruction.operand());
+                    out.writeShort(instruction.extra());
+                } else {
+                    out.writeByte(opcode);
+                    out.writeByte(instruction.operand());
+                    out.writeByte(instruction.extra());
+                }
+            }
+            case INT -> {
+                out.writeByte(opcode);
+                if (opcode == BIPUSH) {
+                    out.writeByte(instruction.operand());
+                } else {
+                    out.writeShort(instruction.operand());
+                }
+            }
+            case LDC -> {
+                out.writeByte(opcode);
+                if (opcode == LDC) {
+                    out.writeByte(instruction.operand());
+                } else {
+                    out.writeShort(instruction.operand());
+                }
+            }
+            case JUMP -> {
+                var target = instruction.target();
+                if (target.offset < 0) {
+                    throw new RuntimeException("Jump to label '" + target.getName() + "' that was never placed");
+                }
+
+                var jump = target.offset - out.size();
+                if (jump < Short.MIN_VALUE || jump > Short.MAX_VALUE) {
+                    throw new RuntimeException("Jump to label '" + target.getName() + "' is too long");
+                }
+
+                out.writeByte(opcode);
+                out.writeShort(jump);
+            }
+            case MEMBER -> {
+                out.writeByte(opcode);
+                out.writeShort(instruction.operand());
+                if (opcode == INVOKEINTERFACE) {
+                    out.writeByte(instruction.extra());
+                    out.writeByte(0);
+                }
+            }
+            case CLASS -> {
+                out.writeByte(opcode);
+                out.writeShort(instruction.operand());
+            }
+            case NEWARRAY -> {
+                out.writeByte(opcode);
+                out.writeByte(instruction.operand());
+            }
+        }
+    }
+
+    /**
+     * Prints the instructions as the body of a Jasmin method.
+     */
+    public void appendJasmin(StringBuilder code, String indent) {
+        for (var instruction : instructions) {
+            if (instruction.kind() == Kind.LABEL) {
+                code.append(instruction.target().getName()).append(":\n");
+                continue;
+            }
+
+            code.append(indent).append(NAMES[instruction.opcode()]);
+
+            switch (instruction.kind()) {
+                case LOCAL, INT -> code.append(" ").append(instruction.operand());
+                case IINC -> code.append(" ").append(instruction.operand()).append(" ").append(instruction.extra());
+                case LDC -> code.append(" ").append(instruction.extra());
+                case JUMP -> code.append(" ").append(instruction.target().getName());
+                case MEMBER -> {
+                    code.append(" ").append(instruction.owner()).append("/").append(instruction.name());
+                    if (instruction.descriptor().startsWith("(")) {
+                        code.append(instruction.descriptor());
+                    } else {
+                        code.append(" ").append(instruction.descriptor());
+                    }
+
+                    if (instruction.opcode() == INVOKEINTERFACE) {
+                        code.append(" ").append(instruction.extra());
+                    }
+                }
+                case CLASS -> code.append(" ").append(instruction.owner());
+                case NEWARRAY -> code.append(" ").append(ARRAY_TYPES[instruction.operand()]);
+                default -> {
+                }
+            }
+
+            code.append("\n");
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+/**
+ * Backend that writes class files directly from OLLIR. The returned result is a {@link ClassFileResult}.
+ */
+public class ClassFileBackend implements JasminBackend {
+
+    @Override
+    public JasminResult toJasmin(OllirResult ollirResult) {
+
+        var generator = new ClassFileGenerator(ollirResult);
+        var classFile = generator.build();
+
+        return new ClassFileResult(ollirResult, classFile, generator.getReports());
+    }
+
+}
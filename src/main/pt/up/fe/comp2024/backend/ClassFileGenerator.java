@@ -0,0 +1,592 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.backend.BytecodeBuilder.Label;
+import pt.up.fe.comp2024.optimization.AlgebraicSimplification;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static pt.up.fe.comp2024.backend.BytecodeBuilder.*;
+import static pt.up.fe.comp2024.backend.ClassFileWriter.*;
+
+/**
+ * Generates a class file directly from an OllirResult, without going through Jasmin code.
+ * <p>
+ * One ClassFileGenerator instance per OllirResult.
+ */
+public class ClassFileGenerator {
+
+    private final ClassUnit classUnit;
+    private final String superClass;
+    // literal operands are only simplified when compiling with optimizations
+    private final boolean simplify;
+
+    private final List<Report> reports;
+
+    private ClassFileWriter writer;
+
+    private Method currentMethod;
+    private BytecodeBuilder code;
+    private Map<String, Label> labels;
+
+    public ClassFileGenerator(OllirResult ollirResult) {
+        this.classUnit = ollirResult.getOllirClass();
+
+        var superClass = classUnit.getSuperClass();
+        this.superClass = superClass == null || superClass.equals("Object") ?
+                "java/lang/Object" :
+                getImportedClassName(superClass);
+        this.simplify = CompilerConfig.getOptimize(ollirResult.getConfig());
+
+        reports = new ArrayList<>();
+        writer = null;
+        currentMethod = null;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public ClassFileWriter build() {
+
+        // This way, build is idempotent
+        if (writer == null) {
+            writer = generateClassUnit();
+        }
+
+        return writer;
+    }
+
+    private ClassFileWriter generateClassUnit() {
+        var access = getAccessFlags(classUnit.getClassAccessModifier());
+        if (classUnit.isFinalClass()) {
+            access |= ACC_FINAL;
+        }
+
+        var classFile = new ClassFileWriter(access, classUnit.getClassName(), superClass);
+
+        for (var field : classUnit.getFields()) {
+            var fieldAccess = getAccessFlags(field.getFieldAccessModifier());
+            if (field.isStaticField()) {
+                fieldAccess |= ACC_STATIC;
+            }
+            if (field.isFinalField()) {
+                fieldAccess |= ACC_FINAL;
+            }
+
+            classFile.addField(fieldAccess, field.getFieldName(), getDescriptor(field.getFieldType()));
+        }
+
+        // a single constructor, that receives no arguments and calls the one of the superclass
+        var constructor = classFile.newCode();
+        constructor.aload(0);
+        constructor.invoke(INVOKESPECIAL, superClass, "<init>", "()V");
+        constructor.add(RETURN);
+        classFile.addMethod(ACC_PUBLIC, "<init>", "()V", constructor, 1);
+
+        for (var method : classUnit.getMethods()) {
+
+            // Ignore constructor, it was already added
+            if (method.isConstructMethod()) {
+                continue;
+            }
+
+            generateMethod(method, classFile);
+        }
+
+        return classFile;
+    }
+
+    private void generateMethod(Method method, ClassFileWriter classFile) {
+        currentMethod = method;
+        code = classFile.newCode();
+        labels = new HashMap<>();
+
+        var access = getAccessFlags(method.getMethodAccessModifier());
+        if (method.isStaticMethod()) {
+            access |= ACC_STATIC;
+        }
+        if (method.isFinalMethod()) {
+            access |= ACC_FINAL;
+        }
+
+        var descriptor = method.getParams().stream()
+                .map(param -> getDescriptor(param.getType()))
+                .collect(Collectors.joining("", "(", ")")) + getDescriptor(method.getReturnType());
+
+        // 'this' and the parameters always take the first registers, even if unused
+        var maxLocals = method.getParams().size() + (method.isStaticMethod() ? 0 : 1);
+        for (var variable : method.getVarTable().values()) {
+            maxLocals = Math.max(maxLocals, variable.getVirtualReg() + 1);
+        }
+
+        for (var instruction : method.getInstructions()) {
+            for (var label : method.getLabels(instruction)) {
+                code.mark(getLabel(label));
+            }
+
+            generateInstruction(instruction);
+        }
+
+        classFile.addMethod(access, method.getMethodName(), descriptor, code, maxLocals);
+
+        currentMethod = null;
+        code = null;
+        labels = null;
+    }
+
+    private Label getLabel(String name) {
+        return labels.computeIfAbsent(name, code::newLabel);
+    }
+
+    private void generateInstruction(Instruction instruction) {
+        switch (instruction.getInstType()) {
+            case ASSIGN -> generateAssign((AssignInstruction) instruction);
+            case GOTO -> code.jump(GOTO, getLabel(((GotoInstruction) instruction).getLabel()));
+            case BRANCH -> generateBranch((CondBranchInstruction) instruction);
+            case RETURN -> generateReturn((ReturnInstruction) instruction);
+            case PUTFIELD -> generatePutField((PutFieldInstruction) instruction);
+            default -> {
+                // calls and expressions used as statements, their value is discarded
+                var type = generateValue(instruction);
+                if (type.getTypeOfElement() != ElementType.VOID) {
+                    code.add(POP);
+                }
+            }
+        }
+    }
+
+    private void generateAssign(AssignInstruction assign) {
+        var dest = assign.getDest();
+
+        if (dest instanceof ArrayOperand arrayOperand) {
+            code.aload(getRegister(arrayOperand.getName()));
+            load(arrayOperand.getIndexOperands().get(0));
+            generateValue(assign.getRhs());
+            code.add(isReference(arrayOperand.getType()) ? AASTORE : IASTORE);
+            return;
+        }
+
+        if (!(dest instanceof Operand operand)) {
+            throw new NotImplementedException(dest.getClass());
+        }
+
+        var reg = getRegister(operand.getName());
+
+        if (generateIinc(reg, operand, assign.getRhs())) {
+            return;
+        }
+
+        generateValue(assign.getRhs());
+
+        if (isReference(getVariableType(operand))) {
+            code.astore(reg);
+        } else {
+            code.istore(reg);
+        }
+    }
+
+    /**
+     * Uses iinc for assignments of the form a = a + c and a = a - c, with c a small constant.
+     *
+     * @return true if the assignment was generated
+     */
+    private boolean generateIinc(int reg, Operand dest, Instruction rhs) {
+        if (!(rhs instanceof BinaryOpInstruction binaryOp) || isReference(getVariableType(dest))) {
+            return false;
+        }
+
+        var opType = binaryOp.getOperation().getOpType();
+        if (opType != OperationType.ADD && opType != OperationType.SUB) {
+            return false;
+        }
+
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        LiteralElement constant;
+        if (isVariable(left, dest.getName()) && right instanceof LiteralElement literal) {
+            constant = literal;
+        } else if (opType == OperationType.ADD && isVariable(right, dest.getName())
+                && left instanceof LiteralElement literal) {
+            constant = literal;
+        } else {
+            return false;
+        }
+
+        var increment = getIntLiteral(constant);
+        if (opType == OperationType.SUB) {
+            increment = -increment;
+        }
+
+        if (!InstructionSelector.fitsIinc(increment)) {
+            return false;
+        }
+
+        code.iinc(reg, increment);
+        return true;
+    }
+
+    private static boolean isVariable(Element element, String name) {
+        return element instanceof Operand operand && !(element instanceof ArrayOperand)
+                && operand.getName().equals(name);
+    }
+
+    private void generateBranch(CondBranchInstruction branch) {
+        var target = getLabel(branch.getLabel());
+        var condition = branch.getCondition();
+
+        if (condition instanceof BinaryOpInstruction binaryOp && isComparison(binaryOp.getOperation().getOpType())) {
+            generateComparison(binaryOp, target);
+            return;
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp && unaryOp.getOperation().getOpType() == OperationType.NOTB) {
+            load(unaryOp.getOperand());
+            code.jump(IFEQ, target);
+            return;
+        }
+
+        generateValue(condition);
+        code.jump(IFNE, target);
+    }
+
+    private void generateReturn(ReturnInstruction returnInst) {
+        if (!returnInst.hasReturnValue()) {
+            code.add(RETURN);
+            return;
+        }
+
+        load(returnInst.getOperand());
+        code.add(isReference(returnInst.getReturnType()) ? ARETURN : IRETURN);
+    }
+
+    private void generatePutField(PutFieldInstruction putField) {
+        load(putField.getObject());
+        load(putField.getValue());
+
+        var field = putField.getField();
+        code.field(PUTFIELD, getOwner(putField.getObject()), field.getName(), getDescriptor(field.getType()));
+    }
+
+    /**
+     * Pushes the value of the given instruction.
+     *
+     * @return the type of the pushed value
+     */
+    private Type generateValue(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case NOPER -> {
+                var operand = ((SingleOpInstruction) instruction).getSingleOperand();
+                load(operand);
+                yield operand.getType();
+            }
+            case BINARYOPER -> generateBinaryOp((BinaryOpInstruction) instruction);
+            case UNARYOPER -> generateUnaryOp((UnaryOpInstruction) instruction);
+            case CALL -> generateCall((CallInstruction) instruction);
+            case GETFIELD -> {
+                var getField = (GetFieldInstruction) instruction;
+                var field = getField.getField();
+
+                load(getField.getObject());
+                code.field(GETFIELD, getOwner(getField.getObject()), field.getName(), getDescriptor(field.getType()));
+                yield field.getType();
+            }
+            default -> throw new NotImplementedException(instruction.getInstType());
+        };
+    }
+
+    private Type generateBinaryOp(BinaryOpInstruction binaryOp) {
+        var opType = binaryOp.getOperation().getOpType();
+
+        if (isComparison(opType)) {
+            // materialize the boolean
+            var isTrue = code.newLabel();
+            var end = code.newLabel();
+
+            generateComparison(binaryOp, isTrue);
+            code.iconst(0);
+            code.jump(GOTO, end);
+            code.mark(isTrue);
+            code.iconst(1);
+            code.mark(end);
+
+            return new Type(ElementType.BOOLEAN);
+        }
+
+        // literal operands may make the operation cheaper, or unnecessary
+        var simplified = simplify ? AlgebraicSimplification.simplify(binaryOp) : binaryOp;
+        if (simplified != binaryOp) {
+            return generateValue(simplified);
+        }
+
+        load(binaryOp.getLeftOperand());
+        load(binaryOp.getRightOperand());
+
+        code.add(switch (opType) {
+            case ADD -> IADD;
+            case SUB -> ISUB;
+            case MUL -> IMUL;
+            case DIV -> IDIV;
+            case SHL -> ISHL;
+            case SHR -> ISHR;
+            case SHRR -> IUSHR;
+            case XOR -> IXOR;
+            case AND, ANDB -> IAND;
+            case OR, ORB -> IOR;
+            default -> throw new NotImplementedException(opType);
+        });
+
+        return binaryOp.getOperation().getTypeInfo();
+    }
+
+    /**
+     * Jumps to the given label if the comparison holds. Comparisons with zero use the single operand jumps.
+     */
+    private void generateComparison(BinaryOpInstruction binaryOp, Label target) {
+        var opType = binaryOp.getOperation().getOpType();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        if (isZero(right)) {
+            load(left);
+            code.jump(InstructionSelector.getZeroComparisonOpcode(opType), target);
+        } else if (isZero(left)) {
+            load(right);
+            code.jump(InstructionSelector.getZeroComparisonOpcode(InstructionSelector.swap(opType)), target);
+        } else {
+            load(left);
+            load(right);
+            code.jump(InstructionSelector.getComparisonOpcode(opType), target);
+        }
+    }
+
+    private Type generateUnaryOp(UnaryOpInstruction unaryOp) {
+        var opType = unaryOp.getOperation().getOpType();
+
+        load(unaryOp.getOperand());
+
+        switch (opType) {
+            case NOTB -> {
+                code.iconst(1);
+                code.add(IXOR);
+            }
+            case SUB -> code.add(INEG);
+            default -> throw new NotImplementedException(opType);
+        }
+
+        return unaryOp.getOperation().getTypeInfo();
+    }
+
+    private Type generateCall(CallInstruction call) {
+        var returnType = call.getReturnType();
+
+        switch (call.getInvocationType()) {
+            case invokestatic -> {
+                var owner = getImportedClassName(((Operand) call.getCaller()).getName());
+                loadArguments(call);
+                code.invoke(INVOKESTATIC, owner, getMethodName(call), getMethodDescriptor(call));
+            }
+            case invokevirtual, invokeinterface -> {
+                load(call.getCaller());
+                loadArguments(call);
+
+                var opcode = call.getInvocationType() == CallType.invokevirtual ? INVOKEVIRTUAL : INVOKEINTERFACE;
+                code.invoke(opcode, getOwner(call.getCaller()), getMethodName(call), getMethodDescriptor(call));
+            }
+            case invokespecial -> {
+                var caller = call.getCaller();
+                var owner = caller.getType().getTypeOfElement() == ElementType.THIS ?
+                        superClass :
+                        getOwner(caller);
+
+                load(caller);
+                loadArguments(call);
+                code.invoke(INVOKESPECIAL, owner, "<init>", getMethodDescriptor(call));
+            }
+            case NEW -> {
+                if (returnType.getTypeOfElement() == ElementType.ARRAYREF) {
+                    load(call.getArguments().get(0));
+                    generateNewArray((ArrayType) returnType);
+                } else {
+                    code.type(NEW, getImportedClassName(((Operand) call.getCaller()).getName()));
+                }
+            }
+            case arraylength -> {
+                load(call.getCaller());
+                code.add(ARRAYLENGTH);
+            }
+            default -> throw new NotImplementedException("Invocation type not supported: " + call.getInvocationType());
+        }
+
+        return returnType;
+    }
+
+    private void generateNewArray(ArrayType arrayType) {
+        var elementType = arrayType.getElementType();
+
+        switch (elementType.getTypeOfElement()) {
+            case INT32 -> code.newarray(T_INT);
+            case BOOLEAN -> code.newarray(4);
+            default -> {
+                var descriptor = getDescriptor(elementType);
+                // anewarray takes the class name, without L and ;
+                code.type(ANEWARRAY, descriptor.substring(1, descriptor.length() - 1));
+            }
+        }
+    }
+
+    private void loadArguments(CallInstruction call) {
+        for (var argument : call.getArguments()) {
+            load(argument);
+        }
+    }
+
+    /**
+     * Pushes the value of an element.
+     */
+    private void load(Element element) {
+        if (element instanceof LiteralElement literal) {
+            code.iconst(getIntLiteral(literal));
+            return;
+        }
+
+        if (element instanceof ArrayOperand arrayOperand) {
+            code.aload(getRegister(arrayOperand.getName()));
+            load(arrayOperand.getIndexOperands().get(0));
+            code.add(isReference(arrayOperand.getType()) ? AALOAD : IALOAD);
+            return;
+        }
+
+        var operand = (Operand) element;
+        if (operand.getType().getTypeOfElement() == ElementType.THIS) {
+            code.aload(0);
+            return;
+        }
+
+        var reg = getRegister(operand.getName());
+        if (isReference(getVariableType(operand))) {
+            code.aload(reg);
+        } else {
+            code.iload(reg);
+        }
+    }
+
+    private int getRegister(String name) {
+        var descriptor = currentMethod.getVarTable().get(name);
+
+        if (descriptor == null) {
+            throw new RuntimeException("Variable '" + name + "' not found in method '"
+                    + currentMethod.getMethodName() + "'");
+        }
+
+        return descriptor.getVirtualReg();
+    }
+
+    private Type getVariableType(Operand operand) {
+        var descriptor = currentMethod.getVarTable().get(operand.getName());
+        return descriptor != null ? descriptor.getVarType() : operand.getType();
+    }
+
+    private static int getIntLiteral(LiteralElement literal) {
+        var value = literal.getLiteral();
+
+        return switch (value) {
+            case "true" -> 1;
+            case "false" -> 0;
+            default -> Integer.parseInt(value);
+        };
+    }
+
+    private static boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && getIntLiteral(literal) == 0;
+    }
+
+    private static boolean isReference(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32, BOOLEAN -> false;
+            default -> true;
+        };
+    }
+
+    private static boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, GTH, EQ, NEQ, LTE, GTE -> true;
+            default -> false;
+        };
+    }
+
+    private String getMethodName(CallInstruction call) {
+        return ((LiteralElement) call.getMethodName()).getLiteral().replace("\"", "");
+    }
+
+    private String getMethodDescriptor(CallInstruction call) {
+        return call.getArguments().stream()
+                .map(argument -> getDescriptor(argument.getType()))
+                .collect(Collectors.joining("", "(", ")")) + getDescriptor(call.getReturnType());
+    }
+
+    /**
+     * @return the class that declares the members accessed through the given object
+     */
+    private String getOwner(Element object) {
+        var type = object.getType();
+
+        if (type.getTypeOfElement() == ElementType.THIS) {
+            return classUnit.getClassName();
+        }
+
+        return getImportedClassName(((ClassType) type).getName());
+    }
+
+    private String getDescriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case VOID -> "V";
+            case STRING -> "Ljava/lang/String;";
+            case THIS -> "L" + classUnit.getClassName() + ";";
+            case OBJECTREF, CLASS -> "L" + getImportedClassName(((ClassType) type).getName()) + ";";
+            case ARRAYREF -> {
+                var arrayType = (ArrayType) type;
+                yield "[".repeat(Math.max(1, arrayType.getNumDimensions()))
+                        + getDescriptor(arrayType.getElementType());
+            }
+        };
+    }
+
+    private String getImportedClassName(String basicClassName) {
+
+        if (basicClassName.equals("this") || basicClassName.equals(classUnit.getClassName())) {
+            return classUnit.getClassName();
+        }
+
+        if (classUnit.isImportedClass(basicClassName)) {
+            var suffix = "." + basicClassName;
+            for (var imp : classUnit.getImports()) {
+                if (imp.endsWith(suffix)) {
+                    return imp.replace('.', '/');
+                }
+            }
+        }
+
+        return basicClassName;
+    }
+
+    private static int getAccessFlags(AccessModifier modifier) {
+        return switch (modifier) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            default -> 0;
+        };
+    }
+}
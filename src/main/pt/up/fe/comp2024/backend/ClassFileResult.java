@@ -0,0 +1,45 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.util.List;
+
+/**
+ * Result of the class file backend, which already holds the bytes of the class.
+ * <p>
+ * The Jasmin code is only printed when asked for, it is not needed to obtain the class.
+ */
+public class ClassFileResult extends JasminResult {
+
+    private final ClassFileWriter classFile;
+    private final byte[] classBytes;
+
+    private String jasminCode;
+
+    public ClassFileResult(OllirResult ollirResult, ClassFileWriter classFile, List<Report> reports) {
+        super(ollirResult, null, reports);
+
+        this.classFile = classFile;
+        this.classBytes = classFile.toByteArray();
+        this.jasminCode = null;
+    }
+
+    public byte[] getClassBytes() {
+        return classBytes;
+    }
+
+    public AssembledClass toAssembledClass() {
+        return new AssembledClass(classFile.getClassName().replace('/', '.'), classBytes);
+    }
+
+    @Override
+    public synchronized String getJasminCode() {
+        if (jasminCode == null) {
+            jasminCode = classFile.toJasmin();
+        }
+
+        return jasminCode;
+    }
+}
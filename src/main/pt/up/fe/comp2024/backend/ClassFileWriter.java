@@ -0,0 +1,189 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the fields and methods of a class and writes them as a class file.
+ * <p>
+ * Class files use version 45.3, the same as Jasmin, so that methods do not need a StackMapTable.
+ */
+public class ClassFileWriter {
+
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_PROTECTED = 0x0004;
+    public static final int ACC_STATIC = 0x0008;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MINOR_VERSION = 3;
+    private static final int MAJOR_VERSION = 45;
+
+    private record FieldInfo(int access, String name, String descriptor) {
+    }
+
+    private record MethodInfo(int access, String name, String descriptor, BytecodeBuilder code, int maxLocals) {
+    }
+
+    private final ConstantPool constantPool;
+    private final int access;
+    private final String className;
+    private final String superClass;
+    private final List<FieldInfo> fields;
+    private final List<MethodInfo> methods;
+
+    /**
+     * @param access     access flags of the class, ACC_SUPER is always added
+     * @param className  internal name of the class
+     * @param superClass internal name of the superclass
+     */
+    public ClassFileWriter(int access, String className, String superClass) {
+        this.constantPool = new ConstantPool();
+        this.access = access | ACC_SUPER;
+        this.className = className;
+        this.superClass = superClass;
+        this.fields = new ArrayList<>();
+        this.methods = new ArrayList<>();
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    public String getSuperClass() {
+        return superClass;
+    }
+
+    public void addField(int access, String name, String descriptor) {
+        fields.add(new FieldInfo(access, name, descriptor));
+    }
+
+    /**
+     * @return a builder for the code of a new method, sharing the constant pool of the class
+     */
+    public BytecodeBuilder newCode() {
+        return new BytecodeBuilder(constantPool);
+    }
+
+    /**
+     * @param maxLocals the number of local variables of the method, raised if the code uses more
+     */
+    public void addMethod(int access, String name, String descriptor, BytecodeBuilder code, int maxLocals) {
+        methods.add(new MethodInfo(access, name, descriptor, code, Math.max(maxLocals, code.getMaxLocals())));
+    }
+
+    public byte[] toByteArray() {
+        // encode everything that adds constants before writing the pool
+        var thisIndex = constantPool.classRef(className);
+        var superIndex = constantPool.classRef(superClass);
+        var codeIndex = constantPool.utf8("Code");
+
+        var members = new ByteArrayOutputStream();
+        var membersOut = new DataOutputStream(members);
+
+        try {
+            membersOut.writeShort(fields.size());
+            for (var field : fields) {
+                membersOut.writeShort(field.access());
+                membersOut.writeShort(constantPool.utf8(field.name()));
+                membersOut.writeShort(constantPool.utf8(field.descriptor()));
+                membersOut.writeShort(0);
+            }
+
+            membersOut.writeShort(methods.size());
+            for (var method : methods) {
+                var bytecode = method.code().toByteArray();
+
+                membersOut.writeShort(method.access());
+                membersOut.writeShort(constantPool.utf8(method.name()));
+                membersOut.writeShort(constantPool.utf8(method.descriptor()));
+
+                // a single Code attribute, without exception table or attributes of its own
+                membersOut.writeShort(1);
+                membersOut.writeShort(codeIndex);
+                membersOut.writeInt(2 + 2 + 4 + bytecode.length + 2 + 2);
+                membersOut.writeShort(method.code().getMaxStack());
+                membersOut.writeShort(method.maxLocals());
+                membersOut.writeInt(bytecode.length);
+                membersOut.write(bytecode);
+                membersOut.writeShort(0);
+                membersOut.writeShort(0);
+            }
+
+            // no class attributes
+            membersOut.writeShort(0);
+
+            var bytes = new ByteArrayOutputStream(members.size() + 1024);
+            var out = new DataOutputStream(bytes);
+
+            out.writeInt(MAGIC);
+            out.writeShort(MINOR_VERSION);
+            out.writeShort(MAJOR_VERSION);
+            constantPool.writeTo(out);
+            out.writeShort(access);
+            out.writeShort(thisIndex);
+            out.writeShort(superIndex);
+            // no interfaces
+            out.writeShort(0);
+            members.writeTo(out);
+
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the class as Jasmin code, meant for debugging
+     */
+    public String toJasmin() {
+        var code = new StringBuilder();
+
+        code.append(".class ").append(getModifiers(access & ~ACC_SUPER)).append(className).append("\n");
+        code.append(".super ").append(superClass).append("\n\n");
+
+        for (var field : fields) {
+            code.append(".field ").append(getModifiers(field.access())).append(field.name()).append(" ")
+                    .append(field.descriptor()).append("\n");
+        }
+
+        for (var method : methods) {
+            code.append("\n.method ").append(getModifiers(method.access())).append(method.name())
+                    .append(method.descriptor()).append("\n");
+            code.append("   .limit stack ").append(method.code().getMaxStack()).append("\n");
+            code.append("   .limit locals ").append(method.maxLocals()).append("\n");
+            method.code().appendJasmin(code, "   ");
+            code.append(".end method\n");
+        }
+
+        return code.toString();
+    }
+
+    private static String getModifiers(int access) {
+        var modifiers = new StringBuilder();
+
+        if ((access & ACC_PUBLIC) != 0) {
+            modifiers.append("public ");
+        }
+        if ((access & ACC_PRIVATE) != 0) {
+            modifiers.append("private ");
+        }
+        if ((access & ACC_PROTECTED) != 0) {
+            modifiers.append("protected ");
+        }
+        if ((access & ACC_STATIC) != 0) {
+            modifiers.append("static ");
+        }
+        if ((access & ACC_FINAL) != 0) {
+            modifiers.append("final ");
+        }
+
+        return modifiers.toString();
+    }
+}
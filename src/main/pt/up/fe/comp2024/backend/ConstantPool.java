@@ -0,0 +1,174 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constant pool of a class file under construction.
+ * <p>
+ * Entries are encoded as soon as they are added, and equal entries share the same index.
+ */
+public class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int INTERFACE_METHOD_REF = 11;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream out;
+    private final Map<String, Integer> indexes;
+
+    // index 0 is not used
+    private int count;
+
+    public ConstantPool() {
+        this.bytes = new ByteArrayOutputStream();
+        this.out = new DataOutputStream(bytes);
+        this.indexes = new HashMap<>();
+        this.count = 1;
+    }
+
+    public int utf8(String value) {
+        var key = "U" + value;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        try {
+            out.writeByte(UTF8);
+            // class files use the same modified UTF-8 as DataOutput
+            out.writeUTF(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return newIndex(key);
+    }
+
+    public int integer(int value) {
+        var key = "I" + value;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        write(INTEGER);
+        writeInt(value);
+
+        return newIndex(key);
+    }
+
+    /**
+     * @param internalName name of the class with '/' as separator, e.g. java/lang/Object
+     */
+    public int classRef(String internalName) {
+        var key = "C" + internalName;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        var name = utf8(internalName);
+
+        write(CLASS);
+        writeShort(name);
+
+        return newIndex(key);
+    }
+
+    public int nameAndType(String name, String descriptor) {
+        var key = "N" + name + " " + descriptor;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        var nameIndex = utf8(name);
+        var descriptorIndex = utf8(descriptor);
+
+        write(NAME_AND_TYPE);
+        writeShort(nameIndex);
+        writeShort(descriptorIndex);
+
+        return newIndex(key);
+    }
+
+    public int fieldRef(String owner, String name, String descriptor) {
+        return memberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    public int methodRef(String owner, String name, String descriptor) {
+        return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    public int interfaceMethodRef(String owner, String name, String descriptor) {
+        return memberRef(INTERFACE_METHOD_REF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+        var key = tag + ":" + owner + "." + name + " " + descriptor;
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        var classIndex = classRef(owner);
+        var nameAndTypeIndex = nameAndType(name, descriptor);
+
+        write(tag);
+        writeShort(classIndex);
+        writeShort(nameAndTypeIndex);
+
+        return newIndex(key);
+    }
+
+    /**
+     * Writes the constant pool count followed by the entries.
+     */
+    public void writeTo(DataOutputStream classOut) throws IOException {
+        classOut.writeShort(count);
+        bytes.writeTo(classOut);
+    }
+
+    private int newIndex(String key) {
+        if (count >= 0xFFFF) {
+            throw new RuntimeException("Constant pool is limited to 65535 entries");
+        }
+
+        indexes.put(key, count);
+        return count++;
+    }
+
+    private void write(int value) {
+        try {
+            out.writeByte(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeShort(int value) {
+        try {
+            out.writeShort(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeInt(int value) {
+        try {
+            out.writeInt(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import static pt.up.fe.comp2024.backend.BytecodeBuilder.*;
+
+/**
+ * Picks the shortest encoding of the instructions that have several, so that both backends emit the same code.
+ * <p>
+ * The choices are made on opcodes, which {@link BytecodeBuilder} encodes directly. The methods that return text print
+ * the chosen instruction with its operands for the Jasmin backend.
+ */
+public final class InstructionSelector {
+
+    private InstructionSelector() {
+    }
+
+    /**
+     * @return iconst_m1 to iconst_5, bipush, sipush or ldc, the first that can push the value
+     */
+    public static int getConstantOpcode(int value) {
+        if (value >= -1 && value <= 5) {
+            return ICONST_M1 + value + 1;
+        }
+
+        if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            return BIPUSH;
+        }
+
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE ? SIPUSH : LDC;
+    }
+
+    /**
+     * @param opcode ILOAD, ALOAD, ISTORE or ASTORE
+     * @return the form without operand for registers 0 to 3, the given opcode otherwise
+     */
+    public static int getLocalOpcode(int opcode, int reg) {
+        if (reg < 0 || reg > 3) {
+            return opcode;
+        }
+
+        return reg + switch (opcode) {
+            case ILOAD -> ILOAD_0;
+            case ALOAD -> ALOAD_0;
+            case ISTORE -> ISTORE_0;
+            case ASTORE -> ASTORE_0;
+            default -> throw new RuntimeException("Not a local variable instruction: " + getName(opcode));
+        };
+    }
+
+    /**
+     * @return true if iinc can add the value to a register, in its wide form if the value does not fit in a byte
+     */
+    public static boolean fitsIinc(int increment) {
+        return increment >= Short.MIN_VALUE && increment <= Short.MAX_VALUE;
+    }
+
+    /**
+     * @return the jump taken when the comparison of two ints holds
+     */
+    public static int getComparisonOpcode(OperationType opType) {
+        return switch (opType) {
+            case LTH -> IF_ICMPLT;
+            case GTH -> IF_ICMPGT;
+            case EQ -> IF_ICMPEQ;
+            case NEQ -> IF_ICMPNE;
+            case LTE -> IF_ICMPLE;
+            case GTE -> IF_ICMPGE;
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    /**
+     * @return the jump taken when the comparison of an int with zero holds
+     */
+    public static int getZeroComparisonOpcode(OperationType opType) {
+        return switch (opType) {
+            case LTH -> IFLT;
+            case GTH -> IFGT;
+            case EQ -> IFEQ;
+            case NEQ -> IFNE;
+            case LTE -> IFLE;
+            case GTE -> IFGE;
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    /**
+     * @return the comparison that gives the same result with the operands swapped
+     */
+    public static OperationType swap(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case GTH -> OperationType.LTH;
+            case LTE -> OperationType.GTE;
+            case GTE -> OperationType.LTE;
+            default -> opType;
+        };
+    }
+
+    /**
+     * @return the Jasmin instruction that pushes the value
+     */
+    public static String constant(int value) {
+        var opcode = getConstantOpcode(value);
+        return opcode == BIPUSH || opcode == SIPUSH || opcode == LDC ? getName(opcode) + " " + value : getName(opcode);
+    }
+
+    /**
+     * @return the Jasmin instruction that pushes the value of the register
+     */
+    public static String load(boolean isReference, int reg) {
+        return local(isReference ? ALOAD : ILOAD, reg);
+    }
+
+    /**
+     * @return the Jasmin instruction that pops a value into the register
+     */
+    public static String store(boolean isReference, int reg) {
+        return local(isReference ? ASTORE : ISTORE, reg);
+    }
+
+    /**
+     * @return the Jasmin iinc instruction, which Jasmin widens when needed
+     */
+    public static String iinc(int reg, int increment) {
+        if (!fitsIinc(increment)) {
+            throw new RuntimeException("Increment out of range for iinc: " + increment);
+        }
+
+        return "iinc " + reg + " " + increment;
+    }
+
+    private static String local(int opcode, int reg) {
+        var selected = getLocalOpcode(opcode, reg);
+        return selected == opcode ? getName(opcode) + " " + reg : getName(selected);
+    }
+}
@@ -0,0 +1,51 @@
+package pt.up.fe.comp2024.backend;
+
+import jasmin.ClassFile;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+
+/**
+ * Assembles Jasmin code into class file bytes in memory, using the Jasmin classes directly instead of going through
+ * temporary files.
+ */
+public class JasminAssembler {
+
+    // the Jasmin scanner keeps its buffer size in a static field, assembling must not happen concurrently
+    private static final Object LOCK = new Object();
+
+    public static AssembledClass assemble(JasminResult jasminResult) {
+        return assemble(jasminResult.getClassName(), jasminResult.getJasminCode());
+    }
+
+    /**
+     * @param name       name used in error messages, usually the name of the class
+     * @param jasminCode
+     * @return the assembled class
+     */
+    public static AssembledClass assemble(String name, String jasminCode) {
+        synchronized (LOCK) {
+            try {
+                var classFile = new ClassFile();
+                classFile.readJasmin(new BufferedReader(new StringReader(jasminCode)), name, true);
+
+                if (classFile.errorCount() > 0) {
+                    throw new RuntimeException("Found " + classFile.errorCount()
+                            + " errors while assembling Jasmin code:\n" + jasminCode);
+                }
+
+                var bytes = new ByteArrayOutputStream();
+                classFile.write(bytes);
+
+                return new AssembledClass(classFile.getClassName().replace('/', '.'), bytes.toByteArray());
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("Exception while assembling Jasmin code: " + e.getMessage()
+                        + "\nCode: " + jasminCode, e);
+            }
+        }
+    }
+}
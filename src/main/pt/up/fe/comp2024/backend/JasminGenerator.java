@@ -4,27 +4,32 @@ import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.specs.util.classmap.FunctionClassMap;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.optimization.AlgebraicSimplification;
+import pt.up.fe.specs.util.classmap.BiConsumerClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
-import pt.up.fe.specs.util.utilities.StringLines;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import static org.specs.comp.ollir.InstructionType.*;
 import static org.specs.comp.ollir.OperationType.*;
+import static pt.up.fe.comp2024.backend.BytecodeBuilder.getName;
 
 
 /**
  * Generates Jasmin code from an OllirResult.
  * <p>
+ * Generators write their code into a shared {@link JasminWriter}, which streams it to the output.
+ * <p>
  * One JasminGenerator instance per OllirResult.
  */
 public class JasminGenerator {
 
     private static final String NL = "\n";
-    private static final String TAB = "   ";
 
     private final OllirResult ollirResult;
 
@@ -34,19 +39,22 @@ public class JasminGenerator {
 
     Method currentMethod;
 
-    int stack_value;
-
-    int curr_stack_value;
+    // labels of each instruction of the current method
+    Map<Instruction, List<String>> instructionLabels;
 
     int locals_value;
 
-    int stackVariation;
-
     int array_length = 0;
 
     int label_control = 0;
 
-    private final FunctionClassMap<TreeNode, String> generators;
+    private final BiConsumerClassMap<TreeNode, JasminWriter> generators;
+
+    // null when compiling without optimizations
+    private final PeepholeOptimizer peephole;
+
+    // literal operands are only simplified when compiling with optimizations
+    private final boolean simplify;
 
     public JasminGenerator(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
@@ -55,11 +63,13 @@ public class JasminGenerator {
         code = null;
         currentMethod = null;
 
-        this.generators = new FunctionClassMap<>();
-        generators.put(ClassUnit.class, this::generateClassUnit);
+        var optimize = CompilerConfig.getOptimize(ollirResult.getConfig());
+        this.peephole = optimize ? new PeepholeOptimizer() : null;
+        this.simplify = optimize;
+
+        this.generators = new BiConsumerClassMap<>();
         generators.put(PutFieldInstruction.class, this::generatePutFieldInstruction);
         generators.put(GetFieldInstruction.class, this::generateGetFieldInstruction);
-        generators.put(Method.class, this::generateMethod);
         generators.put(AssignInstruction.class, this::generateAssign);
         generators.put(CallInstruction.class, this::generateCallInstruction);
         generators.put(SingleOpInstruction.class, this::generateSingleOp);
@@ -73,16 +83,11 @@ public class JasminGenerator {
         generators.put(UnaryOpInstruction.class, this::generateUnaryOp);
     }
 
-    private String generateLoadArray(ArrayOperand arrayOperand) {
-        var code = new StringBuilder();
-        this.curr_stack_value++;
-        maxStackValue();
+    private void generateLoadArray(ArrayOperand arrayOperand, JasminWriter out) {
         int reg = currentMethod.getVarTable().get(arrayOperand.getName()).getVirtualReg();
-        code.append(NL).append("aload").append(reg < 4 ? '_' : ' ').append(reg).append(NL);
-        code.append(generators.apply(arrayOperand.getIndexOperands().get(0))).append(NL).append("iaload").append(NL);
-        this.curr_stack_value--;
-        maxStackValue();
-        return code.toString();
+        out.append(NL).append(InstructionSelector.load(true, reg)).append(NL);
+        generators.accept(arrayOperand.getIndexOperands().get(0), out);
+        out.append(NL).append("iaload").append(NL);
     }
 
     public List<Report> getReports() {
@@ -93,29 +98,41 @@ public class JasminGenerator {
 
         // This way, build is idempotent
         if (code == null) {
-            code = generators.apply(ollirResult.getOllirClass());
+            var output = new StringBuilder();
+            build(output);
+            code = output.toString();
         }
 
         return code;
     }
 
-    private String generateClassUnit(ClassUnit classUnit) {
+    /**
+     * Generates the Jasmin code of the class directly into the given output.
+     */
+    public void build(Appendable output) {
+        generateClassUnit(ollirResult.getOllirClass(), new JasminWriter(output));
+
+        if (peephole != null) {
+            reports.addAll(peephole.getReports());
+        }
+    }
+
+    private void generateClassUnit(ClassUnit classUnit, JasminWriter out) {
 
-        var code = new StringBuilder();
         var imports = ollirResult.getOllirClass().getImports();
         // generate class name
         var className = ollirResult.getOllirClass().getClassName();
-        code.append(".class ").append(className).append(NL).append(NL);
+        out.write(".class ").write(className).write(NL).write(NL);
         var superClass = ollirResult.getOllirClass().getSuperClass();
 
         if (superClass == null || superClass.equals("Object")) {
             ollirResult.getOllirClass().setSuperClass("java/lang/Object");
-            code.append(".super ").append(ollirResult.getOllirClass().getSuperClass()).append(NL);
-            code.append(";default constructor").append(NL);//ter de ver se na class ha algum construtor, se nao hovuer vai se ao extend
+            out.write(".super ").write(ollirResult.getOllirClass().getSuperClass()).write(NL);
+            out.write(";default constructor").write(NL);//ter de ver se na class ha algum construtor, se nao hovuer vai se ao extend
 
         } else {
             String classExtended = ollirResult.getOllirClass().getSuperClass(); // se calhar vamos ter de ter um if par se não for extended
-            code.append(".super ").append(classExtended).append(NL);
+            out.write(".super ").write(classExtended).write(NL);
         }
 
         var classFields = ollirResult.getOllirClass().getFields();
@@ -134,22 +151,23 @@ public class JasminGenerator {
             }
             var fieldName = field.getFieldName();
             var fieldType = getFieldType(field.getFieldType());
-            code.append(".field ").append(fieldAcessModifier);
-            if (field.isFinalField()) code.append("final ");
-            if (field.isStaticField()) code.append("static ");
-            code.append(fieldName).append(" ").append(fieldType).append(NL);
+            out.write(".field ").write(fieldAcessModifier);
+            if (field.isFinalField()) out.write("final ");
+            if (field.isStaticField()) out.write("static ");
+            out.write(fieldName).write(" ").write(fieldType).write(NL);
         }
 
         // generate a single constructor method
 
-        code.append(".method public <init>()V").append(NL);
-        code.append(TAB).append("aload_0").append(NL);
-        code.append(TAB).append("invokespecial ");
+        out.write(".method public <init>()V").write(NL);
+        out.append("aload_0").append(NL);
+        out.append("invokespecial ");
 
-        code.append(ollirResult.getOllirClass().getSuperClass()).append("/<init>()V").append(NL);
+        out.append(ollirResult.getOllirClass().getSuperClass()).append("/<init>()V").append(NL);
 
-        code.append(TAB).append("return").append(NL);
-        code.append(".end method").append(NL);
+        out.append("return").append(NL);
+        out.flushMethod();
+        out.write(".end method").write(NL);
 
         // generate code for all other methods
         for (var method : ollirResult.getOllirClass().getMethods()) {
@@ -161,29 +179,23 @@ public class JasminGenerator {
                 continue;
             }
 
-            code.append(generators.apply(method));
+            generateMethod(method, out);
         }
-
-        return code.toString();
     }
 
-    private String generatePutFieldInstruction(PutFieldInstruction putFieldInst) {
-        StringBuilder code = new StringBuilder();
+    private void generatePutFieldInstruction(PutFieldInstruction putFieldInst, JasminWriter out) {
 
         // Load the object reference onto the stack
-        code.append(generators.apply(putFieldInst.getObject()));
+        generators.accept(putFieldInst.getObject(), out);
 
         // Load the value of the field onto the stack
-        code.append(generators.apply(putFieldInst.getValue()));
-
-        this.curr_stack_value -= 2;
-        maxStackValue();
+        generators.accept(putFieldInst.getValue(), out);
 
         String callObjName = getImportedClassName(putFieldInst.getObject().getName());
         String fieldName = putFieldInst.getField().getName();
         String fieldType = getFieldType(putFieldInst.getField().getType());
         // Emit the getfield instruction
-        code.append("putfield ")
+        out.append("putfield ")
                 .append(callObjName)
                 .append("/")
                 .append(fieldName)
@@ -193,20 +205,18 @@ public class JasminGenerator {
 
         // Store the value in the appropriate local variable
         // code.append(getStoreInstruction(getFieldInst.getDestination()));
-        return code.toString();
     }
 
 
-    private String generateGetFieldInstruction(GetFieldInstruction getFieldInst) {
-        StringBuilder code = new StringBuilder();
+    private void generateGetFieldInstruction(GetFieldInstruction getFieldInst, JasminWriter out) {
         // Load the object reference onto the stack
-        code.append(generators.apply(getFieldInst.getObject()));
+        generators.accept(getFieldInst.getObject(), out);
 
         String callObjName = getImportedClassName(getFieldInst.getObject().getName());
         String fieldName = getFieldInst.getField().getName();
         String fieldType = getFieldType(getFieldInst.getFieldType());
         // Emit the getfield instruction
-        code.append(NL).append("getfield ")
+        out.append(NL).append("getfield ")
                 .append(callObjName)
                 .append("/")
                 .append(fieldName)
@@ -216,21 +226,18 @@ public class JasminGenerator {
 
         // Store the value in the appropriate local variable
         // code.append(getStoreInstruction(getFieldInst.getDestination()));
-        return code.toString();
     }
 
-    private String generateMethod(Method method) {
+    private void generateMethod(Method method, JasminWriter out) {
         // set method
         currentMethod = method;
-        this.curr_stack_value = 0;
-        this.stack_value = 0;
+        instructionLabels = indexLabels(method);
 
+        // variables may share registers, so the limit comes from the highest one
         this.locals_value = currentMethod.getVarTable().values().stream()
-                .map(Descriptor::getVirtualReg)
-                .collect(Collectors.toSet())
-                .size();
-
-        var code = new StringBuilder();
+                .mapToInt(Descriptor::getVirtualReg)
+                .max()
+                .orElse(-1) + 1;
 
         // calculate modifier
         var modifier = method.getMethodAccessModifier() != AccessModifier.DEFAULT ?
@@ -241,73 +248,80 @@ public class JasminGenerator {
 
         //ver se precisa de static
         if (method.isStaticMethod()) {
-            code.append("\n.method ").append(modifier).append("static ").append(methodName)
-                    .append("("); //temos de ver se isto do [ só acontece para os main static ou para todos os tatic
+            out.write("\n.method ").write(modifier).write("static ").write(methodName)
+                    .write("("); //temos de ver se isto do [ só acontece para os main static ou para todos os tatic
         } else {
-            if (!method.getVarTable().containsKey("this")) {
-                this.locals_value++;
-            }
-            code.append("\n.method ").append(modifier).append(methodName)
-                    .append("(");
+            // 'this' is always in register 0
+            this.locals_value = Math.max(this.locals_value, 1);
+            out.write("\n.method ").write(modifier).write(methodName)
+                    .write("(");
         }
 
         var parameterTypes = method.getParams();
         for (int i = 0; i < parameterTypes.size(); i++) {
             Type paramType = parameterTypes.get(i).getType();
             String paramJasminType = getFieldType(paramType);
-            code.append(paramJasminType);
+            out.write(paramJasminType);
         }
 
         Type methodReturnType = method.getReturnType();
         String methodReturnJasminType = getFieldType(methodReturnType);
-        code.append(")").append(methodReturnJasminType).append(NL);
+        out.write(")").write(methodReturnJasminType).write(NL);
 
-        // aqui criei duas funções para calcular os limites
-
-        var methodCode = methodPrint(method);
-
-        code.append(TAB).append(".limit stack ").append(stack_value).append(NL);
-        code.append(TAB).append(".limit locals ").append(locals_value).append(NL);
+        // the limits are only known after generating the body, which stays in the writer until then
+        methodPrint(method, out);
+        if (peephole != null) {
+            out.setMethodBody(peephole.optimize(out.getMethodBody()));
+        }
 
+        // the stack limit comes from simulating the generated code along its control flow
 
-        code.append(methodCode).append(NL);
+        out.write("   .limit stack ").write(StackSimulator.maxStack(out.getMethodBody())).write(NL);
+        out.write("   .limit locals ").write(locals_value).write(NL);
 
+        out.flushMethod();
 
-        code.append(".end method\n");
+        out.write(".end method\n");
 
         // unset method
         currentMethod = null;
-
-        return code.toString();
+        instructionLabels = null;
     }
 
-    private String methodPrint(Method method) {
-        var code = new StringBuilder();
+    private void methodPrint(Method method, JasminWriter out) {
         for (var inst : method.getInstructions()) {
-            method.getLabels().entrySet().stream()
-                    .filter(label -> label.getValue().equals(inst))
-                    .forEach(label -> code.append(NL).append(label.getKey()).append(":").append(NL));
-            var instCode = StringLines.getLines(generators.apply(inst)).stream()
-                    .collect(Collectors.joining(NL + TAB, TAB, NL));
+            for (var label : instructionLabels.getOrDefault(inst, Collections.emptyList())) {
+                out.label(label);
+            }
+
+            generators.accept(inst, out);
+            out.endLine();
 
-            code.append(instCode);
             if (inst.getInstType() == CALL && ((CallInstruction) inst).getReturnType().getTypeOfElement() != ElementType.VOID) {
-                code.append(TAB).append("pop").append(NL);
-                curr_stack_value--;
-                maxStackValue();
+                out.append("pop").append(NL);
             }
 
             /*if (inst.getInstType() == ASSIGN && ((AssignInstruction) inst).getRhs().getInstType().equals(GETFIELD)){
                 code.append(NL).append(TAB).append(generators.apply(((AssignInstruction) inst).getRhs().getChildren().get(1))).append(NL);
-                curr_stack_value++;
-                maxStackValue();
             }*/
 
         }
-        return code.toString();
-
     }
 
+    /**
+     * Maps each instruction of the method to its labels, so that they are found without going through all labels.
+     * <p>
+     * Built for every method, since Method caches its own index and does not update it when labels are added.
+     */
+    static Map<Instruction, List<String>> indexLabels(Method method) {
+        var index = new IdentityHashMap<Instruction, List<String>>();
+
+        for (var label : method.getLabels().entrySet()) {
+            index.computeIfAbsent(label.getValue(), inst -> new ArrayList<>()).add(label.getKey());
+        }
+
+        return index;
+    }
 
     private String getJasminType(ElementType paramType) {
         switch (paramType) {
@@ -370,12 +384,7 @@ public class JasminGenerator {
     }
 
 
-    private String generateAssign(AssignInstruction assign) {
-        var code = new StringBuilder();
-        /*this.curr_stack_value++;
-        maxStackValue();*/
-        //having doubts about this
-
+    private void generateAssign(AssignInstruction assign, JasminWriter out) {
         var lhs = assign.getDest();
         if (!(lhs instanceof Operand)) {
             throw new NotImplementedException(lhs.getClass());
@@ -384,282 +393,209 @@ public class JasminGenerator {
         var operand = (Operand) lhs;
         // get register
         var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
+        // true if some code was already written for this instruction
+        var emitted = false;
         //deal with array content
         if (lhs instanceof ArrayOperand arrayOperand) {
-            if (reg >= 4) {
-                code.append("aload ").append(reg).append(NL);
-            } else {
-                code.append("aload_").append(reg).append(NL);
-            }
-            curr_stack_value++;
-            maxStackValue();
+            out.append(InstructionSelector.load(true, reg)).append(NL);
+            emitted = true;
             for (var elem : arrayOperand.getIndexOperands()) {
-                code.append(generators.apply(elem)).append(NL);
+                generators.accept(elem, out);
+                out.append(NL);
             }
         }
 
         if (assign.getRhs().getInstType().equals(BINARYOPER)) {
             var leftSide = assign.getDest();
-            var firstRightSide = assign.getRhs().getChildren().get(0);
-            var secondRightSide = assign.getRhs().getChildren().get(1);
             var bin = (BinaryOpInstruction) assign.getRhs();
             var op = bin.getOperation().getOpType();
             if (leftSide.getType().getTypeOfElement().equals(ElementType.INT32) && (op.equals(ADD) || op.equals(SUB))) {
-                code.append(iincVar((Operand) assign.getDest(), (BinaryOpInstruction) assign.getRhs()));
+                emitted |= iincVar((Operand) assign.getDest(), (BinaryOpInstruction) assign.getRhs(), out);
             }
-            if (!code.toString().isEmpty()) {
-                curr_stack_value--;
-                maxStackValue();
-                return code.toString();
+            if (emitted) {
+                return;
             }
         }
 
 
-        code.append(generators.apply(assign.getRhs()));
-        if (assign.getDest().getType().getTypeOfElement().equals(ElementType.BOOLEAN) && assign.getRhs() instanceof BinaryOpInstruction) {
-            var firstVal = this.label_control;
-            code.append("cmp_lt_").append(this.label_control).append("_true").append(NL);
-            code.append("iconst_0").append(NL);
-            this.curr_stack_value++;
-            maxStackValue();
-            code.append("goto ").append("cmp_lt_").append(this.label_control).append("_end").append(NL).append(NL);
-            code.append("cmp_lt_").append(firstVal).append("_true").append(":").append(NL);
-            code.append("iconst_m1").append(NL).append(NL);
-            this.curr_stack_value++;
-            maxStackValue();
-            code.append("cmp_lt_").append(this.label_control).append("_end").append(":").append(NL);
-            this.label_control++;
-
-        }
+        generators.accept(assign.getRhs(), out);
         ElementType type = operand.getType().getTypeOfElement();
         switch (type) {
             case INT32, BOOLEAN:
                 if (currentMethod.getVarTable().get(operand.getName()).getVarType().getTypeOfElement() == ElementType.ARRAYREF) {
-                    code.append("iastore").append(NL);
-                    curr_stack_value -= 3;
-                    maxStackValue();
+                    out.append("iastore").append(NL);
                     break;
                 } else {
-                    curr_stack_value--;
-                    maxStackValue();
-                    if (reg > 3) {
-                        code.append("istore ").append(reg).append(NL);
-                        break;
-
-                    } else {
-                        code.append("istore_").append(reg).append(NL);
-                    }
+                    out.append(InstructionSelector.store(false, reg)).append(NL);
                 }
                 break;
             case OBJECTREF, STRING, ARRAYREF, THIS:
-                curr_stack_value--;
-                maxStackValue();
-                if (reg > 3) {
-                    code.append("astore ").append(reg).append(NL);
-                    break;
-                } else {
-                    code.append("astore_").append(reg).append(NL);
-                }
+                out.append(InstructionSelector.store(true, reg)).append(NL);
                 break;
             case VOID: {
             }
             default:
                 throw new NotImplementedException("Type not supported: " + type.name());
         }
-
-        return code.toString();
     }
 
-    private String boolExprVar(Element dest, Instruction rhs) {
-        var code = new StringBuilder();
-        code.append(generators.apply(rhs));
-
-
-        return "";
-    }
-
-    private String iincVar(Operand dest, BinaryOpInstruction rhs) {
-        var code = new StringBuilder();
+    /**
+     * @return true if the assignment was written as an iinc
+     */
+    private boolean iincVar(Operand dest, BinaryOpInstruction rhs, JasminWriter out) {
         var firstRight = rhs.getChildren().get(0);
         var secondRight = rhs.getChildren().get(1);
+        var opType = rhs.getOperation().getOpType();
+        LiteralElement increment = null;
         if (firstRight instanceof Operand && secondRight instanceof LiteralElement) {
             if (((Operand) firstRight).getName().equals(dest.getName())) {
-                if (rhs.getOperation().getOpType().equals(ADD)) {
-                    int reg = currentMethod.getVarTable().get(dest.getName()).getVirtualReg();
-                    code.append("iinc ").append(reg).append(" ").append(((LiteralElement) secondRight).getLiteral()).append(NL);
-                } else if (rhs.getOperation().getOpType().equals(SUB)) {
-                    int reg = currentMethod.getVarTable().get(dest.getName()).getVirtualReg();
-                    code.append("iinc ").append(reg).append(" -").append(((LiteralElement) secondRight).getLiteral()).append(NL);
-                }
+                increment = (LiteralElement) secondRight;
             }
 
-        } else if (firstRight instanceof LiteralElement && secondRight instanceof Operand) {
+        } else if (opType.equals(ADD) && firstRight instanceof LiteralElement && secondRight instanceof Operand) {
+            // 'c - a' is not an increment of 'a'
             if (((Operand) secondRight).getName().equals(dest.getName())) {
-                if (rhs.getOperation().getOpType().equals(ADD)) {
-                    int reg = currentMethod.getVarTable().get(dest.getName()).getVirtualReg();
-                    code.append("iinc ").append(reg).append(" ").append(((LiteralElement) firstRight).getLiteral()).append(NL);
-                } else if (rhs.getOperation().getOpType().equals(SUB)) {
-                    int reg = currentMethod.getVarTable().get(dest.getName()).getVirtualReg();
-                    code.append("iinc ").append(reg).append(" -").append(((LiteralElement) firstRight).getLiteral()).append(NL);
-                }
+                increment = (LiteralElement) firstRight;
             }
         }
-        return code.toString();
+
+        if (increment == null || !(opType.equals(ADD) || opType.equals(SUB))) {
+            return false;
+        }
+
+        var value = Integer.parseInt(increment.getLiteral());
+        if (opType.equals(SUB)) {
+            value = -value;
+        }
+
+        if (!InstructionSelector.fitsIinc(value)) {
+            return false;
+        }
+
+        int reg = currentMethod.getVarTable().get(dest.getName()).getVirtualReg();
+        out.append(InstructionSelector.iinc(reg, value)).append(NL);
+        return true;
     }
 
-    private String generateCallInstruction(CallInstruction callInstruction) {
-        var code = new StringBuilder();
-        this.stackVariation = 0;
+    private void generateCallInstruction(CallInstruction callInstruction, JasminWriter out) {
         switch (callInstruction.getInvocationType()) {
             case invokestatic:
                 for (var op : callInstruction.getArguments()) {
-                    this.stackVariation++;
-                    code.append(generators.apply(op));
+                    generators.accept(op, out);
                 }
-                code.append("invokestatic ").append(getImportedClassName(generators.apply(callInstruction.getCaller()))).append("/").append(generators.apply(callInstruction.getMethodName()));
+                out.append("invokestatic ").append(getImportedClassName(operandCode((Operand) callInstruction.getCaller()))).append("/");
+                generators.accept(callInstruction.getMethodName(), out);
                 //code.append("(");
                 for (var arg : callInstruction.getArguments()) {
-                    code.append(getFieldType(arg.getType()));
-                }
-                code.append(")");
-                code.append(getFieldType(callInstruction.getReturnType())).append(NL);
-                if (!callInstruction.getReturnType().getTypeOfElement().equals(ElementType.VOID)) {
-                    this.stackVariation--;
+                    out.append(getFieldType(arg.getType()));
                 }
+                out.append(")");
+                out.append(getFieldType(callInstruction.getReturnType())).append(NL);
                 break;
             case invokespecial:
-                code.append(generators.apply(callInstruction.getOperands().get(0))).append(NL);
+                generators.accept(callInstruction.getOperands().get(0), out);
+                out.append(NL);
                 var elemType = ((Operand) callInstruction.getCaller()).getType();
-                code.append("invokespecial ");
+                out.append("invokespecial ");
                 if (elemType.getTypeOfElement() == ElementType.THIS) {
-                    code.append(ollirResult.getOllirClass().getSuperClass());
+                    out.append(ollirResult.getOllirClass().getSuperClass());
                 } else {
-                    code.append(getImportedClassName(((ClassType) elemType).getName()));
+                    out.append(getImportedClassName(((ClassType) elemType).getName()));
                 }
-                code.append("/<init>(");
+                out.append("/<init>(");
 
 
                 for (var elem : callInstruction.getArguments()) {
-                    code.append(getFieldType(elem.getType()));
-                }
-                code.append(")");
-                code.append(getFieldType(callInstruction.getReturnType())).append(NL);
-                if (!callInstruction.getReturnType().getTypeOfElement().equals(ElementType.VOID)) {
-                    this.stackVariation--;
+                    out.append(getFieldType(elem.getType()));
                 }
-                code.append("pop");
+                out.append(")");
+                out.append(getFieldType(callInstruction.getReturnType())).append(NL);
+                out.append("pop");
                 break;
             case NEW:
-                this.stackVariation = -1;
                 for (Element objetElement : callInstruction.getArguments()) {
-                    this.stackVariation++;
-                    code.append(generators.apply(objetElement));
+                    generators.accept(objetElement, out);
                 }
                 if (!callInstruction.getReturnType().getTypeOfElement().equals(ElementType.ARRAYREF)) {
-                    code.append(NL).append("new ").append(getImportedClassName(((Operand) callInstruction.getCaller()).getName())).append(NL).append("dup").append(NL);
+                    out.append(NL).append("new ").append(getImportedClassName(((Operand) callInstruction.getCaller()).getName())).append(NL).append("dup").append(NL);
                 } else {
-                    code.append("newarray int").append(NL);
+                    out.append("newarray int").append(NL);
                 }
-                curr_stack_value++;
-                maxStackValue();
                 break;
             case invokevirtual:
-                code.append(generators.apply(callInstruction.getOperands().get(0))).append(NL);
+                generators.accept(callInstruction.getOperands().get(0), out);
+                out.append(NL);
                 Operand firstVirtual = (Operand) callInstruction.getOperands().get(0);
-                this.stackVariation = 1;
                 for (var op : callInstruction.getArguments()) {
-                    this.stackVariation++;
-                    code.append(generators.apply(op));
+                    generators.accept(op, out);
                 }
-                code.append("invokevirtual ").append(getImportedClassName(((ClassType) firstVirtual.getType()).getName())).append("/").append(generators.apply(callInstruction.getMethodName()));
+                out.append("invokevirtual ").append(getImportedClassName(((ClassType) firstVirtual.getType()).getName())).append("/");
+                generators.accept(callInstruction.getMethodName(), out);
                 for (var arg : callInstruction.getArguments()) {
-                    code.append(getFieldType(arg.getType()));
+                    out.append(getFieldType(arg.getType()));
                 }
-                code.append(")").append(getFieldType(callInstruction.getReturnType())).append(NL);
-
-                if (!(callInstruction.getReturnType().getTypeOfElement().equals(ElementType.VOID)))
-                    this.stackVariation--;
+                out.append(")").append(getFieldType(callInstruction.getReturnType())).append(NL);
                 break;
             case arraylength:
-                code.append(generators.apply(callInstruction.getOperands().get(0)));
-                code.append("arraylength").append(NL);
+                generators.accept(callInstruction.getOperands().get(0), out);
+                out.append("arraylength").append(NL);
                 this.array_length = 1;
                 break;
             case invokeinterface:
-                code.append(generators.apply(callInstruction.getOperands().get(0))).append(NL);
+                generators.accept(callInstruction.getOperands().get(0), out);
+                out.append(NL);
                 Operand firstInterface = (Operand) callInstruction.getOperands().get(0);
                 LiteralElement secondInterface = (LiteralElement) callInstruction.getOperands().get(1);
                 for (var op : callInstruction.getArguments()) {
-                    code.append(generators.apply(op));
+                    generators.accept(op, out);
                 }
 
-                //curr_stack_value -= callInstruction.getArguments().size();
-                code.append("invokeinterface ").append(getImportedClassName(((ClassType) firstInterface.getType()).getName())).append("/").append(secondInterface.getLiteral().replace("\"", ""));
-                code.append("(");
+                out.append("invokeinterface ").append(getImportedClassName(((ClassType) firstInterface.getType()).getName())).append("/").append(secondInterface.getLiteral().replace("\"", ""));
+                out.append("(");
                 for (var arg : callInstruction.getArguments()) {
-                    code.append(getFieldType(arg.getType()));
+                    out.append(getFieldType(arg.getType()));
                 }
-                code.append(")").append(getFieldType(callInstruction.getReturnType())).append(NL);
+                out.append(")").append(getFieldType(callInstruction.getReturnType())).append(NL);
                 break;
             default:
                 throw new NotImplementedException("Invocation type not supported: " + callInstruction.getInvocationType());
         }
-        this.curr_stack_value -= this.stackVariation;
-        maxStackValue();
-        return code.toString();
     }
 
 
-    private String generateSingleOp(SingleOpInstruction singleOp) {
+    private void generateSingleOp(SingleOpInstruction singleOp, JasminWriter out) {
 
-        return generators.apply(singleOp.getSingleOperand());
+        generators.accept(singleOp.getSingleOperand(), out);
     }
 
-    private String generateLiteral(LiteralElement literal) {
-        StringBuilder code = new StringBuilder();
+    private void generateLiteral(LiteralElement literal, JasminWriter out) {
         String literalStr = literal.getLiteral();
         if (literal.getType().getTypeOfElement().name().equals("STRING")) {
-            code.append(literalStr.replaceAll("\"", "")).append("(");
-            return code.toString();
+            out.append(literalStr.replace("\"", "")).append("(");
+            return;
         }
-        curr_stack_value++;
-        maxStackValue();
         int value = Integer.parseInt(literalStr);
-        if (value == -1) {
-            return NL + "iconst_m1" + NL;
-        } else if (value >= 0 && value <= 5) {
-            return NL + "iconst_" + value + NL;
-        } else if (value >= -128 && value <= 127) {
-            return NL + "bipush " + value + NL;
-        } else if (value >= -32768 && value <= 32767) {
-            return NL + "sipush " + value + NL;
-        } else {
-            return NL + "ldc " + value + NL;
-        }
+        out.append(NL).append(InstructionSelector.constant(value)).append(NL);
     }
 
-    private String generateOperand(Operand operand) {
+    private void generateOperand(Operand operand, JasminWriter out) {
+        out.append(operandCode(operand));
+    }
+
+    /**
+     * @return the code that loads the operand, or its class name if the operand is an imported class
+     */
+    private String operandCode(Operand operand) {
         String name = operand.getName();
         // Verificar se o nome está na varTable
-        curr_stack_value++;
-        maxStackValue();
         if (currentMethod.getVarTable().containsKey(name)) {
             int reg = currentMethod.getVarTable().get(name).getVirtualReg();
             String type = operand.getType().getTypeOfElement().name();
             if (type.equals("THIS")) {
-                return "aload_0" + NL;
+                return InstructionSelector.load(true, 0) + NL;
             } else if (reg > -1) {
-                if (type.equals("INT32") || type.equals("BOOLEAN")) {
-                    if (reg > 3) {
-                        return "iload " + reg + NL;
-                    }
-                    return "iload_" + reg + NL;
-                } else {
-                    if (reg > 3) {
-                        return "aload " + reg + NL;
-                    }
-                    return "aload_" + reg + NL;
-                }
+                var isReference = !type.equals("INT32") && !type.equals("BOOLEAN");
+                return InstructionSelector.load(isReference, reg) + NL;
             }
 
         }
@@ -682,18 +618,24 @@ public class JasminGenerator {
 
     }
 
-    private String generateBinaryOp(BinaryOpInstruction binaryOpInstruction) {
+    private void generateBinaryOp(BinaryOpInstruction binaryOpInstruction, JasminWriter out) {
         OperationType opType = binaryOpInstruction.getOperation().getOpType();
 
         if (isConditionalOperation(opType)) {
-            return generateConditionalBinaryOp(binaryOpInstruction);
+            // materialize the boolean, 1 for true as in the class file backend
+            var isTrue = "cmp_" + label_control + "_true";
+            var end = "cmp_" + label_control + "_end";
+            label_control++;
+
+            generateConditionalBinaryOp(binaryOpInstruction, isTrue, out);
+            out.append(InstructionSelector.constant(0)).append(NL);
+            out.append("goto ").append(end).append(NL);
+            out.append(isTrue).append(":").append(NL);
+            out.append(InstructionSelector.constant(1)).append(NL);
+            out.append(end).append(":").append(NL);
         } else if (isArithmeticOperation(opType)) {
-            return generateAritmeticBinaryOp(binaryOpInstruction);
+            generateAritmeticBinaryOp(binaryOpInstruction, out);
         }
-
-        this.curr_stack_value--;
-        maxStackValue();
-        return "";
     }
 
     private boolean isConditionalOperation(OperationType opType) {
@@ -705,36 +647,30 @@ public class JasminGenerator {
 
     private boolean isArithmeticOperation(OperationType opType) {
         return switch (opType) {
-            case ADD, SUB, MUL, DIV, XOR, AND, OR, ANDB, ORB -> true;
+            case ADD, SUB, MUL, DIV, SHL, SHR, SHRR, XOR, AND, OR, ANDB, ORB -> true;
             default -> false;
         };
     }
 
     //needs optimizations
-    private String generateUnaryOp(UnaryOpInstruction unaryOpInstruction) {
-        var code = new StringBuilder();
-        code.append(generators.apply(unaryOpInstruction.getOperand()));
+    private void generateUnaryOp(UnaryOpInstruction unaryOpInstruction, JasminWriter out) {
+        generators.accept(unaryOpInstruction.getOperand(), out);
         if (unaryOpInstruction.getOperation().getOpType() == NOTB) {
-            code.append(NL).append("iconst_1").append(NL);
-            curr_stack_value++;
-            //maxStackValue();
-            code.append(NL).append("ixor").append(NL);
+            out.append(NL).append("iconst_1").append(NL);
+            out.append(NL).append("ixor").append(NL);
         } else if (unaryOpInstruction.getOperation().getOpType() == GTH) {
-            code.append(NL).append("ifgt");
+            out.append(NL).append("ifgt");
         } else if (unaryOpInstruction.getOperation().getOpType() == LTH) {
-            code.append(NL).append("iflt");
+            out.append(NL).append("iflt");
         } else if (unaryOpInstruction.getOperation().getOpType() == NEQ) {
-            code.append(NL).append("ifne");
+            out.append(NL).append("ifne");
         } else if (unaryOpInstruction.getOperation().getOpType() == EQ) {
-            code.append(NL).append("ifeq");
+            out.append(NL).append("ifeq");
         } else if (unaryOpInstruction.getOperation().getOpType() == GTE) {
-            code.append(NL).append("ifge");
+            out.append(NL).append("ifge");
         } else if (unaryOpInstruction.getOperation().getOpType() == LTE) {
-            code.append(NL).append("ifle");
+            out.append(NL).append("ifle");
         }
-        curr_stack_value--;
-        maxStackValue();
-        return code.toString();
     }
 
     private int getOperandName(Operand operand) {
@@ -744,214 +680,108 @@ public class JasminGenerator {
     }
 
 
-    private String generateAritmeticBinaryOp(BinaryOpInstruction binaryOp) {
-        var code = new StringBuilder();
+    private void generateAritmeticBinaryOp(BinaryOpInstruction binaryOp, JasminWriter out) {
+        // literal operands may make the operation cheaper, or unnecessary
+        var simplified = simplify ? AlgebraicSimplification.simplify(binaryOp) : binaryOp;
+        if (simplified != binaryOp) {
+            generators.accept(simplified, out);
+            return;
+        }
+
         // load values on the left and on the right
-        code.append(generators.apply(binaryOp.getLeftOperand()));
-        code.append(generators.apply(binaryOp.getRightOperand()));
+        generators.accept(binaryOp.getLeftOperand(), out);
+        generators.accept(binaryOp.getRightOperand(), out);
 
         // apply operation
         switch (binaryOp.getOperation().getOpType()) {
             case ADD -> {
-                code.append(NL).append("iadd").append(NL);
+                out.append(NL).append("iadd").append(NL);
             }
-            case MUL -> code.append(NL).append("imul").append(NL);
-            case SUB -> code.append(NL).append("isub").append(NL);
-            case DIV -> code.append(NL).append("idiv").append(NL);
-            case XOR -> code.append(NL).append("ixor").append(NL);
-            case AND, ANDB -> code.append(NL).append("iand").append(NL);
-            case OR, ORB -> code.append(NL).append("ior").append(NL);
+            case MUL -> out.append(NL).append("imul").append(NL);
+            case SUB -> out.append(NL).append("isub").append(NL);
+            case DIV -> out.append(NL).append("idiv").append(NL);
+            case SHL -> out.append(NL).append("ishl").append(NL);
+            case SHR -> out.append(NL).append("ishr").append(NL);
+            case SHRR -> out.append(NL).append("iushr").append(NL);
+            case XOR -> out.append(NL).append("ixor").append(NL);
+            case AND, ANDB -> out.append(NL).append("iand").append(NL);
+            case OR, ORB -> out.append(NL).append("ior").append(NL);
             default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
         }
-        curr_stack_value--;
-        maxStackValue();
-
-        return code.toString();
     }
 
-    private String generateConditionalBinaryOp(BinaryOpInstruction binaryOpInstruction) {
-        var code = new StringBuilder();
-
-        code.append(generators.apply(binaryOpInstruction.getLeftOperand()));
-        code.append(generators.apply(binaryOpInstruction.getRightOperand()));
+    /**
+     * Jumps to the label if the comparison holds.
+     */
+    private void generateConditionalBinaryOp(BinaryOpInstruction binaryOpInstruction, String label, JasminWriter out) {
         var leftOperand = binaryOpInstruction.getLeftOperand();
         var rightOperand = binaryOpInstruction.getRightOperand();
-        switch (binaryOpInstruction.getOperation().getOpType()) {
-            case GTE -> {
-                if ((leftOperand instanceof LiteralElement) && (rightOperand instanceof LiteralElement)) {
-                    int compareValue = Integer.parseInt(((LiteralElement) leftOperand).getLiteral()) - Integer.parseInt(((LiteralElement) rightOperand).getLiteral());
-                    code.append("isub").append(NL);
-                    if (compareValue < 0) {
-                        code.append("iflt ");
-                    } else {
-                        code.append("ifge ");
-                    }
-                } else if (((leftOperand instanceof Operand) && (rightOperand instanceof Operand))) {
-                    code.append("isub").append(NL);
-                    code.append("ifge ");
-                } else if ((rightOperand instanceof LiteralElement) && ((LiteralElement) rightOperand).getLiteral().equals("0")) {
-                    code.append("iflt ");
-                } else if ((leftOperand instanceof LiteralElement) && ((LiteralElement) leftOperand).getLiteral().equals("0")) {
-                    code.append("ifge ");
-                } else {
-                    curr_stack_value--;
-                    code.append("if_icmpge ");
-                }
-            }
-            case LTH -> {
-                var y = leftOperand.toElement();
-                var x = rightOperand.toElement();
-                if (((leftOperand instanceof LiteralElement) && (rightOperand instanceof LiteralElement))) {
-                    int compareValue = Integer.parseInt(((LiteralElement) leftOperand).getLiteral()) - Integer.parseInt(((LiteralElement) rightOperand).getLiteral());
-                    code.append("isub").append(NL);
-                    if (compareValue < 0) {
-                        code.append("iflt ");
-                    } else {
-                        code.append("ifge ");
-                    }
-                } else if (((leftOperand instanceof Operand) && (rightOperand instanceof Operand))) {
-                    code.append("isub").append(NL);
-                    code.append("iflt ");
-                } else if ((rightOperand instanceof LiteralElement) && ((LiteralElement) rightOperand).getLiteral().equals("0")) {
-                    code.append("iflt ");
-                } else if ((leftOperand instanceof LiteralElement) && ((LiteralElement) leftOperand).getLiteral().equals("0")) {
-                    code.append("ifge ");
-                } else {
-                    curr_stack_value--;
-                    code.append("if_icmplt ");
-                }
-            }
-            case GTH -> {
-                if ((leftOperand instanceof LiteralElement) && (rightOperand instanceof LiteralElement)) {
-                    int compareValue = Integer.parseInt(((LiteralElement) leftOperand).getLiteral()) - Integer.parseInt(((LiteralElement) rightOperand).getLiteral());
-                    code.append("isub").append(NL);
-                    if (compareValue < 0) {
-                        code.append("iflt ");
-                    } else {
-                        code.append("ifge ");
-                    }
-                } else if ((rightOperand instanceof LiteralElement) && ((LiteralElement) rightOperand).getLiteral().equals("0")) {
-                    code.append("iflt ");
-                } else if ((leftOperand instanceof LiteralElement) && ((LiteralElement) leftOperand).getLiteral().equals("0")) {
-                    code.append("ifge ");
-                } else {
-                    curr_stack_value--;
-                    code.append("if_icmpgt ");
-                }
-            }
-            case EQ -> {
-                if ((leftOperand instanceof LiteralElement) && (rightOperand instanceof LiteralElement)) {
-                    int compareValue = Integer.parseInt(((LiteralElement) leftOperand).getLiteral()) - Integer.parseInt(((LiteralElement) rightOperand).getLiteral());
-                    code.append("isub").append(NL);
-
-                    if (compareValue == 0) {
-                        code.append("ifeq ");
-                    } else {
-                        code.append("ifne ");
-                    }
-                } else {
-                    curr_stack_value--;
-                    code.append("if_icmpeq ");
-                }
-            }
-            case NEQ -> {
-                if ((leftOperand instanceof LiteralElement) && (rightOperand instanceof LiteralElement)) {
-                    int compareValue = Integer.parseInt(((LiteralElement) leftOperand).getLiteral()) - Integer.parseInt(((LiteralElement) rightOperand).getLiteral());
-                    code.append("isub").append(NL);
-
-                    if (compareValue == 0) {
-                        code.append("ifeq ");
-                    } else {
-                        code.append("ifne ");
-                    }
-                } else {
-                    curr_stack_value--;
-                    code.append("if_icmpne ");
-                }
-            }
-            case LTE -> {
-                if ((leftOperand instanceof LiteralElement) && (rightOperand instanceof LiteralElement)) {
-                    int compareValue = Integer.parseInt(((LiteralElement) leftOperand).getLiteral()) - Integer.parseInt(((LiteralElement) rightOperand).getLiteral());
-                    code.append("isub").append(NL);
-                    if (compareValue < 0) {
-                        code.append("iflt ");
-                    } else {
-                        code.append("ifge ");
-                    }
-                } else {
-                    curr_stack_value--;
-                    code.append("if_icmple ");
-                }
-            }
-            default -> {
-                return "";
-            }
+        var opType = binaryOpInstruction.getOperation().getOpType();
+
+        // comparisons against zero only need the other value on the stack
+        if (isZero(rightOperand)) {
+            generators.accept(leftOperand, out);
+            out.append(getName(InstructionSelector.getZeroComparisonOpcode(opType)));
+        } else if (isZero(leftOperand)) {
+            generators.accept(rightOperand, out);
+            out.append(getName(InstructionSelector.getZeroComparisonOpcode(InstructionSelector.swap(opType))));
+        } else {
+            generators.accept(leftOperand, out);
+            generators.accept(rightOperand, out);
+            out.append(getName(InstructionSelector.getComparisonOpcode(opType)));
         }
-        curr_stack_value--;
-        maxStackValue();
-        return code.toString();
+        out.append(" ").append(label).append(NL);
     }
 
-    private String generateReturn(ReturnInstruction returnInst) {
-        var code = new StringBuilder();
+    private static boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && literal.getLiteral().equals("0");
+    }
 
+    private void generateReturn(ReturnInstruction returnInst, JasminWriter out) {
         // generate code for the return value
         if (returnInst.getOperand() != null) {
-            code.append(NL).append(generators.apply(returnInst.getOperand())).append(NL);
+            out.append(NL);
+            generators.accept(returnInst.getOperand(), out);
+            out.append(NL);
         }
         ElementType returnType = returnInst.getReturnType().getTypeOfElement();
         switch (returnType) {
             case INT32:
-                curr_stack_value--;
-                maxStackValue();
-                code.append(NL).append("ireturn").append(NL);
+                out.append(NL).append("ireturn").append(NL);
                 break;
             case BOOLEAN:
-                curr_stack_value--;
-                maxStackValue();
-                code.append(NL).append("ireturn").append(NL);
+                out.append(NL).append("ireturn").append(NL);
                 break;
             case VOID:
-                code.append(NL).append("return").append(NL);
+                out.append(NL).append("return").append(NL);
                 break;
             case OBJECTREF, STRING, ARRAYREF:
-                curr_stack_value--;
-                maxStackValue();
-                code.append(NL).append("areturn").append(NL);
+                out.append(NL).append("areturn").append(NL);
                 break;
             default:
                 throw new NotImplementedException("Return type not supported: " + returnType.name());
         }
-
-        return code.toString();
     }
 
-    private String generateBranch(CondBranchInstruction condBranchInstruction) {
-        var code = new StringBuilder();
-
+    private void generateBranch(CondBranchInstruction condBranchInstruction, JasminWriter out) {
         if (condBranchInstruction.getCondition().getInstType().equals(UNARYOPER)) {
             var aritOp = (UnaryOpInstruction) condBranchInstruction.getCondition();
-            var op = generateUnaryOp(aritOp);
-            code.append(NL).append(op).append(condBranchInstruction.getLabel()).append(NL);
-        } else if (condBranchInstruction.getCondition().getInstType().equals(BINARYOPER)) {
-            var binOp = (BinaryOpInstruction) condBranchInstruction.getCondition();
-            var op = generateBinaryOp(binOp);
-            code.append(NL).append(op).append(" ").append(condBranchInstruction.getLabel()).append(NL);
+            out.append(NL);
+            generateUnaryOp(aritOp, out);
+            out.append(condBranchInstruction.getLabel()).append(NL);
+        } else if (condBranchInstruction.getCondition() instanceof BinaryOpInstruction binOp
+                && isConditionalOperation(binOp.getOperation().getOpType())) {
+            out.append(NL);
+            generateConditionalBinaryOp(binOp, condBranchInstruction.getLabel(), out);
         } else {
-            code.append(generators.apply(condBranchInstruction.getCondition())).append(NL);
-            code.append("ifne").append(" ").append(condBranchInstruction.getLabel()).append(NL);
+            generators.accept(condBranchInstruction.getCondition(), out);
+            out.append(NL);
+            out.append("ifne").append(" ").append(condBranchInstruction.getLabel()).append(NL);
         }
-        return code.toString();
-    }
-
-    private String generateGoto(GotoInstruction gotoInstruction) {
-        var code = new StringBuilder();
-        code.append(NL).append("goto ").append(gotoInstruction.getLabel()).append(NL);
-        return code.toString();
     }
 
-    public void maxStackValue() {
-        this.stack_value = Math.max(this.stack_value, this.curr_stack_value);
+    private void generateGoto(GotoInstruction gotoInstruction, JasminWriter out) {
+        out.append(NL).append("goto ").append(gotoInstruction.getLabel()).append(NL);
     }
 
-}
\ No newline at end of file
+}
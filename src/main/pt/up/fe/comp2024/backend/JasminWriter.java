@@ -0,0 +1,161 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Sink for the Jasmin code of a class.
+ * <p>
+ * Class-level directives go straight to the output. The code of a method is collected in a buffer that is reused for
+ * every method, since its limits are only known after the whole body was generated. Text appended to the body is
+ * indented line by line as it arrives, and empty lines are dropped.
+ */
+public class JasminWriter {
+
+    private static final String TAB = "   ";
+
+    private final Appendable output;
+    private final StringBuilder body;
+
+    // true if nothing was written on the current line of the body
+    private boolean lineStart;
+
+    public JasminWriter(Appendable output) {
+        this.output = output;
+        this.body = new StringBuilder();
+        this.lineStart = true;
+    }
+
+    /**
+     * Writes text directly to the output, without indentation.
+     */
+    public JasminWriter write(CharSequence text) {
+        try {
+            output.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return this;
+    }
+
+    public JasminWriter write(int value) {
+        return write(Integer.toString(value));
+    }
+
+    /**
+     * Appends text to the body of the current method, which may span several lines.
+     */
+    public JasminWriter append(CharSequence text) {
+        int start = 0;
+        int length = text.length();
+
+        while (start < length) {
+            var newLine = indexOf(text, '\n', start);
+            var end = newLine < 0 ? length : newLine;
+
+            if (end > start) {
+                if (lineStart) {
+                    body.append(TAB);
+                    lineStart = false;
+                }
+                body.append(text, start, end);
+            }
+
+            if (newLine < 0) {
+                break;
+            }
+
+            endLine();
+            start = newLine + 1;
+        }
+
+        return this;
+    }
+
+    public JasminWriter append(char c) {
+        if (c == '\n') {
+            endLine();
+            return this;
+        }
+
+        if (lineStart) {
+            body.append(TAB);
+            lineStart = false;
+        }
+        body.append(c);
+
+        return this;
+    }
+
+    public JasminWriter append(int value) {
+        if (lineStart) {
+            body.append(TAB);
+            lineStart = false;
+        }
+        body.append(value);
+
+        return this;
+    }
+
+    /**
+     * Ends the current line of the body, if anything was written on it.
+     */
+    public void endLine() {
+        if (!lineStart) {
+            body.append('\n');
+            lineStart = true;
+        }
+    }
+
+    /**
+     * Places a label in the body of the current method, on a line of its own.
+     */
+    public void label(String label) {
+        endLine();
+        body.append(label).append(":\n");
+    }
+
+    /**
+     * @return the body of the current method written so far
+     */
+    public CharSequence getMethodBody() {
+        endLine();
+        return body;
+    }
+
+    /**
+     * Replaces the body of the current method written so far.
+     *
+     * @param methodBody complete lines, already indented
+     */
+    public void setMethodBody(CharSequence methodBody) {
+        body.setLength(0);
+        body.append(methodBody);
+        lineStart = true;
+        endLine();
+    }
+
+    /**
+     * Writes the body of the current method to the output, and clears it for the next method.
+     */
+    public void flushMethod() {
+        endLine();
+        write(body);
+        body.setLength(0);
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        if (text instanceof String string) {
+            return string.indexOf(c, from);
+        }
+
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+}
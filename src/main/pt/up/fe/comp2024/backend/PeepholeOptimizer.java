@@ -0,0 +1,394 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites short sequences of the Jasmin code of a method into shorter ones.
+ * <p>
+ * The code is parsed into a list of instructions and labels, and each rule of {@link #RULES} is tried at every
+ * position until none applies anymore. A label ends a sequence, so a rule never matches code that is also reached by
+ * a jump. The number of times each rule was applied is kept over all the methods given to the same optimizer.
+ */
+public class PeepholeOptimizer {
+
+    private static final String TAB = "   ";
+
+    private static final Map<String, String> NEGATED_BRANCHES = Map.ofEntries(
+            Map.entry("ifeq", "ifne"), Map.entry("ifne", "ifeq"),
+            Map.entry("iflt", "ifge"), Map.entry("ifge", "iflt"),
+            Map.entry("ifgt", "ifle"), Map.entry("ifle", "ifgt"),
+            Map.entry("if_icmpeq", "if_icmpne"), Map.entry("if_icmpne", "if_icmpeq"),
+            Map.entry("if_icmplt", "if_icmpge"), Map.entry("if_icmpge", "if_icmplt"),
+            Map.entry("if_icmpgt", "if_icmple"), Map.entry("if_icmple", "if_icmpgt"));
+
+    /**
+     * A line of the code, either an instruction or a label. The name of a label is kept without the colon.
+     */
+    private record Instruction(String name, String operand, boolean isLabel) {
+
+        static Instruction label(String name) {
+            return new Instruction(name, "", true);
+        }
+
+        static Instruction of(String name, String operand) {
+            return new Instruction(name, operand, false);
+        }
+
+        boolean is(String instructionName) {
+            return !isLabel && name.equals(instructionName);
+        }
+    }
+
+    /**
+     * A rewrite of the code of a method at a given position.
+     */
+    @FunctionalInterface
+    private interface Rewrite {
+
+        /**
+         * @return true if the rule applied, in which case the code was changed
+         */
+        boolean apply(MethodCode code, int index);
+    }
+
+    private record Rule(String name, Rewrite rewrite) {
+    }
+
+    private static final List<Rule> RULES = List.of(
+            new Rule("double-negation", PeepholeOptimizer::removeDoubleNegation),
+            new Rule("store-load-single-use", PeepholeOptimizer::removeStoreLoad),
+            new Rule("store-load", PeepholeOptimizer::duplicateBeforeStore),
+            new Rule("dead-store", PeepholeOptimizer::popDeadStore),
+            new Rule("push-pop", PeepholeOptimizer::removePushPop),
+            new Rule("goto-next", PeepholeOptimizer::removeJumpToNext),
+            new Rule("branch-over-goto", PeepholeOptimizer::invertBranchOverGoto),
+            new Rule("unreachable", PeepholeOptimizer::removeUnreachable),
+            new Rule("unused-label", PeepholeOptimizer::removeUnusedLabel));
+
+    private final int[] hits;
+
+    public PeepholeOptimizer() {
+        this.hits = new int[RULES.size()];
+    }
+
+    /**
+     * @param methodBody the instructions and labels of a method, one per line, without directives
+     * @return the optimized body, in the same format
+     */
+    public String optimize(CharSequence methodBody) {
+        var code = new MethodCode(parse(methodBody));
+
+        var changed = true;
+        while (changed) {
+            changed = false;
+            // counts only go down while rules apply, so rules relying on them stay correct until the next pass
+            code.count();
+
+            for (int index = 0; index < code.instructions.size(); index++) {
+                for (int rule = 0; rule < RULES.size(); rule++) {
+                    if (RULES.get(rule).rewrite().apply(code, index)) {
+                        hits[rule]++;
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        return code.toString();
+    }
+
+    /**
+     * @return the number of times each rule was applied, by rule name, in the order the rules are tried
+     */
+    public Map<String, Integer> getHits() {
+        var result = new LinkedHashMap<String, Integer>();
+        for (int rule = 0; rule < RULES.size(); rule++) {
+            result.put(RULES.get(rule).name(), hits[rule]);
+        }
+
+        return result;
+    }
+
+    public List<Report> getReports() {
+        var reports = new ArrayList<Report>();
+        getHits().forEach((rule, count) -> reports.add(Report.newLog(Stage.GENERATION, -1, -1,
+                "Peephole rule '" + rule + "': " + count + " hits", null)));
+
+        return reports;
+    }
+
+    private static List<Instruction> parse(CharSequence methodBody) {
+        var instructions = new ArrayList<Instruction>();
+
+        for (var line : methodBody.toString().lines().toList()) {
+            var text = line.strip();
+            if (text.isEmpty() || text.startsWith(";")) {
+                continue;
+            }
+
+            if (text.endsWith(":")) {
+                instructions.add(Instruction.label(text.substring(0, text.length() - 1)));
+                continue;
+            }
+
+            var separator = text.indexOf(' ');
+            instructions.add(separator < 0 ?
+                    Instruction.of(text, "") :
+                    Instruction.of(text.substring(0, separator), text.substring(separator + 1).strip()));
+        }
+
+        return instructions;
+    }
+
+    /**
+     * The code of the method being optimized, with the number of reads of each register and of jumps to each label.
+     */
+    private static class MethodCode {
+
+        private final List<Instruction> instructions;
+        private final Map<Integer, Integer> reads;
+        private final Map<String, Integer> jumps;
+
+        MethodCode(List<Instruction> instructions) {
+            this.instructions = instructions;
+            this.reads = new HashMap<>();
+            this.jumps = new HashMap<>();
+        }
+
+        void count() {
+            reads.clear();
+            jumps.clear();
+
+            for (var instruction : instructions) {
+                if (isLoad(instruction) || instruction.is("iinc")) {
+                    reads.merge(getRegister(instruction), 1, Integer::sum);
+                } else if (isJump(instruction)) {
+                    jumps.merge(instruction.operand(), 1, Integer::sum);
+                }
+            }
+        }
+
+        Instruction get(int index) {
+            return index < instructions.size() ? instructions.get(index) : null;
+        }
+
+        /**
+         * Replaces the given number of instructions starting at the index.
+         */
+        void replace(int index, int count, List<Instruction> replacement) {
+            var window = instructions.subList(index, index + count);
+            window.clear();
+            window.addAll(replacement);
+        }
+
+        /**
+         * @return true if the labels starting at the index include the given one
+         */
+        boolean isLabelAt(int index, String label) {
+            for (var instruction = get(index); instruction != null && instruction.isLabel();) {
+                if (instruction.name().equals(label)) {
+                    return true;
+                }
+                instruction = get(++index);
+            }
+
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            var code = new StringBuilder();
+            for (var instruction : instructions) {
+                if (instruction.isLabel()) {
+                    code.append(instruction.name()).append(":\n");
+                    continue;
+                }
+
+                code.append(TAB).append(instruction.name());
+                if (!instruction.operand().isEmpty()) {
+                    code.append(" ").append(instruction.operand());
+                }
+                code.append("\n");
+            }
+
+            return code.toString();
+        }
+    }
+
+    /**
+     * iconst_1; ixor; iconst_1; ixor, negating a boolean twice, does nothing.
+     */
+    private static boolean removeDoubleNegation(MethodCode code, int index) {
+        for (int i = 0; i < 4; i++) {
+            var instruction = code.get(index + i);
+            if (instruction == null || !instruction.is(i % 2 == 0 ? "iconst_1" : "ixor")) {
+                return false;
+            }
+        }
+
+        code.replace(index, 4, List.of());
+        return true;
+    }
+
+    /**
+     * A store followed by the only load of the register leaves the value on the stack.
+     */
+    private static boolean removeStoreLoad(MethodCode code, int index) {
+        if (!isStoreThenLoad(code.get(index), code.get(index + 1))
+                || code.reads.getOrDefault(getRegister(code.get(index)), 0) != 1) {
+            return false;
+        }
+
+        code.replace(index, 2, List.of());
+        return true;
+    }
+
+    /**
+     * A store followed by a load of the same register duplicates the value instead of reading the register again.
+     */
+    private static boolean duplicateBeforeStore(MethodCode code, int index) {
+        var store = code.get(index);
+        if (!isStoreThenLoad(store, code.get(index + 1))) {
+            return false;
+        }
+
+        code.replace(index, 2, List.of(Instruction.of("dup", ""), store));
+        return true;
+    }
+
+    /**
+     * A store to a register that is never read only needs to drop the value.
+     */
+    private static boolean popDeadStore(MethodCode code, int index) {
+        var store = code.get(index);
+        if (store == null || !isStore(store) || code.reads.containsKey(getRegister(store))) {
+            return false;
+        }
+
+        code.replace(index, 1, List.of(Instruction.of("pop", "")));
+        return true;
+    }
+
+    /**
+     * A value that is pushed and popped right away is not needed.
+     */
+    private static boolean removePushPop(MethodCode code, int index) {
+        var push = code.get(index);
+        var pop = code.get(index + 1);
+        if (push == null || pop == null || !pop.is("pop")
+                || !(isLoad(push) || isConstant(push) || push.is("dup"))) {
+            return false;
+        }
+
+        code.replace(index, 2, List.of());
+        return true;
+    }
+
+    /**
+     * A goto to the label right after it does nothing.
+     */
+    private static boolean removeJumpToNext(MethodCode code, int index) {
+        var jump = code.get(index);
+        if (jump == null || !jump.is("goto") || !code.isLabelAt(index + 1, jump.operand())) {
+            return false;
+        }
+
+        code.replace(index, 1, List.of());
+        return true;
+    }
+
+    /**
+     * if&lt;cond&gt; L1; goto L2; L1: jumps to L2 when the condition does not hold.
+     */
+    private static boolean invertBranchOverGoto(MethodCode code, int index) {
+        var branch = code.get(index);
+        var jump = code.get(index + 1);
+        if (branch == null || jump == null || branch.isLabel() || !NEGATED_BRANCHES.containsKey(branch.name())
+                || !jump.is("goto") || !code.isLabelAt(index + 2, branch.operand())) {
+            return false;
+        }
+
+        code.replace(index, 2, List.of(Instruction.of(NEGATED_BRANCHES.get(branch.name()), jump.operand())));
+        return true;
+    }
+
+    /**
+     * Instructions after a goto or a return are only reached through a label.
+     */
+    private static boolean removeUnreachable(MethodCode code, int index) {
+        var exit = code.get(index);
+        var next = code.get(index + 1);
+        if (exit == null || next == null || next.isLabel() || !(exit.is("goto") || exit.is("return")
+                || exit.is("ireturn") || exit.is("areturn"))) {
+            return false;
+        }
+
+        code.replace(index + 1, 1, List.of());
+        return true;
+    }
+
+    /**
+     * Labels no instruction jumps to only split the code.
+     */
+    private static boolean removeUnusedLabel(MethodCode code, int index) {
+        var label = code.get(index);
+        if (label == null || !label.isLabel() || code.jumps.containsKey(label.name())) {
+            return false;
+        }
+
+        code.replace(index, 1, List.of());
+        return true;
+    }
+
+    private static boolean isStoreThenLoad(Instruction store, Instruction load) {
+        if (store == null || load == null || !isStore(store) || !isLoad(load)
+                || getRegister(store) != getRegister(load)) {
+            return false;
+        }
+
+        // istore with iload, astore with aload
+        return store.name().charAt(0) == load.name().charAt(0);
+    }
+
+    private static boolean isLoad(Instruction instruction) {
+        return !instruction.isLabel() && (instruction.name().startsWith("iload")
+                || instruction.name().startsWith("aload"));
+    }
+
+    private static boolean isStore(Instruction instruction) {
+        return !instruction.isLabel() && (instruction.name().startsWith("istore")
+                || instruction.name().startsWith("astore"));
+    }
+
+    private static boolean isConstant(Instruction instruction) {
+        var name = instruction.name();
+        return !instruction.isLabel() && (name.startsWith("iconst_") || name.equals("bipush")
+                || name.equals("sipush") || name.equals("ldc"));
+    }
+
+    private static boolean isJump(Instruction instruction) {
+        return instruction.is("goto") || !instruction.isLabel() && NEGATED_BRANCHES.containsKey(instruction.name());
+    }
+
+    /**
+     * @return the register of a load, store or iinc, in its short or long form
+     */
+    private static int getRegister(Instruction instruction) {
+        var name = instruction.name();
+        var underscore = name.indexOf('_');
+        if (underscore >= 0) {
+            return Integer.parseInt(name.substring(underscore + 1));
+        }
+
+        var operand = instruction.operand();
+        var space = operand.indexOf(' ');
+        return Integer.parseInt(space < 0 ? operand : operand.substring(0, space));
+    }
+}
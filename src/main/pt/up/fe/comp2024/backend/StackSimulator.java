@@ -0,0 +1,150 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static pt.up.fe.comp2024.backend.BytecodeBuilder.*;
+
+/**
+ * Computes the maximum operand stack depth of the Jasmin code of a method.
+ * <p>
+ * The depth before each instruction is propagated along the control-flow graph of the code, from the first instruction
+ * through fall-through and jump edges, so unreachable code does not count and each path is followed only once.
+ */
+public class StackSimulator {
+
+    private record Instruction(int opcode, String operand, String line) {
+    }
+
+    private final List<Instruction> instructions;
+    private final Map<String, Integer> labels;
+
+    private StackSimulator(CharSequence methodBody) {
+        this.instructions = new ArrayList<>();
+        this.labels = new HashMap<>();
+
+        methodBody.toString().lines().forEach(this::parseLine);
+    }
+
+    /**
+     * @param methodBody the instructions and labels of a method, one per line, without directives
+     * @return the maximum depth of the operand stack
+     */
+    public static int maxStack(CharSequence methodBody) {
+        return new StackSimulator(methodBody).simulate();
+    }
+
+    private void parseLine(String line) {
+        var text = line.strip();
+        if (text.isEmpty() || text.startsWith(";")) {
+            return;
+        }
+
+        if (text.endsWith(":")) {
+            labels.put(text.substring(0, text.length() - 1), instructions.size());
+            return;
+        }
+
+        var separator = text.indexOf(' ');
+        var name = separator < 0 ? text : text.substring(0, separator);
+        var operand = separator < 0 ? "" : text.substring(separator + 1).strip();
+
+        var opcode = getOpcode(name);
+        if (opcode < 0) {
+            throw new RuntimeException("Unknown instruction in Jasmin code: " + text);
+        }
+
+        instructions.add(new Instruction(opcode, operand, text));
+    }
+
+    private int simulate() {
+        // depth of the stack before each instruction, -1 if not reached yet
+        var depths = new int[instructions.size()];
+        Arrays.fill(depths, -1);
+
+        var pending = new ArrayDeque<Integer>();
+        var maxStack = 0;
+
+        if (!instructions.isEmpty()) {
+            depths[0] = 0;
+            pending.push(0);
+        }
+
+        while (!pending.isEmpty()) {
+            int index = pending.pop();
+            var instruction = instructions.get(index);
+
+            var depth = depths[index] + getStackEffect(instruction);
+            if (depth < 0) {
+                throw new RuntimeException("Operand stack underflow at '" + instruction.line() + "'");
+            }
+            maxStack = Math.max(maxStack, depth);
+
+            for (var successor : getSuccessors(index, instruction)) {
+                if (depths[successor] < 0) {
+                    depths[successor] = depth;
+                    pending.push(successor);
+                } else if (depths[successor] != depth) {
+                    throw new RuntimeException("Inconsistent operand stack depth at '"
+                            + instructions.get(successor).line() + "': " + depths[successor] + " and " + depth);
+                }
+            }
+        }
+
+        return maxStack;
+    }
+
+    private static int getStackEffect(Instruction instruction) {
+        var opcode = instruction.opcode();
+
+        return switch (opcode) {
+            case GETFIELD, PUTFIELD, GETSTATIC, PUTSTATIC -> {
+                // owner/name descriptor
+                var operand = instruction.operand();
+                yield getFieldStackEffect(opcode, operand.substring(operand.lastIndexOf(' ') + 1));
+            }
+            case INVOKEVIRTUAL, INVOKESPECIAL, INVOKESTATIC, INVOKEINTERFACE -> {
+                // owner/name(arguments)return, followed by the argument count for invokeinterface
+                var operand = instruction.operand();
+                var end = operand.indexOf(' ', operand.indexOf(')'));
+                var method = end < 0 ? operand : operand.substring(0, end);
+                yield getInvokeStackEffect(opcode, method.substring(method.indexOf('(')));
+            }
+            default -> BytecodeBuilder.getStackEffect(opcode);
+        };
+    }
+
+    private List<Integer> getSuccessors(int index, Instruction instruction) {
+        return switch (instruction.opcode()) {
+            case IRETURN, ARETURN, RETURN -> List.of();
+            case GOTO -> List.of(getTarget(instruction));
+            case IFEQ, IFNE, IFLT, IFGE, IFGT, IFLE, IF_ICMPEQ, IF_ICMPNE, IF_ICMPLT, IF_ICMPGE, IF_ICMPGT, IF_ICMPLE ->
+                    List.of(getTarget(instruction), getNext(index, instruction));
+            default -> List.of(getNext(index, instruction));
+        };
+    }
+
+    private int getTarget(Instruction instruction) {
+        var target = labels.get(instruction.operand());
+        if (target == null) {
+            throw new RuntimeException("Unknown label in '" + instruction.line() + "'");
+        }
+        if (target >= instructions.size()) {
+            throw new RuntimeException("Jump past the end of the method in '" + instruction.line() + "'");
+        }
+
+        return target;
+    }
+
+    private int getNext(int index, Instruction instruction) {
+        if (index + 1 >= instructions.size()) {
+            throw new RuntimeException("Execution falls off the end of the method after '" + instruction.line() + "'");
+        }
+
+        return index + 1;
+    }
+}
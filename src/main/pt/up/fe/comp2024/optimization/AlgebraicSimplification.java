@@ -0,0 +1,145 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+
+/**
+ * Simplifies the integer arithmetic of assignments that have a literal operand.
+ * <p>
+ * Additions and subtractions of 0, multiplications and divisions by 1 become copies of the other operand, and
+ * multiplications by 0 and subtractions of a variable from itself become 0. Multiplications by a power of two become
+ * left shifts. Divisions by a power of two are kept, since a shift rounds negative values the other way.
+ * <p>
+ * The backends apply {@link #simplify(BinaryOpInstruction)} as well, so code compiled without optimizations also
+ * benefits from it.
+ */
+public class AlgebraicSimplification implements OllirPass {
+
+    @Override
+    public int optimize(Method method) {
+        var changes = 0;
+
+        for (var instruction : new ArrayList<>(method.getInstructions())) {
+            if (!(instruction instanceof AssignInstruction assign)
+                    || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)) {
+                continue;
+            }
+
+            var simplified = simplify(binaryOp);
+            if (simplified != binaryOp) {
+                OptUtils.replaceInstruction(method, assign,
+                        new AssignInstruction(assign.getDest(), assign.getTypeOfAssign(), simplified));
+                changes++;
+            }
+        }
+
+        if (changes > 0) {
+            OptUtils.rebuildCFG(method);
+        }
+
+        return changes;
+    }
+
+    /**
+     * Finds a cheaper instruction with the same value as the operation. The operation itself is left unchanged.
+     *
+     * @return a copy of an element, a left shift, or the operation itself if it cannot be simplified
+     */
+    public static Instruction simplify(BinaryOpInstruction binaryOp) {
+        var operation = binaryOp.getOperation();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        // dropping an operand must not drop a read that may be out of bounds
+        if (operation.getTypeInfo().getTypeOfElement() != ElementType.INT32
+                || left instanceof ArrayOperand || right instanceof ArrayOperand) {
+            return binaryOp;
+        }
+
+        var value = getEqualElement(operation.getOpType(), left, right);
+        if (value != null) {
+            return new SingleOpInstruction(value);
+        }
+
+        if (operation.getOpType() != OperationType.MUL) {
+            return binaryOp;
+        }
+
+        var shift = getShift(getValue(right));
+        var shifted = left;
+        if (shift < 0) {
+            shift = getShift(getValue(left));
+            shifted = right;
+        }
+
+        if (shift < 0) {
+            return binaryOp;
+        }
+
+        return new BinaryOpInstruction(shifted, new Operation(OperationType.SHL, operation.getTypeInfo()),
+                new LiteralElement(String.valueOf(shift), new Type(ElementType.INT32)));
+    }
+
+    /**
+     * @return the element the operation is equal to, or null if it has to be computed
+     */
+    private static Element getEqualElement(OperationType opType, Element left, Element right) {
+        var leftValue = getValue(left);
+        var rightValue = getValue(right);
+
+        return switch (opType) {
+            case ADD -> isValue(rightValue, 0) ? left : isValue(leftValue, 0) ? right : null;
+            case SUB -> {
+                if (isValue(rightValue, 0)) {
+                    yield left;
+                }
+                yield left instanceof Operand leftOperand && right instanceof Operand rightOperand
+                        && leftOperand.getName().equals(rightOperand.getName()) ? zero() : null;
+            }
+            case MUL -> {
+                if (isValue(rightValue, 0) || isValue(leftValue, 0)) {
+                    yield zero();
+                }
+                yield isValue(rightValue, 1) ? left : isValue(leftValue, 1) ? right : null;
+            }
+            case DIV -> isValue(rightValue, 1) ? left : null;
+            default -> null;
+        };
+    }
+
+    private static boolean isValue(Integer value, int expected) {
+        return value != null && value == expected;
+    }
+
+    /**
+     * @return the base 2 logarithm of the value if it is a power of two greater than 1, -1 otherwise
+     */
+    static int getShift(Integer value) {
+        if (value == null || value <= 1 || Integer.bitCount(value) != 1) {
+            return -1;
+        }
+
+        return Integer.numberOfTrailingZeros(value);
+    }
+
+    /**
+     * @return the value of the element if it is an integer literal, null otherwise
+     */
+    static Integer getValue(Element element) {
+        if (!(element instanceof LiteralElement literal)
+                || literal.getType().getTypeOfElement() != ElementType.INT32) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Element zero() {
+        return new LiteralElement("0", new Type(ElementType.INT32));
+    }
+}
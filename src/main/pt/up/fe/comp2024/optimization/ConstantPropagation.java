@@ -0,0 +1,262 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.NodePosition;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.ast.TypeUtils;
+
+import java.util.*;
+
+/**
+ * Constant propagation and constant folding of integer expressions on the AST.
+ * <p>
+ * Reads of local int variables with a known value and arithmetic over constants are replaced by integer literals. The
+ * values of the variables are computed by a forward dataflow analysis over the statements of each method: at the end
+ * of an if statement only the values both branches agree on are kept, and the values at the start of a while loop
+ * are the ones that also hold at the end of its body, found by iterating over the body until they do not change.
+ * <p>
+ * Only values that can be written as a literal in the language are folded, so negative results and divisions by zero
+ * are left for the program to compute.
+ */
+public class ConstantPropagation {
+
+    private static final Set<String> ARITHMETIC_OPS = Set.of("+", "-", "*", "/");
+
+    private final SymbolTable table;
+
+    // the int variables of the current method that can hold a constant
+    private Set<String> tracked;
+    private int changes;
+
+    public ConstantPropagation(SymbolTable table) {
+        this.table = table;
+        this.tracked = Set.of();
+        this.changes = 0;
+    }
+
+    /**
+     * Propagates and folds the constants of all methods under the given node.
+     *
+     * @return the number of expressions that were replaced by a literal
+     */
+    public int optimize(JmmNode root) {
+        changes = 0;
+
+        for (var method : root.getDescendants(Kind.METHOD_DECL)) {
+            tracked = getTrackedVariables(method.get("name"));
+            transferAll(method.getChildren(), new HashMap<>(), true);
+        }
+
+        return changes;
+    }
+
+    private Set<String> getTrackedVariables(String methodName) {
+        var fields = new HashSet<String>();
+        for (var field : table.getFields()) {
+            fields.add(field.getName());
+        }
+
+        var variables = new HashSet<String>();
+        for (var local : table.getLocalVariables(methodName)) {
+            var type = local.getType();
+            // the OLLIR generator reads a local that shadows a field from the field
+            if (type.getName().equals(TypeUtils.getIntTypeName()) && !type.isArray()
+                    && !fields.contains(local.getName())) {
+                variables.add(local.getName());
+            }
+        }
+
+        for (var param : table.getParameters(methodName)) {
+            variables.remove(param.getName());
+        }
+
+        return variables;
+    }
+
+    private void transferAll(List<JmmNode> statements, Map<String, Integer> values, boolean rewrite) {
+        for (var statement : statements) {
+            transfer(statement, values, rewrite);
+        }
+    }
+
+    /**
+     * Updates the known values with the effect of the statement, rewriting its expressions if asked to.
+     */
+    private void transfer(JmmNode statement, Map<String, Integer> values, boolean rewrite) {
+        if (Kind.ASSIGNMENT.check(statement)) {
+            var value = evaluate(statement.getChild(0), values);
+            if (rewrite) {
+                rewrite(statement.getChild(0), values);
+            }
+
+            var name = statement.get("var");
+            if (!tracked.contains(name)) {
+                return;
+            }
+
+            if (value != null) {
+                values.put(name, value);
+            } else {
+                values.remove(name);
+            }
+        } else if (Kind.check(statement, Kind.ARRAY_ASSIGN, Kind.EXPR_STMT, Kind.RETURN_STMT)) {
+            if (rewrite) {
+                for (var child : statement.getChildren()) {
+                    rewrite(child, values);
+                }
+            }
+        } else if (Kind.BRACKETS.check(statement)) {
+            transferAll(statement.getChildren(), values, rewrite);
+        } else if (Kind.IF_STMT.check(statement)) {
+            transferIf(statement, values, rewrite);
+        } else if (Kind.WHILE_STMT.check(statement)) {
+            transferWhile(statement, values, rewrite);
+        } else {
+            // statements the generator does not handle, such as for loops, are left untouched
+            for (var assignment : statement.getDescendants(Kind.ASSIGNMENT)) {
+                values.remove(assignment.get("var"));
+            }
+        }
+    }
+
+    private void transferIf(JmmNode ifStmt, Map<String, Integer> values, boolean rewrite) {
+        var ifExpr = ifStmt.getChild(0);
+        var elseExpr = ifStmt.getChild(1);
+
+        if (rewrite) {
+            rewrite(ifExpr.getChild(0), values);
+        }
+
+        var thenValues = new HashMap<>(values);
+        transfer(ifExpr.getChild(1), thenValues, rewrite);
+
+        var elseValues = new HashMap<>(values);
+        transfer(elseExpr.getChild(0), elseValues, rewrite);
+
+        values.clear();
+        values.putAll(meet(thenValues, elseValues));
+    }
+
+    private void transferWhile(JmmNode whileStmt, Map<String, Integer> values, boolean rewrite) {
+        var condition = whileStmt.getChild(0);
+        var body = whileStmt.getChild(1);
+
+        // the condition is reached both before the loop and after each iteration, values only ever get removed
+        Map<String, Integer> head = new HashMap<>(values);
+        while (true) {
+            var bodyValues = new HashMap<>(head);
+            transfer(body, bodyValues, false);
+
+            var next = meet(head, bodyValues);
+            if (next.equals(head)) {
+                break;
+            }
+            head = next;
+        }
+
+        if (rewrite) {
+            rewrite(condition, head);
+            transfer(body, new HashMap<>(head), true);
+        }
+
+        // the loop is left when the condition is false
+        values.clear();
+        values.putAll(head);
+    }
+
+    private static Map<String, Integer> meet(Map<String, Integer> first, Map<String, Integer> second) {
+        var result = new HashMap<String, Integer>();
+        for (var entry : first.entrySet()) {
+            if (entry.getValue().equals(second.get(entry.getKey()))) {
+                result.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Replaces the largest constant subexpressions of the expression by literals.
+     */
+    private void rewrite(JmmNode expr, Map<String, Integer> values) {
+        if (Kind.INTEGER.check(expr)) {
+            return;
+        }
+
+        var value = evaluate(expr, values);
+        if (value == null) {
+            for (var child : expr.getChildren()) {
+                rewrite(child, values);
+            }
+            return;
+        }
+
+        var literal = new JmmNodeImpl(Kind.INTEGER.getNodeName());
+        for (var position : NodePosition.values()) {
+            expr.getOptional(position.getString()).ifPresent(attribute -> literal.put(position.getString(), attribute));
+        }
+        literal.setHierarchy(List.of(Kind.INTEGER.getNodeName(), Kind.EXPR.getNodeName()));
+        literal.put("value", String.valueOf(value));
+        expr.replace(literal);
+        changes++;
+    }
+
+    /**
+     * @return the value of the expression, or null if it is not a constant that can be written as a literal
+     */
+    private Integer evaluate(JmmNode expr, Map<String, Integer> values) {
+        if (Kind.INTEGER.check(expr)) {
+            return parseLiteral(expr.get("value"));
+        }
+
+        if (Kind.IDENTIFIER.check(expr)) {
+            return tracked.contains(expr.get("value")) ? values.get(expr.get("value")) : null;
+        }
+
+        if (Kind.PARENTESIS.check(expr)) {
+            return evaluate(expr.getChild(0), values);
+        }
+
+        if (Kind.BINARY_OP.check(expr)) {
+            return evaluateBinaryOp(expr, values);
+        }
+
+        return null;
+    }
+
+    private Integer evaluateBinaryOp(JmmNode binaryOp, Map<String, Integer> values) {
+        var op = binaryOp.get("op");
+        if (!ARITHMETIC_OPS.contains(op)) {
+            return null;
+        }
+
+        var left = evaluate(binaryOp.getChild(0), values);
+        var right = evaluate(binaryOp.getChild(1), values);
+        if (left == null || right == null) {
+            return null;
+        }
+
+        if (op.equals("/") && right == 0) {
+            return null;
+        }
+
+        var result = switch (op) {
+            case "+" -> left + right;
+            case "-" -> left - right;
+            case "*" -> left * right;
+            default -> left / right;
+        };
+
+        return result >= 0 ? result : null;
+    }
+
+    private static Integer parseLiteral(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
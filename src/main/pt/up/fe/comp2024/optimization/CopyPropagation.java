@@ -0,0 +1,170 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the copies between variables that the OLLIR generator leaves behind.
+ * <p>
+ * A value computed into a temporary that is only copied into a variable is computed into the variable directly. After
+ * a copy 'x := y', the following reads of 'x' in the same basic block read 'y' instead, until either of them is
+ * written, so that the copy becomes dead and can be removed by {@link DeadCodeElimination}.
+ */
+public class CopyPropagation implements OllirPass {
+
+    @Override
+    public int optimize(Method method) {
+        var changes = coalesce(method);
+        if (changes > 0) {
+            OptUtils.rebuildCFG(method);
+        }
+
+        for (var instruction : method.getInstructions()) {
+            changes += propagate(instruction, method);
+        }
+
+        return changes;
+    }
+
+    /**
+     * Turns 't := value; x := t' into 'x := value' when 't' is not read afterwards.
+     */
+    private static int coalesce(Method method) {
+        var liveness = Liveness.analyze(method);
+        var instructions = method.getInstructions();
+
+        var removed = 0;
+        for (var copy : new ArrayList<>(instructions)) {
+            var index = instructions.indexOf(copy);
+            if (index < 1 || method.getLabels().containsValue(copy)) {
+                continue;
+            }
+
+            var source = getCopySource(copy, method);
+            if (source == null || !(instructions.get(index - 1) instanceof AssignInstruction definition)) {
+                continue;
+            }
+
+            var target = (Operand) ((AssignInstruction) copy).getDest();
+            if (definition.getDest() instanceof Operand temporary && !(temporary instanceof ArrayOperand)
+                    && temporary.getName().equals(source.getName())
+                    && Liveness.isLocal(temporary.getName(), method)
+                    && !liveness.getLiveOut(copy).contains(temporary.getName())
+                    && OptUtils.removeInstruction(method, copy)) {
+                temporary.setName(target.getName());
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * Renames the reads of the variable written by the copy in the instructions that follow it in its basic block.
+     *
+     * @return the number of reads renamed
+     */
+    private static int propagate(Instruction copy, Method method) {
+        var source = getCopySource(copy, method);
+        if (source == null) {
+            return 0;
+        }
+
+        var target = ((Operand) ((AssignInstruction) copy).getDest()).getName();
+        if (!Liveness.isLocal(target, method) || target.equals(source.getName())) {
+            return 0;
+        }
+
+        var renamed = 0;
+        var current = copy;
+        while (current.getSuccessors().size() == 1 && current.getSuccessors().get(0) instanceof Instruction next
+                && next.getPredecessors().size() == 1) {
+            renamed += rename(getReads(next), target, source.getName());
+
+            if (writes(next, target) || writes(next, source.getName())) {
+                break;
+            }
+            current = next;
+        }
+
+        return renamed;
+    }
+
+    /**
+     * @return the variable read by the instruction if it copies a variable into another, null otherwise
+     */
+    private static Operand getCopySource(Instruction instruction, Method method) {
+        if (!(instruction instanceof AssignInstruction assign)
+                || !(assign.getDest() instanceof Operand target) || target instanceof ArrayOperand
+                || !(assign.getRhs() instanceof SingleOpInstruction singleOp)
+                || !(singleOp.getSingleOperand() instanceof Operand source) || source instanceof ArrayOperand) {
+            return null;
+        }
+
+        // only variables of the same type, 'this' and class names are left alone
+        var sourceDescriptor = method.getVarTable().get(source.getName());
+        var targetDescriptor = method.getVarTable().get(target.getName());
+        if (sourceDescriptor == null || targetDescriptor == null || "this".equals(source.getName())
+                || sourceDescriptor.getScope() == VarScope.FIELD
+                || !sourceDescriptor.getVarType().toString().equals(targetDescriptor.getVarType().toString())) {
+            return null;
+        }
+
+        return source;
+    }
+
+    private static boolean writes(Instruction instruction, String name) {
+        return instruction instanceof AssignInstruction assign
+                && !(assign.getDest() instanceof ArrayOperand)
+                && assign.getDest() instanceof Operand dest
+                && dest.getName().equals(name);
+    }
+
+    /**
+     * @return the nodes of the instruction that may hold reads of variables
+     */
+    private static List<TreeNode> getReads(Instruction instruction) {
+        var reads = new ArrayList<TreeNode>();
+
+        if (instruction instanceof AssignInstruction assign) {
+            // the array of an array element is read, not written
+            if (assign.getDest() instanceof ArrayOperand) {
+                reads.add(assign.getDest());
+            }
+            reads.add(assign.getRhs());
+        } else {
+            reads.add(instruction);
+        }
+
+        return reads;
+    }
+
+    private static int rename(Iterable<TreeNode> nodes, String from, String to) {
+        var renamed = 0;
+
+        for (var node : nodes) {
+            // the field of a field instruction is not a variable
+            if (node instanceof GetFieldInstruction getField) {
+                renamed += rename(List.of(getField.getObject()), from, to);
+                continue;
+            }
+
+            if (node instanceof PutFieldInstruction putField) {
+                renamed += rename(List.of(putField.getObject(), putField.getValue()), from, to);
+                continue;
+            }
+
+            if (node instanceof Operand operand && operand.getName().equals(from)) {
+                operand.setName(to);
+                renamed++;
+            }
+
+            renamed += rename(node.getChildren(), from, to);
+        }
+
+        return renamed;
+    }
+}
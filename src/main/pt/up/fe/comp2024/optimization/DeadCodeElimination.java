@@ -0,0 +1,71 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * Removes the instructions of a method that can never run, and the assignments to local variables whose value is never
+ * read.
+ * <p>
+ * An assignment is only removed when computing its value has no effect besides the result, as told by
+ * {@link OptUtils#isPure(Instruction)}. Calls, for instance, are kept even if their result is dead.
+ */
+public class DeadCodeElimination implements OllirPass {
+
+    @Override
+    public int optimize(Method method) {
+        var changes = removeUnreachable(method);
+        if (changes > 0) {
+            OptUtils.rebuildCFG(method);
+        }
+
+        // removing a store may leave the stores that computed its value dead as well
+        int removed;
+        while ((removed = removeDeadStores(method)) > 0) {
+            changes += removed;
+            OptUtils.rebuildCFG(method);
+        }
+
+        return changes;
+    }
+
+    private static int removeUnreachable(Method method) {
+        var reachable = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        var worklist = new ArrayDeque<Node>();
+        worklist.add(method.getBeginNode());
+
+        while (!worklist.isEmpty()) {
+            var node = worklist.poll();
+            if (reachable.add(node)) {
+                worklist.addAll(node.getSuccessors());
+            }
+        }
+
+        var removed = 0;
+        for (var instruction : new ArrayList<>(method.getInstructions())) {
+            if (!reachable.contains(instruction) && OptUtils.removeInstruction(method, instruction)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    private static int removeDeadStores(Method method) {
+        var liveness = Liveness.analyze(method);
+
+        var removed = 0;
+        for (var instruction : new ArrayList<>(method.getInstructions())) {
+            if (instruction instanceof AssignInstruction assign
+                    && !liveness.getDefs(assign).isEmpty()
+                    && Collections.disjoint(liveness.getDefs(assign), liveness.getLiveOut(assign))
+                    && OptUtils.isPure(assign.getRhs())
+                    && OptUtils.removeInstruction(method, assign)) {
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+}
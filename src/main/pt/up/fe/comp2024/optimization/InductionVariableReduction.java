@@ -0,0 +1,207 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replaces the multiplications of an induction variable by a constant in a loop with additions.
+ * <p>
+ * An induction variable is a local that is only written in the loop by adding or subtracting a constant to itself.
+ * For an assignment 'j := i * c' in the loop, a new variable 't' is set to 'i * c' before the loop and increased by
+ * 'c' times the step of 'i' right after 'i' is, so that 'j := i * c' can become 'j := t'. Left shifts by a constant
+ * count as multiplications. Loops without a preheader are skipped.
+ */
+public class InductionVariableReduction implements OllirPass {
+
+    @Override
+    public int optimize(Method method) {
+        var changes = 0;
+
+        // every reduction adds instructions, so the loops are found again
+        while (reduceInFirstLoop(method)) {
+            changes++;
+            OptUtils.rebuildCFG(method);
+        }
+
+        return changes;
+    }
+
+    private static boolean reduceInFirstLoop(Method method) {
+        var loops = NaturalLoops.analyze(method);
+
+        for (var header : loops.getHeaders()) {
+            if (loops.hasPreheader(header) && reduce(method, loops, header)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Reduces the first multiplication of an induction variable of the loop.
+     *
+     * @return true if a multiplication was reduced
+     */
+    private static boolean reduce(Method method, NaturalLoops loops, int header) {
+        var body = loops.getBody(header);
+
+        var writes = new HashMap<String, Integer>();
+        for (var instruction : body) {
+            var dest = getDest(instruction);
+            if (dest != null) {
+                writes.merge(dest, 1, Integer::sum);
+            }
+        }
+
+        // the only write of each induction variable, by name
+        var increments = new HashMap<String, AssignInstruction>();
+        for (var instruction : body) {
+            var dest = getDest(instruction);
+            if (dest != null && writes.get(dest) == 1 && Liveness.isLocal(dest, method)
+                    && getStep(instruction) != null) {
+                increments.put(dest, (AssignInstruction) instruction);
+            }
+        }
+
+        for (var instruction : body) {
+            var dest = getDest(instruction);
+            if (dest == null || writes.get(dest) != 1 || !Liveness.isLocal(dest, method)) {
+                continue;
+            }
+
+            var assign = (AssignInstruction) instruction;
+            if (!(assign.getRhs() instanceof BinaryOpInstruction binaryOp) || increments.containsKey(dest)) {
+                continue;
+            }
+
+            var variable = getScaledVariable(binaryOp, increments);
+            if (variable == null) {
+                continue;
+            }
+
+            var increment = increments.get(variable.getName());
+            var step = (long) getFactor(binaryOp) * getStep(increment);
+            // the step is written as a positive literal
+            if (Math.abs(step) <= Integer.MAX_VALUE) {
+                reduce(method, method.getInstructions().get(header), assign, increment, variable, (int) step,
+                        getFactor(binaryOp));
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static void reduce(Method method, Instruction header, AssignInstruction multiplication,
+                               AssignInstruction increment, Operand variable, int step, int factor) {
+        var intType = new Type(ElementType.INT32);
+        var instructions = method.getInstructions();
+
+        var scaled = newVariable(method);
+        var scaledOperand = new Operand(scaled, intType);
+
+        // before the loop, the new variable starts as the multiplication would
+        var initial = new AssignInstruction(new Operand(scaled, intType), intType,
+                new BinaryOpInstruction(new Operand(variable.getName(), intType), new Operation(OperationType.MUL,
+                        intType), new LiteralElement(String.valueOf(factor), intType)));
+
+        // and follows each change of the induction variable
+        var opType = step < 0 ? OperationType.SUB : OperationType.ADD;
+        var update = new AssignInstruction(new Operand(scaled, intType), intType,
+                new BinaryOpInstruction(new Operand(scaled, intType), new Operation(opType, intType),
+                        new LiteralElement(String.valueOf(Math.abs(step)), intType)));
+
+        // the labels of the header stay on it, so jumps back into the loop skip the new instruction
+        instructions.add(instructions.indexOf(header), initial);
+        instructions.add(instructions.indexOf(increment) + 1, update);
+        OptUtils.replaceInstruction(method, multiplication,
+                new AssignInstruction(multiplication.getDest(), multiplication.getTypeOfAssign(),
+                        new SingleOpInstruction(scaledOperand)));
+    }
+
+    /**
+     * @return the induction variable the operation multiplies by a constant, or null if there is none
+     */
+    private static Operand getScaledVariable(BinaryOpInstruction binaryOp, Map<String, AssignInstruction> increments) {
+        if (getFactor(binaryOp) == null) {
+            return null;
+        }
+
+        for (var operand : binaryOp.getOperands()) {
+            if (operand instanceof Operand variable && !(variable instanceof ArrayOperand)
+                    && increments.containsKey(variable.getName())) {
+                return variable;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @return the constant the operation multiplies its other operand by, or null if it is not such a multiplication
+     */
+    private static Integer getFactor(BinaryOpInstruction binaryOp) {
+        var left = AlgebraicSimplification.getValue(binaryOp.getLeftOperand());
+        var right = AlgebraicSimplification.getValue(binaryOp.getRightOperand());
+
+        return switch (binaryOp.getOperation().getOpType()) {
+            case MUL -> right != null ? right : left;
+            case SHL -> right != null && right >= 0 && right < 31 ? 1 << right : null;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the constant the assignment adds to its variable, or null if it does not
+     */
+    private static Integer getStep(Instruction instruction) {
+        if (!(instruction instanceof AssignInstruction assign)
+                || !(assign.getRhs() instanceof BinaryOpInstruction binaryOp)) {
+            return null;
+        }
+
+        var name = getDest(instruction);
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+        var leftValue = AlgebraicSimplification.getValue(left);
+        var rightValue = AlgebraicSimplification.getValue(right);
+        var readsItself = left instanceof Operand operand && operand.getName().equals(name);
+
+        return switch (binaryOp.getOperation().getOpType()) {
+            case ADD -> readsItself ? rightValue : right instanceof Operand operand
+                    && operand.getName().equals(name) ? leftValue : null;
+            // a step of -MIN_VALUE would not fit
+            case SUB -> readsItself && rightValue != null && rightValue != Integer.MIN_VALUE ? -rightValue : null;
+            default -> null;
+        };
+    }
+
+    /**
+     * @return the int variable written by the instruction, or null if it writes no such variable
+     */
+    private static String getDest(Instruction instruction) {
+        if (instruction instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest
+                && !(dest instanceof ArrayOperand)
+                && dest.getType().getTypeOfElement() == ElementType.INT32) {
+            return dest.getName();
+        }
+
+        return null;
+    }
+
+    private static String newVariable(Method method) {
+        var varTable = method.getVarTable();
+
+        var name = "iv0";
+        for (int i = 1; varTable.containsKey(name); i++) {
+            name = "iv" + i;
+        }
+
+        var register = varTable.values().stream().mapToInt(Descriptor::getVirtualReg).max().orElse(-1) + 1;
+        varTable.put(name, new Descriptor(VarScope.LOCAL, register, new Type(ElementType.INT32)));
+        return name;
+    }
+}
@@ -3,11 +3,34 @@ package pt.up.fe.comp2024.optimization;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.utils.ReportUtils;
 
 import java.util.Collections;
+import java.util.List;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
+    // how many times constant propagation may run over the tree, and the OLLIR passes over the same method
+    private static final int MAX_ITERATIONS = 10;
+
+    @Override
+    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+
+        if (CompilerConfig.getOptimize(semanticsResult.getConfig())) {
+            // folding a value may make another variable constant, so run until nothing is replaced or the limit is hit
+            var propagation = new ConstantPropagation(semanticsResult.getSymbolTable());
+            for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+                var replaced = propagation.optimize(semanticsResult.getRootNode());
+                if (replaced == 0) {
+                    break;
+                }
+            }
+        }
+
+        return semanticsResult;
+    }
+
     @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
@@ -20,9 +43,30 @@ public class JmmOptimizationImpl implements JmmOptimization {
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
+        var config = ollirResult.getConfig();
+        var reports = ollirResult.getReports();
+
+        if (CompilerConfig.getOptimize(config)) {
+            // passes may keep state while they run, so every unit gets its own pass list
+            var passManager = new OllirPassManager(getOllirPasses(), MAX_ITERATIONS);
+            reports.addAll(passManager.run(ollirResult.getOllirClass()));
+        }
+
+        // registers are assigned last, once the code does not change anymore
+        var registers = CompilerConfig.getRegisterAllocation(config);
+        if (registers >= 0 && !ReportUtils.anyError(reports)) {
+            reports.addAll(new RegisterAllocator(registers).allocate(ollirResult.getOllirClass()));
+        }
 
         return ollirResult;
     }
 
+    /**
+     * @return the OLLIR passes of '-o', in the order they run
+     */
+    static List<OllirPass> getOllirPasses() {
+        return List.of(new AlgebraicSimplification(), new InductionVariableReduction(), new CopyPropagation(),
+                new DeadCodeElimination(), new LoopInvariantCodeMotion());
+    }
 
 }
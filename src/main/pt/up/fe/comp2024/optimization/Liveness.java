@@ -0,0 +1,155 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.*;
+
+/**
+ * Liveness of the local variables of a method, for each of its instructions.
+ * <p>
+ * Only variables with a LOCAL descriptor in the var table are tracked, except 'this'. Parameters, fields and class names
+ * are never part of the sets. The control-flow graph of the method must be up to date.
+ */
+public class Liveness {
+
+    private final Map<Instruction, Set<String>> uses;
+    private final Map<Instruction, Set<String>> defs;
+    private final Map<Instruction, Set<String>> liveIn;
+    private final Map<Instruction, Set<String>> liveOut;
+
+    private Liveness(Method method) {
+        this.uses = new HashMap<>();
+        this.defs = new HashMap<>();
+        this.liveIn = new HashMap<>();
+        this.liveOut = new HashMap<>();
+
+        var instructions = method.getInstructions();
+        for (var instruction : instructions) {
+            uses.put(instruction, getUses(instruction, method));
+            defs.put(instruction, getDefs(instruction, method));
+            liveIn.put(instruction, new HashSet<>());
+            liveOut.put(instruction, new HashSet<>());
+        }
+
+        // backwards problem, visiting the instructions in reverse order makes it converge faster
+        var changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                var instruction = instructions.get(i);
+
+                var out = new HashSet<String>();
+                for (var successor : instruction.getSuccessors()) {
+                    if (successor instanceof Instruction successorInstruction) {
+                        out.addAll(liveIn.get(successorInstruction));
+                    }
+                }
+
+                var in = new HashSet<>(out);
+                in.removeAll(defs.get(instruction));
+                in.addAll(uses.get(instruction));
+
+                if (!in.equals(liveIn.get(instruction)) || !out.equals(liveOut.get(instruction))) {
+                    liveIn.put(instruction, in);
+                    liveOut.put(instruction, out);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    public static Liveness analyze(Method method) {
+        return new Liveness(method);
+    }
+
+    /**
+     * @return the variables read by the instruction
+     */
+    public Set<String> getUses(Instruction instruction) {
+        return uses.get(instruction);
+    }
+
+    /**
+     * @return the variables written by the instruction
+     */
+    public Set<String> getDefs(Instruction instruction) {
+        return defs.get(instruction);
+    }
+
+    /**
+     * @return the variables that are live before the instruction
+     */
+    public Set<String> getLiveIn(Instruction instruction) {
+        return liveIn.get(instruction);
+    }
+
+    /**
+     * @return the variables that are live after the instruction
+     */
+    public Set<String> getLiveOut(Instruction instruction) {
+        return liveOut.get(instruction);
+    }
+
+    /**
+     * @return true if the variable is a local variable of the method that can be tracked
+     */
+    public static boolean isLocal(String name, Method method) {
+        if ("this".equals(name)) {
+            return false;
+        }
+
+        var descriptor = method.getVarTable().get(name);
+        return descriptor != null && descriptor.getScope() == VarScope.LOCAL;
+    }
+
+    private static Set<String> getUses(Instruction instruction, Method method) {
+        var uses = new HashSet<String>();
+
+        if (instruction instanceof AssignInstruction assign) {
+            // the array and the indexes of an array element are read, not written
+            if (assign.getDest() instanceof ArrayOperand arrayOperand) {
+                addUses(arrayOperand, method, uses);
+            }
+            addUses(assign.getRhs(), method, uses);
+        } else {
+            addUses(instruction, method, uses);
+        }
+
+        return uses;
+    }
+
+    private static Set<String> getDefs(Instruction instruction, Method method) {
+        if (instruction instanceof AssignInstruction assign
+                && !(assign.getDest() instanceof ArrayOperand)
+                && assign.getDest() instanceof Operand operand
+                && isLocal(operand.getName(), method)) {
+            return Set.of(operand.getName());
+        }
+
+        return Set.of();
+    }
+
+    private static void addUses(TreeNode node, Method method, Set<String> uses) {
+        // the field of a field instruction is not a variable
+        if (node instanceof GetFieldInstruction getField) {
+            addUses(getField.getObject(), method, uses);
+            return;
+        }
+
+        if (node instanceof PutFieldInstruction putField) {
+            addUses(putField.getObject(), method, uses);
+            addUses(putField.getValue(), method, uses);
+            return;
+        }
+
+        if (node instanceof Operand operand && isLocal(operand.getName(), method)) {
+            uses.add(operand.getName());
+        }
+
+        for (var child : node.getChildren()) {
+            addUses(child, method, uses);
+        }
+    }
+}
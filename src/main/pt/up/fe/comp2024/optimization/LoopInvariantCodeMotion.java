@@ -0,0 +1,239 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
+
+import java.util.*;
+
+/**
+ * Moves the instructions that compute the same value in every iteration of a loop to right before the loop.
+ * <p>
+ * Loops are the {@link NaturalLoops} of the control-flow graph, so they do not depend on the statement they came from.
+ * An assignment is moved when its value is {@link OptUtils#isPure(Instruction) pure}, its operands are not written in
+ * the loop, and it is the only write of its variable in the loop, which must not be read before being written in an
+ * iteration. Field reads are only moved out of loops without calls or writes to the field.
+ * <p>
+ * The instructions are placed before the header of the loop, so loops without a preheader are skipped. Inner loops are
+ * handled first.
+ */
+public class LoopInvariantCodeMotion implements OllirPass {
+
+    @Override
+    public int optimize(Method method) {
+        var changes = 0;
+
+        // every move changes the control-flow graph, so the loops are found again
+        int moved;
+        while ((moved = hoistFromFirstLoop(method)) > 0) {
+            changes += moved;
+            OptUtils.rebuildCFG(method);
+        }
+
+        return changes;
+    }
+
+    private static int hoistFromFirstLoop(Method method) {
+        var loops = NaturalLoops.analyze(method);
+
+        Liveness liveness = null;
+        for (var header : loops.getHeaders()) {
+            if (!loops.hasPreheader(header)) {
+                continue;
+            }
+
+            if (liveness == null) {
+                liveness = Liveness.analyze(method);
+            }
+
+            var invariant = new Loop(method, header, loops, liveness).getInvariantInstructions();
+            if (!invariant.isEmpty()) {
+                hoist(method, method.getInstructions().get(header), invariant);
+                return invariant.size();
+            }
+        }
+
+        return 0;
+    }
+
+    private static void hoist(Method method, Instruction header, List<Instruction> invariant) {
+        var instructions = method.getInstructions();
+
+        // the header itself may move, then its labels go to the next instruction that stays
+        var anchor = header;
+        for (int i = instructions.indexOf(header); invariant.contains(anchor); i++) {
+            anchor = instructions.get(i + 1);
+        }
+
+        for (var instruction : invariant) {
+            if (!OptUtils.removeInstruction(method, instruction)) {
+                throw new RuntimeException("Could not move instruction out of loop in method '"
+                        + method.getMethodName() + "'");
+            }
+        }
+
+        instructions.addAll(instructions.indexOf(anchor), invariant);
+    }
+
+    /**
+     * A natural loop of a method, with what is needed to tell which of its instructions are invariant.
+     */
+    private static class Loop {
+
+        private final Method method;
+        private final Instruction header;
+        private final List<Instruction> body;
+        private final NaturalLoops loops;
+        private final Liveness liveness;
+
+        // how many times each variable is written in the loop
+        private final Map<String, Integer> writes;
+        private final Set<String> writtenFields;
+        private final Set<String> liveAtExits;
+        private final List<Instruction> exits;
+        private final boolean hasCalls;
+
+        Loop(Method method, int header, NaturalLoops loops, Liveness liveness) {
+            this.method = method;
+            this.header = method.getInstructions().get(header);
+            this.body = loops.getBody(header);
+            this.loops = loops;
+            this.liveness = liveness;
+
+            this.writes = new HashMap<>();
+            this.writtenFields = new HashSet<>();
+            this.liveAtExits = new HashSet<>();
+            this.exits = loops.getExits(header);
+            var calls = false;
+
+            for (var instruction : body) {
+                if (instruction instanceof AssignInstruction assign && assign.getDest() instanceof Operand dest
+                        && !(dest instanceof ArrayOperand)) {
+                    writes.merge(dest.getName(), 1, Integer::sum);
+                }
+
+                if (instruction instanceof PutFieldInstruction putField) {
+                    writtenFields.add(putField.getField().getName());
+                }
+
+                calls |= instruction instanceof CallInstruction
+                        || instruction instanceof AssignInstruction assign && assign.getRhs() instanceof CallInstruction call
+                        && call.getInvocationType() != CallType.arraylength;
+            }
+
+            for (var exit : exits) {
+                for (var successor : exit.getSuccessors()) {
+                    if (!loops.contains(header, successor) && successor instanceof Instruction target) {
+                        liveAtExits.addAll(liveness.getLiveIn(target));
+                    }
+                }
+            }
+
+            this.hasCalls = calls;
+        }
+
+        /**
+         * @return the instructions that can be moved before the loop, in the order they must run
+         */
+        List<Instruction> getInvariantInstructions() {
+            var invariant = new ArrayList<Instruction>();
+            // arrays whose length is read before anything else in the loop, so reading it again cannot throw
+            var nonNullArrays = new HashSet<String>();
+
+            var changed = true;
+            while (changed) {
+                changed = false;
+
+                for (var instruction : body) {
+                    if (!invariant.contains(instruction) && isInvariant(instruction, nonNullArrays)) {
+                        invariant.add(instruction);
+                        // the variable is now written before the loop
+                        writes.remove(((Operand) ((AssignInstruction) instruction).getDest()).getName());
+                        changed = true;
+                    }
+                }
+            }
+
+            // keep the order of the method, so that values are computed before being used
+            invariant.sort(Comparator.comparingInt(loops::indexOf));
+            return invariant;
+        }
+
+        private boolean isInvariant(Instruction instruction, Set<String> nonNullArrays) {
+            if (!(instruction instanceof AssignInstruction assign) || !(assign.getDest() instanceof Operand dest)
+                    || dest instanceof ArrayOperand) {
+                return false;
+            }
+
+            var name = dest.getName();
+            var rhs = assign.getRhs();
+            if (!Liveness.isLocal(name, method) || writes.getOrDefault(name, 0) != 1 || !OptUtils.isPure(rhs)
+                    || liveness.getLiveIn(header).contains(name)) {
+                return false;
+            }
+
+            // when the loop does not run, the variable must keep the value it had before
+            if (liveAtExits.contains(name) && !dominatesExits(instruction)) {
+                return false;
+            }
+
+            if (rhs instanceof GetFieldInstruction getField) {
+                return !hasCalls && !writtenFields.contains(getField.getField().getName());
+            }
+
+            if (!readsInvariantValues(rhs)) {
+                return false;
+            }
+
+            if (rhs instanceof CallInstruction call) {
+                // 'arraylength' of a null array throws, that may only happen where it happened before
+                var array = ((Operand) call.getCaller()).getName();
+                if (nonNullArrays.contains(array)) {
+                    return true;
+                }
+
+                if (!dominatesExits(instruction) || !startsLoop(instruction)) {
+                    return false;
+                }
+                nonNullArrays.add(array);
+            }
+
+            return true;
+        }
+
+        private boolean readsInvariantValues(TreeNode node) {
+            if (node instanceof Operand operand && writes.containsKey(operand.getName())) {
+                return false;
+            }
+
+            for (var child : node.getChildren()) {
+                if (!readsInvariantValues(child)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private boolean dominatesExits(Instruction instruction) {
+            return exits.stream().allMatch(exit -> loops.dominates(instruction, exit));
+        }
+
+        /**
+         * @return true if the instruction runs right after the header, with only pure instructions before it
+         */
+        private boolean startsLoop(Instruction instruction) {
+            var current = header;
+            while (current != instruction) {
+                if (!(current instanceof AssignInstruction assign) || !OptUtils.isPure(assign.getRhs())
+                        || current.getSuccessors().size() != 1
+                        || !(current.getSuccessors().get(0) instanceof Instruction next)
+                        || next.getPredecessors().size() != 1) {
+                    return false;
+                }
+                current = next;
+            }
+
+            return true;
+        }
+    }
+}
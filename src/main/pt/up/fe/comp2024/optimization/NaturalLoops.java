@@ -0,0 +1,199 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.*;
+
+/**
+ * The natural loops of a method, found from the back edges of its control-flow graph.
+ * <p>
+ * Loops that share a header are merged. Instructions are referred to by their index in the method, and the
+ * control-flow graph must be up to date.
+ */
+public class NaturalLoops {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+    private final Map<Node, Integer> indexes;
+    private final List<BitSet> dominators;
+    private final Map<Integer, BitSet> loops;
+
+    private NaturalLoops(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+        this.indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
+
+        this.dominators = computeDominators();
+        this.loops = computeLoops();
+    }
+
+    public static NaturalLoops analyze(Method method) {
+        return new NaturalLoops(method);
+    }
+
+    /**
+     * @return the indexes of the loop headers, inner loops first
+     */
+    public List<Integer> getHeaders() {
+        // inner loops are smaller than the loops around them
+        var headers = new ArrayList<>(loops.keySet());
+        headers.sort(Comparator.comparingInt(header -> loops.get(header).cardinality()));
+        return headers;
+    }
+
+    /**
+     * @return the instructions of the loop with the given header, in the order of the method
+     */
+    public List<Instruction> getBody(int header) {
+        return loops.get(header).stream().mapToObj(instructions::get).toList();
+    }
+
+    public boolean contains(int header, Node node) {
+        var index = indexes.get(node);
+        return index != null && loops.get(header).get(index);
+    }
+
+    /**
+     * @return the index of the instruction in the method, or -1 for the begin and end nodes
+     */
+    public int indexOf(Node node) {
+        return indexes.getOrDefault(node, -1);
+    }
+
+    /**
+     * @return true if every path from the start of the method to the second instruction goes through the first
+     */
+    public boolean dominates(Instruction dominator, Instruction instruction) {
+        return dominators.get(indexes.get(instruction)).get(indexes.get(dominator));
+    }
+
+    /**
+     * @return the instructions of the loop that may leave it
+     */
+    public List<Instruction> getExits(int header) {
+        var exits = new ArrayList<Instruction>();
+        for (var instruction : getBody(header)) {
+            if (instruction.getSuccessors().stream().anyMatch(successor -> !contains(header, successor))) {
+                exits.add(instruction);
+            }
+        }
+
+        return exits;
+    }
+
+    /**
+     * Tells if instructions placed right before the header run exactly once each time the loop is entered.
+     *
+     * @return true if the only way into the loop is falling through from the instruction before its header
+     */
+    public boolean hasPreheader(int header) {
+        var headerInstruction = instructions.get(header);
+
+        for (var predecessor : headerInstruction.getPredecessors()) {
+            if (contains(header, predecessor)) {
+                continue;
+            }
+
+            var index = indexOf(predecessor);
+            if (index == -1 ? header != 0 : index != header - 1) {
+                return false;
+            }
+
+            if (predecessor instanceof GotoInstruction jump
+                    && method.getLabels().get(jump.getLabel()) == headerInstruction
+                    || predecessor instanceof CondBranchInstruction branch
+                    && method.getLabels().get(branch.getLabel()) == headerInstruction) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Computes the instructions that dominate each instruction, as bit sets of their indexes.
+     */
+    private List<BitSet> computeDominators() {
+        var dominators = new ArrayList<BitSet>();
+        for (int i = 0; i < instructions.size(); i++) {
+            var all = new BitSet();
+            all.set(0, instructions.size());
+            dominators.add(all);
+        }
+
+        var changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < instructions.size(); i++) {
+                BitSet dominator = null;
+                for (var predecessor : instructions.get(i).getPredecessors()) {
+                    var index = indexes.get(predecessor);
+                    // the start of the method is only dominated by itself
+                    var predecessorDominators = index != null ? dominators.get(index) : new BitSet();
+
+                    if (dominator == null) {
+                        dominator = (BitSet) predecessorDominators.clone();
+                    } else {
+                        dominator.and(predecessorDominators);
+                    }
+                }
+
+                if (dominator == null) {
+                    // unreachable, left as dominated by everything
+                    continue;
+                }
+
+                dominator.set(i);
+                if (!dominator.equals(dominators.get(i))) {
+                    dominators.set(i, dominator);
+                    changed = true;
+                }
+            }
+        }
+
+        return dominators;
+    }
+
+    /**
+     * @return the instructions of each loop, by the index of its header
+     */
+    private Map<Integer, BitSet> computeLoops() {
+        var loops = new HashMap<Integer, BitSet>();
+
+        for (int tail = 0; tail < instructions.size(); tail++) {
+            for (var successor : instructions.get(tail).getSuccessors()) {
+                var header = indexes.get(successor);
+                if (header == null || !dominators.get(tail).get(header)) {
+                    continue;
+                }
+
+                // a back edge, the loop holds everything that reaches its tail without going through the header
+                var body = loops.computeIfAbsent(header, key -> new BitSet());
+                body.set(header);
+
+                var worklist = new ArrayDeque<Integer>();
+                worklist.add(tail);
+                while (!worklist.isEmpty()) {
+                    var index = worklist.poll();
+                    if (body.get(index)) {
+                        continue;
+                    }
+
+                    body.set(index);
+                    for (var predecessor : instructions.get(index).getPredecessors()) {
+                        var predecessorIndex = indexes.get(predecessor);
+                        if (predecessorIndex != null) {
+                            worklist.add(predecessorIndex);
+                        }
+                    }
+                }
+            }
+        }
+
+        return loops;
+    }
+}
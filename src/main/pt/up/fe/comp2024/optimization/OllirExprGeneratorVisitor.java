@@ -64,6 +64,21 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         return new OllirExprResult(code.toString(),computation.toString());
     }
 
+    private int tempNumber = -1;
+
+    private String getTemp() {
+        return getTemp("tmp");
+    }
+
+    private String getTemp(String prefix) {
+        return prefix + getNextTempNum();
+    }
+
+    private int getNextTempNum() {
+        tempNumber += 1;
+        return tempNumber;
+    }
+
     private int arrayCounter = 0;
 
     private String getNextLabelArray() {
@@ -81,7 +96,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         //code.append(getNextLabelArray()).append(".array.i32");
 
-        String tempInit = OptUtils.getTemp() + ".array.i32";
+        String tempInit = getTemp() + ".array.i32";
         code.append(tempInit);
         computation.append(tempInit).append(ASSIGN).append(".array.i32 new(array, ").append(node.getChildren().size()).append(".i32)").append(".array.i32").append(END_STMT);
         //computation.append(getCurrentLabelArray()).append(".array.i32").append(ASSIGN).append(".array.i32 ").append(tempInit).append(END_STMT);
@@ -103,7 +118,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
             code.append("arraylength(").append(node.getChild(0).get("value")).append(".array.i32)");
             return new OllirExprResult(code.toString());
         }
-        var temp = OptUtils.getTemp() + ".i32";
+        var temp = getTemp() + ".i32";
         computation.append(temp).append(ASSIGN).append(".i32").append(" arraylength(").append(node.getChild(0).get("value")).append(".array.i32)").append(".i32;\n");
         code.append(temp);
 
@@ -128,7 +143,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
         if(!node.getParent().getKind().equals("Assignment")){
 
-            var temp = OptUtils.getTemp() + ".i32";
+            var temp = getTemp() + ".i32";
             computation.append(temp).append(" ").append(ASSIGN).append(".i32 ").append(node.getChild(0).get("value"));
 
             computation.append("[").append(indexNode.getCode()).append("].i32").append(END_STMT);
@@ -158,7 +173,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         }
 
         if(isField){
-            var auxTemp = OptUtils.getTemp() + ".array.i32";
+            var auxTemp = getTemp() + ".array.i32";
 
             var sizeNode = visit(node.getJmmChild(1));
             computation.append(sizeNode.getComputation());
@@ -192,7 +207,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         code.append(exprNode.getComputation());
 
         // Append the OLLIR code for the negation operation
-        String negatedVar = OptUtils.getTemp() + ".bool";
+        String negatedVar = getTemp() + ".bool";
         code.append(negatedVar).append(" :=.bool !.bool ").append(exprNode.getCode()).append(END_STMT);
 
         return new OllirExprResult(negatedVar, code);
@@ -237,7 +252,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         }
 
         // Generate code for creating a new instance of the class
-        String instanceVar = OptUtils.getTemp();
+        String instanceVar = getTemp();
         code.append(instanceVar).append(".").append(className).append(SPACE)
                 .append(" :=").append(".").append(className).append(SPACE).append("new(").append(className).append(")").append(".").append(className).append(END_STMT);
 
@@ -256,31 +271,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         return new OllirExprResult(code);
     }
 
-    private int thenCounter = 0;
-    private int currentElseCounter1 = -1;
-    private int currentElseCounter2 = -1;
-    private String getNextLabelTrue() {
-        currentElseCounter1++;
-        currentElseCounter2++;
-        return "true_" + thenCounter++;
-    }
-
-    private String getCurrentLabelTrue(){
-        var x = thenCounter-1;
-        return "true_" + x +":";
-    }
-
-    private String getNextLabelEnd() {
-        var x = currentElseCounter1--;
-        return "end_" + x;
-
-    }
-
-    private String getCurrentLabelEnd(){
-        var x = currentElseCounter2--;
-        return "end_" + x +":";
-
-    }
+    private int andCounter = 0;
 
 
     private OllirExprResult visitBinExpr(JmmNode node, Void unused) {
@@ -295,16 +286,18 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
 
 
             code.append(lhs.getComputation());
-            String tempStore = OptUtils.getTemp() + ".bool";
-            String tempAux = OptUtils.getTemp() + ".bool";
-            code.append("if (").append(lhs.getCode()).append(") goto ").append(getNextLabelTrue()).append(END_STMT);
+            String tempStore = getTemp() + ".bool";
+            String tempAux = getTemp() + ".bool";
+            // the operands are visited already, so the labels of the && inside them are taken
+            var number = andCounter++;
+            code.append("if (").append(lhs.getCode()).append(") goto true_").append(number).append(END_STMT);
             code.append(tempStore).append(ASSIGN).append(".bool 0.bool;\n");
-            code.append("goto ").append(getNextLabelEnd()).append(END_STMT);
-            code.append(getCurrentLabelTrue()).append("\n");
+            code.append("goto end_").append(number).append(END_STMT);
+            code.append("true_").append(number).append(":\n");
             code.append(rhs.getComputation());
             code.append(tempAux).append(ASSIGN).append(".bool ").append(rhs.getCode()).append(END_STMT);
             code.append(tempStore).append(ASSIGN).append(".bool ").append(tempAux).append(END_STMT);
-            code.append(getCurrentLabelEnd()).append("\n");
+            code.append("end_").append(number).append(":\n");
             computation.append(tempStore);
 
             return new OllirExprResult(computation.toString(),code);
@@ -317,7 +310,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         }
 
         // Generate code for the computation of the result
-        String code = OptUtils.getTemp() + resOllirType;
+        String code = getTemp() + resOllirType;
         computation.append(lhs.getComputation());
 
 
@@ -418,7 +411,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                                     computation.append(x1.getComputation());
                                 }
                                 else{
-                                tempVarArgAux = OptUtils.getTemp() + ".array.i32";
+                                tempVarArgAux = getTemp() + ".array.i32";
                                 computation.append(tempVarArgAux).append(ASSIGN).append(" .array.i32").append(" new(array, ").append(arguments.size()-varArgParamNum).append(".i32).array.i32").append(END_STMT);
                                 computation.append(getNextLabelArray()).append(".array.i32").append(ASSIGN).append(".array.i32 ").append(tempVarArgAux).append(END_STMT);
                                 for(int j = 0; j < arguments.size()-varArgParamNum; j++){
@@ -438,7 +431,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                             String argCode = argumentResult.getCode();
 
                             if (argument.getKind().equals("FunctionCall")) {   // tmp0.i32 =.i32 invokevirtual(tmp0.Simple, "add", 1.i32).i32
-                                String tmp = OptUtils.getTemp();
+                                String tmp = getTemp();
                                 String lastType = "";
                                 if (table.getMethods().contains(methodSignature)) {
                                     Type argType = table.getParameters(methodSignature).get(i).getType();
@@ -486,7 +479,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                         }
 
                         else if(node.getParent().getKind().equals("BinaryOp")){
-                            var aux = OptUtils.getTemp();
+                            var aux = getTemp();
                             String resOllirType = node.getParent().get("op").equals("+") || node.getParent().get("op").equals("-") || node.getParent().get("op").equals("*") || node.getParent().get("op").equals("/") ? ".i32" : ".bool";
                             computation.append(aux).append(resOllirType).append(ASSIGN).append(" ").append(resOllirType).append(" ").append(code).append(")").append(resOllirType).append(END_STMT);
                             code = new StringBuilder(aux);
@@ -537,7 +530,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                                     computation.append(x1.getComputation());
                                 }
                                 else{
-                                tempVarArgAux = OptUtils.getTemp() + ".array.i32";
+                                tempVarArgAux = getTemp() + ".array.i32";
                                 computation.append(tempVarArgAux).append(ASSIGN).append(" .array.i32").append(" new(array, ").append(arguments.size()-varArgParamNum).append(".i32).array.i32").append(END_STMT);
                                 computation.append(getNextLabelArray()).append(".array.i32").append(ASSIGN).append(".array.i32 ").append(tempVarArgAux).append(END_STMT);
                                 for(int j = 0; j < arguments.size()-varArgParamNum; j++){
@@ -559,7 +552,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                             String argCode = argumentResult.getCode();
 
                             if (argument.getKind().equals("FunctionCall")) {   // tmp0.i32 =.i32 invokevirtual(tmp0.Simple, "add", 1.i32).i32
-                                String tmp = OptUtils.getTemp();
+                                String tmp = getTemp();
                                 String lastType = argCode.substring(argCode.indexOf("."));
                                 computation.append(tmp).append(lastType)
                                         .append(" :=").append(lastType).append(" ")
@@ -600,7 +593,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                         }
 
                         else if(node.getParent().getKind().equals("BinaryOp")){
-                            var aux = OptUtils.getTemp();
+                            var aux = getTemp();
                             String resOllirType = node.getParent().get("op").equals("+") || node.getParent().get("op").equals("-") || node.getParent().get("op").equals("*") || node.getParent().get("op").equals("/") ? ".i32" : ".bool";
                             computation.append(aux).append(resOllirType).append(ASSIGN).append(" ").append(resOllirType).append(" ").append(code).append(")").append(resOllirType).append(END_STMT);
                             code = new StringBuilder(aux);
@@ -662,7 +655,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                             x1 = visit(node.getChild(i+1));
                             computation.append(x1.getComputation());
                         }
-                        tempVarArgAux = OptUtils.getTemp() + ".array.i32";
+                        tempVarArgAux = getTemp() + ".array.i32";
                         computation.append(tempVarArgAux).append(ASSIGN).append(" .array.i32").append(" new(array, ").append(arguments.size()-varArgParamNum).append(".i32).array.i32").append(END_STMT);
                         computation.append(getNextLabelArray()).append(".array.i32").append(ASSIGN).append(".array.i32 ").append(tempVarArgAux).append(END_STMT);
                         for(int j = 0; j < arguments.size()-varArgParamNum; j++){
@@ -715,7 +708,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                 }
 
                 else if(node.getParent().getKind().equals("BinaryOp")){
-                    var aux = OptUtils.getTemp();
+                    var aux = getTemp();
                     String resOllirType = node.getParent().get("op").equals("+") || node.getParent().get("op").equals("-") || node.getParent().get("op").equals("*") || node.getParent().get("op").equals("/") ? ".i32" : ".bool";
                     computation.append(aux).append(resOllirType).append(ASSIGN).append(" ").append(resOllirType).append(" ").append(code).append(resOllirType).append(END_STMT);
                     code = new StringBuilder(aux);
@@ -736,7 +729,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                 }
 
                 if(node.getParent().getKind().equals("FunctionCall")){
-                    var aux = OptUtils.getTemp();
+                    var aux = getTemp();
                     var lastType = code.substring(code.lastIndexOf("."));
                     computation.append(aux).append(lastType).append(ASSIGN).append(" ").append(lastType).append(" ").append(code).append(lastType).append(END_STMT);
                     code = new StringBuilder(aux);
@@ -784,7 +777,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                             computation.append(x1.getComputation());
                         }
                         else{
-                        tempVarArgAux = OptUtils.getTemp() + ".array.i32";
+                        tempVarArgAux = getTemp() + ".array.i32";
                         computation.append(tempVarArgAux).append(ASSIGN).append(" .array.i32").append(" new(array, ").append(arguments.size()-varArgParamNum).append(".i32).array.i32").append(END_STMT);
                         computation.append(getNextLabelArray()).append(".array.i32").append(ASSIGN).append(".array.i32 ").append(tempVarArgAux).append(END_STMT);
 
@@ -808,7 +801,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                     String argCode = argumentResult.getCode();
 
                     if (argument.getKind().equals("FunctionCall")) {   // tmp0.i32 =.i32 invokevirtual(tmp0.Simple, "add", 1.i32).i32
-                        String tmp = OptUtils.getTemp();
+                        String tmp = getTemp();
                         String lastType = "";
                         if (table.getMethods().contains(methodSignature)) {
                             Type argType = table.getParameters(methodSignature).get(i).getType();
@@ -860,7 +853,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                 }
 
                 else if(node.getParent().getKind().equals("BinaryOp")){
-                    var aux = OptUtils.getTemp();
+                    var aux = getTemp();
                     String resOllirType = node.getParent().get("op").equals("+") || node.getParent().get("op").equals("-") || node.getParent().get("op").equals("*") || node.getParent().get("op").equals("/") ? ".i32" : ".bool";
                     computation.append(aux).append(resOllirType).append(ASSIGN).append(" ").append(resOllirType).append(" ").append(code).append("").append(resOllirType).append(END_STMT);
                     code = new StringBuilder(aux);
@@ -915,7 +908,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                 code.append("(");
                 code.append(child.getChildren().get(0).get("value"));
                 code.append(OptUtils.toOllirType(argTypeImport));
-                /*code1 = OptUtils.getTemp() + OptUtils.toOllirType(argTypeImport);
+                /*code1 = getTemp() + OptUtils.toOllirType(argTypeImport);
                 computation.append(funcLhs.getComputation());
                 computation.append(code1).append(" :=").append(OptUtils.toOllirType(argTypeImport)).append(" ");
                 funcLhs = new OllirExprResult(code1); // Include the type here
@@ -985,7 +978,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
                     computation.append(x1.getComputation());
                 }
                 else {
-                    tempVarArgAux = OptUtils.getTemp() + ".array.i32";
+                    tempVarArgAux = getTemp() + ".array.i32";
                     computation.append(tempVarArgAux).append(ASSIGN).append(" .array.i32").append(" new(array, ").append(arguments.size() - varArgParamNum).append(".i32).array.i32").append(END_STMT);
                     computation.append(getNextLabelArray()).append(".array.i32").append(ASSIGN).append(".array.i32 ").append(tempVarArgAux).append(END_STMT);
                     for (int j = 0; j < arguments.size() - varArgParamNum; j++) {
@@ -1084,7 +1077,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         var isBinaryOpNode = node.getAncestor("BinaryOp");
 
         if (isBinaryOpNode.isPresent()){
-            var aux = OptUtils.getTemp();
+            var aux = getTemp();
             String resOllirType = isBinaryOpNode.get().get("op").equals("+") || isBinaryOpNode.get().get("op").equals("-") || isBinaryOpNode.get().get("op").equals("*") || isBinaryOpNode.get().get("op").equals("/") ? ".i32" : ".bool";
             computation.append(aux).append(resOllirType).append(ASSIGN).append(" ").append(resOllirType).append(" ").append(code).append(END_STMT);
             code = new StringBuilder(aux);
@@ -1094,7 +1087,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         var isParamNode = node.getAncestor("FunctionCall");
 
         if (isParamNode.isPresent()){
-            var aux = OptUtils.getTemp();
+            var aux = getTemp();
             returnType = table.getReturnTypeTry(node.get("value"));
             Type parentType = returnType.get();
             computation.append(aux).append(OptUtils.toOllirType(parentType)).append(ASSIGN).append(" ").append(OptUtils.toOllirType(parentType)).append(" ").append(code).append(END_STMT);
@@ -1148,7 +1141,7 @@ public class OllirExprGeneratorVisitor extends AJmmVisitor<Void, OllirExprResult
         }
 
         if (isField){
-            var aux = OptUtils.getTemp();
+            var aux = getTemp();
             computation.append(aux).append(ollirType).append(" :=").append(ollirType).append(" getfield(this, ").append(rhs).append(ollirType).append(")").append(ollirType).append(END_STMT);
             code.append(aux).append(ollirType);
 
@@ -26,6 +26,11 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     private final String L_BRACKET = " {\n";
     private final String R_BRACKET = "}\n";
 
+    private static final Map<String, String> NEGATED_COMPARISONS = Map.of(
+            "<", ">=", ">=", "<",
+            ">", "<=", "<=", ">",
+            "==", "!=", "!=", "==");
+
 
     private final SymbolTable table;
 
@@ -77,126 +82,124 @@ public class OllirGeneratorVisitor extends AJmmVisitor<Void, String> {
     }
 
 
-    private int thenCounter = 0;
-    private int currentElseCounter1 = -1;
-    private int currentElseCounter2 = -1;
-
-    private String getNextLabelThen() {
-        currentElseCounter1++;
-        currentElseCounter2++;
-        return "if_then_" + thenCounter++;
-    }
-
-    private String getCurrentLabelThen(){
-        var x = thenCounter-1;
-        return "if_then_" + x +":";
-    }
-
-    private String getNextLabelEnd() {
-        var x = currentElseCounter1--;
-        return "if_end_" + x;
-
-    }
-
-    private String getCurrentLabelEnd(){
-        var x = currentElseCounter2--;
-        return "if_end_" + x +":";
-
-    }
-
+    private int ifCounter = 0;
+    private int whileCounter = 0;
+    private int conditionCounter = 0;
 
     private String visitIfStatement(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
         var ifChild = node.getChild(0);
         var elseChild = node.getChild(1);
-        var visitChild = exprVisitor.visit(ifChild.getChild(0));
-        code.append(visitChild.getComputation());
-        code.append("if(").append(visitChild.getCode()).append(") goto ");
-        code.append(getNextLabelThen()).append(";").append(NL);
-        //code.append("handle else").append(NL);
-        var elseContent = elseChild.getChild(0);
-        for (var child : elseContent.getChildren()){
-            var aux = visit(child);
-
-            code.append(aux);
 
-        }
+        // every label of the statement is taken before visiting its bodies, which may hold other ifs
+        var number = ifCounter++;
+        var thenLabel = "if_then_" + number;
+        var endLabel = "if_end_" + number;
 
-        code.append("goto ").append(getNextLabelEnd()).append(";").append(NL);
-        code.append(getCurrentLabelThen()).append(NL);
+        generateCondition(ifChild.getChild(0), thenLabel, true, code);
 
-        var ifContent = ifChild.getChild(1);
-        for (var child : ifContent.getChildren()){
-            var aux = visit(child);
+        for (var child : elseChild.getChild(0).getChildren()) {
+            code.append(visit(child));
+        }
 
-            code.append(aux);
+        code.append("goto ").append(endLabel).append(END_STMT);
+        code.append(thenLabel).append(":").append(NL);
 
+        for (var child : ifChild.getChild(1).getChildren()) {
+            code.append(visit(child));
         }
 
-        code.append(getCurrentLabelEnd()).append(NL);
-
+        code.append(endLabel).append(":").append(NL);
 
         return code.toString();
     }
 
-    private int whileCondCounter = 0;
-    private int whileLoopCounter = 0;
+    /**
+     * Generates the loop as a do-while guarded by the condition, so that each iteration runs a single branch at the
+     * bottom of the loop instead of a test at the top and a goto back to it.
+     */
+    private String visitWhileStatement(JmmNode node, Void unused) {
+        StringBuilder code = new StringBuilder();
 
-    private int whileEndCounter = 0;
+        var number = whileCounter++;
+        var loopLabel = "whileLoop" + number;
+        var endLabel = "whileEnd" + number;
 
-    private String getNextLabelWhileCond() {
-        return "whileCond" + whileCondCounter++;
-    }
+        generateCondition(node.getChild(0), endLabel, false, code);
+        code.append(loopLabel).append(":").append(NL);
 
-    private String getCurrentLabelWhileCond(){
-        var x = whileCondCounter-1;
-        return "whileCond" + x + ";";
-    }
+        for (var child : node.getChild(1).getChildren()) {
+            code.append(visit(child));
+        }
 
-    private String getNextLabelWhileLoop() {
-        return "whileLoop" + whileLoopCounter++ + ";";
-    }
+        generateCondition(node.getChild(0), loopLabel, true, code);
+        code.append(endLabel).append(":").append(NL);
 
-    private String getCurrentLabelWhileLoop(){
-        var x = whileLoopCounter-1;
-        return "whileLoop" + x +":";
+        return code.toString();
     }
 
-    private String getNextLabelWhileEnd() {
-        return "whileEnd" + whileEndCounter++ + ";";
-    }
+    /**
+     * Appends code that jumps to the target when the condition has the given value, and falls through otherwise.
+     * <p>
+     * Comparisons become the condition of the branch itself, so that the backends emit a single compare-and-jump
+     * instead of storing a boolean and testing it. && and || jump as soon as their value is known.
+     */
+    private void generateCondition(JmmNode cond, String target, boolean jumpIfTrue, StringBuilder code) {
+        if (PARENTESIS.check(cond)) {
+            generateCondition(cond.getChild(0), target, jumpIfTrue, code);
+            return;
+        }
 
-    private String getCurrentLabelWhileEnd(){
-        var x = whileEndCounter-1;
-        return "whileEnd" + x +":";
-    }
+        if (NEGATION.check(cond)) {
+            generateCondition(cond.getChild(0), target, !jumpIfTrue, code);
+            return;
+        }
 
-    private String visitWhileStatement(JmmNode node, Void unused) {
-        StringBuilder code = new StringBuilder();
-        var condChild = node.getChild(0);
-        var visitChild = exprVisitor.visit(condChild);
+        if (TRUE.check(cond) || FALSE.check(cond)) {
+            if (TRUE.check(cond) == jumpIfTrue) {
+                code.append("goto ").append(target).append(END_STMT);
+            }
+            return;
+        }
 
-        code.append(getNextLabelWhileCond()).append(":").append(NL);
-        code.append(visitChild.getComputation());
-        code.append("if (").append(visitChild.getCode()).append(") ").append("goto ").append(getNextLabelWhileLoop()).append(NL);
-        code.append("goto ").append(getNextLabelWhileEnd()).append(NL);
-        code.append(getCurrentLabelWhileLoop()).append(NL);
-        var insideWhile = node.getChild(1);
-        for (var child : insideWhile.getChildren()){
-            var aux = visit(child);
+        var op = BINARY_OP.check(cond) ? cond.get("op") : "";
 
-            code.append(aux);
+        // a && b jumps on false as soon as a is false, a || b jumps on true as soon as a is true
+        if (op.equals("&&") || op.equals("||")) {
+            var shortCircuitsOn = op.equals("||");
+            if (jumpIfTrue == shortCircuitsOn) {
+                generateCondition(cond.getChild(0), target, jumpIfTrue, code);
+                generateCondition(cond.getChild(1), target, jumpIfTrue, code);
+                return;
+            }
 
+            var skipLabel = "cond_skip_" + conditionCounter++;
+            generateCondition(cond.getChild(0), skipLabel, !jumpIfTrue, code);
+            generateCondition(cond.getChild(1), target, jumpIfTrue, code);
+            code.append(skipLabel).append(":").append(NL);
+            return;
         }
 
-        code.append("goto ").append(getCurrentLabelWhileCond()).append(NL);
-        code.append(getCurrentLabelWhileEnd()).append(NL);
+        if (NEGATED_COMPARISONS.containsKey(op)) {
+            var lhs = exprVisitor.visit(cond.getChild(0));
+            var rhs = exprVisitor.visit(cond.getChild(1));
+            code.append(lhs.getComputation());
+            code.append(rhs.getComputation());
+            code.append("if (").append(lhs.getCode()).append(SPACE)
+                    .append(jumpIfTrue ? op : NEGATED_COMPARISONS.get(op)).append(".bool ")
+                    .append(rhs.getCode()).append(") goto ").append(target).append(END_STMT);
+            return;
+        }
 
-        return code.toString();
+        var value = exprVisitor.visit(cond);
+        code.append(value.getComputation());
+        code.append("if (").append(value.getCode());
+        if (!jumpIfTrue) {
+            code.append(" ==.bool 0.bool");
+        }
+        code.append(") goto ").append(target).append(END_STMT);
     }
 
-
-
     private String visitExpressionStmt(JmmNode node, Void unused) {
         StringBuilder code = new StringBuilder();
 
@@ -0,0 +1,21 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Method;
+
+/**
+ * Represents an optimization pass over the OLLIR code of a method.
+ */
+public interface OllirPass {
+
+    /**
+     * Optimizes the given method in place.
+     *
+     * @param method the method to optimize, with an up-to-date control-flow graph
+     * @return the number of changes made to the method, 0 if it was left unchanged
+     */
+    int optimize(Method method);
+
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,95 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs an ordered list of OLLIR passes over each method of a class.
+ * <p>
+ * The passes are repeated, in order, until none of them changes the method or the iteration limit is reached. The
+ * control-flow graph of the method is rebuilt after every pass that changed it, and the variables the passes left
+ * unused are dropped from its var table at the end.
+ */
+public class OllirPassManager {
+
+    private final List<OllirPass> passes;
+    private final int maxIterations;
+
+    /**
+     * @param passes        the passes to run, in order
+     * @param maxIterations how many times the passes may run over the same method
+     */
+    public OllirPassManager(List<OllirPass> passes, int maxIterations) {
+        if (maxIterations < 1) {
+            throw new RuntimeException("Expected at least one iteration, got " + maxIterations);
+        }
+
+        this.passes = passes;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Optimizes all methods of the class in place.
+     *
+     * @return a log with the time taken and the number of changes made by each pass, or an error if a pass failed
+     */
+    public List<Report> run(ClassUnit classUnit) {
+        var reports = new ArrayList<Report>();
+
+        var changes = new long[passes.size()];
+        var nanos = new long[passes.size()];
+
+        for (var method : classUnit.getMethods()) {
+            OptUtils.rebuildCFG(method);
+
+            var changed = true;
+            var changedMethod = false;
+            for (int iteration = 0; changed && iteration < maxIterations; iteration++) {
+                changed = false;
+
+                for (int i = 0; i < passes.size(); i++) {
+                    var pass = passes.get(i);
+
+                    int passChanges;
+                    var start = System.nanoTime();
+                    try {
+                        passChanges = pass.optimize(method);
+                    } catch (Exception e) {
+                        reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1,
+                                "Problem while executing optimization pass '" + pass.getName() + "' on method '"
+                                        + method.getMethodName() + "'", e));
+                        return reports;
+                    }
+                    nanos[i] += System.nanoTime() - start;
+
+                    if (passChanges > 0) {
+                        changes[i] += passChanges;
+                        changed = true;
+                        changedMethod = true;
+                        OptUtils.rebuildCFG(method);
+                    }
+                }
+            }
+
+            if (changedMethod) {
+                OptUtils.removeUnusedVariables(method);
+            }
+
+            if (changed) {
+                reports.add(Report.newLog(Stage.OPTIMIZATION, -1, -1, "Method '" + method.getMethodName()
+                        + "' still changed after " + maxIterations + " iterations", null));
+            }
+        }
+
+        for (int i = 0; i < passes.size(); i++) {
+            reports.add(Report.newLog(Stage.OPTIMIZATION, -1, -1, String.format("Pass '%s': %d changes in %.3f ms",
+                    passes.get(i).getName(), changes[i], nanos[i] / 1_000_000.0), null));
+        }
+
+        return reports;
+    }
+}
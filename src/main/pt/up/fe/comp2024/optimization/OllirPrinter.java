@@ -0,0 +1,223 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.stream.Collectors;
+
+/**
+ * Writes a class back as OLLIR code.
+ * <p>
+ * The OLLIR passes change the class in place, so the code the class was parsed from no longer describes it once they
+ * ran. The code written here parses back into the same instructions, labels and types.
+ */
+public class OllirPrinter {
+
+    private static final String NL = "\n";
+
+    private OllirPrinter() {
+    }
+
+    public static String print(ClassUnit classUnit) {
+        var code = new StringBuilder();
+
+        for (var imp : classUnit.getImports()) {
+            code.append("import ").append(imp).append(";").append(NL);
+        }
+
+        code.append(classUnit.getClassName());
+        // the parser keeps Object by its full name
+        var superClass = classUnit.getSuperClass();
+        if (superClass == null || superClass.equals("java/lang/Object")) {
+            superClass = "Object";
+        }
+        code.append(" extends ").append(superClass).append(" {").append(NL);
+
+        for (var field : classUnit.getFields()) {
+            code.append(".field ").append(getModifiers(field.getFieldAccessModifier(), field.isStaticField(),
+                    field.isFinalField()));
+            code.append(field.getFieldName()).append(getType(field.getFieldType())).append(";").append(NL);
+        }
+
+        for (var method : classUnit.getMethods()) {
+            code.append(NL);
+            printMethod(method, code);
+        }
+
+        code.append("}").append(NL);
+
+        return code.toString();
+    }
+
+    private static void printMethod(Method method, StringBuilder code) {
+        if (method.isConstructMethod()) {
+            code.append(".construct ").append(method.getOllirClass().getClassName());
+        } else {
+            code.append(".method ").append(getModifiers(method.getMethodAccessModifier(), method.isStaticMethod(),
+                    method.isFinalMethod()));
+            if (method.isVarargs()) {
+                code.append("varargs ");
+            }
+            code.append(method.getMethodName());
+        }
+
+        var params = method.getParams().stream()
+                .map(OllirPrinter::getElement)
+                .collect(Collectors.joining(", ", "(", ")"));
+        code.append(params).append(getType(method.getReturnType())).append(" {").append(NL);
+
+        for (var instruction : method.getInstructions()) {
+            for (var label : method.getLabels(instruction)) {
+                code.append(label).append(":").append(NL);
+            }
+            code.append(getInstruction(instruction)).append(";").append(NL);
+        }
+
+        code.append("}").append(NL);
+    }
+
+    private static String getModifiers(AccessModifier accessModifier, boolean isStatic, boolean isFinal) {
+        var modifiers = new StringBuilder();
+
+        if (accessModifier != AccessModifier.DEFAULT) {
+            modifiers.append(accessModifier.name().toLowerCase()).append(" ");
+        }
+        if (isStatic) {
+            modifiers.append("static ");
+        }
+        if (isFinal) {
+            modifiers.append("final ");
+        }
+
+        return modifiers.toString();
+    }
+
+    /**
+     * @return the code of the instruction, without the semicolon
+     */
+    private static String getInstruction(Instruction instruction) {
+        return switch (instruction.getInstType()) {
+            case ASSIGN -> {
+                var assign = (AssignInstruction) instruction;
+                yield getElement(assign.getDest()) + " :=" + getType(assign.getTypeOfAssign()) + " "
+                        + getInstruction(assign.getRhs());
+            }
+            case CALL -> getCall((CallInstruction) instruction);
+            case GOTO -> "goto " + ((GotoInstruction) instruction).getLabel();
+            case BRANCH -> {
+                var branch = (CondBranchInstruction) instruction;
+                yield "if (" + getInstruction(branch.getCondition()) + ") goto " + branch.getLabel();
+            }
+            case RETURN -> {
+                var ret = (ReturnInstruction) instruction;
+                yield "ret" + getType(ret.getReturnType())
+                        + (ret.hasReturnValue() ? " " + getElement(ret.getOperand()) : "");
+            }
+            case PUTFIELD -> {
+                var putField = (PutFieldInstruction) instruction;
+                yield "putfield(" + getElement(putField.getObject()) + ", " + getElement(putField.getField()) + ", "
+                        + getElement(putField.getValue()) + ").V";
+            }
+            case GETFIELD -> {
+                var getField = (GetFieldInstruction) instruction;
+                yield "getfield(" + getElement(getField.getObject()) + ", " + getElement(getField.getField()) + ")"
+                        + getType(getField.getFieldType());
+            }
+            case UNARYOPER -> {
+                var unaryOp = (UnaryOpInstruction) instruction;
+                yield getOperation(unaryOp.getOperation()) + " " + getElement(unaryOp.getOperand());
+            }
+            case BINARYOPER -> {
+                var binaryOp = (BinaryOpInstruction) instruction;
+                yield getElement(binaryOp.getLeftOperand()) + " " + getOperation(binaryOp.getOperation()) + " "
+                        + getElement(binaryOp.getRightOperand());
+            }
+            case NOPER -> getElement(((SingleOpInstruction) instruction).getSingleOperand());
+        };
+    }
+
+    private static String getCall(CallInstruction call) {
+        var code = new StringBuilder();
+        var invocationType = call.getInvocationType();
+
+        if (invocationType == CallType.NEW) {
+            code.append("new(");
+            // new arrays have no class, only their sizes
+            if (call.getReturnType().getTypeOfElement() == ElementType.ARRAYREF) {
+                code.append("array");
+            } else {
+                code.append(((Operand) call.getCaller()).getName());
+            }
+        } else {
+            code.append(invocationType.name()).append("(").append(getElement(call.getCaller()));
+            call.getMethodNameTry().ifPresent(methodName -> code.append(", ").append(getElement(methodName)));
+        }
+
+        for (var argument : call.getArguments()) {
+            code.append(", ").append(getElement(argument));
+        }
+
+        return code.append(")").append(getType(call.getReturnType())).toString();
+    }
+
+    private static String getOperation(Operation operation) {
+        var symbol = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case SHR -> ">>";
+            case SHL -> "<<";
+            case SHRR -> ">>>";
+            case XOR -> "^";
+            case AND -> "&";
+            case OR -> "|";
+            case LTH -> "<";
+            case GTH -> ">";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB -> "!";
+            case NOT -> "~";
+        };
+
+        return symbol + getType(operation.getTypeInfo());
+    }
+
+    private static String getElement(Element element) {
+        if (element instanceof LiteralElement literal) {
+            var type = literal.getType().getTypeOfElement();
+            // method names are written as they are, without a type
+            return type == ElementType.STRING ? literal.getLiteral() : literal.getLiteral() + getType(literal.getType());
+        }
+
+        var operand = (Operand) element;
+        return switch (operand.getType().getTypeOfElement()) {
+            case THIS -> "this";
+            // the class of a static call
+            case CLASS -> operand.getName();
+            default -> {
+                var name = operand.getName();
+                if (operand instanceof ArrayOperand arrayOperand) {
+                    name += arrayOperand.getIndexOperands().stream()
+                            .map(OllirPrinter::getElement)
+                            .collect(Collectors.joining("][", "[", "]"));
+                }
+                yield name + getType(operand.getType());
+            }
+        };
+    }
+
+    private static String getType(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> ".i32";
+            case BOOLEAN -> ".bool";
+            case STRING -> ".String";
+            case VOID -> ".V";
+            case ARRAYREF -> ".array" + getType(((ArrayType) type).getElementType());
+            case OBJECTREF, CLASS, THIS -> "." + ((ClassType) type).getName();
+        };
+    }
+}
@@ -1,27 +1,15 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.*;
+import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
-public class OptUtils {
-    private static int tempNumber = -1;
-
-    public static String getTemp() {
-
-        return getTemp("tmp");
-    }
-
-    public static String getTemp(String prefix) {
-
-        return prefix + getNextTempNum();
-    }
-
-    public static int getNextTempNum() {
-
-        tempNumber += 1;
-        return tempNumber;
-    }
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
 
+public class OptUtils {
     public static String toOllirType(JmmNode typeNode) {
 
         //TYPE.checkOrThrow(typeNode);
@@ -48,5 +36,159 @@ public class OptUtils {
         return type;
     }
 
+    /**
+     * Builds the control-flow graph of the method from scratch, since Method.buildCFG() only adds edges.
+     */
+    public static void rebuildCFG(Method method) {
+        for (var instruction : method.getInstructions()) {
+            clearEdges(instruction);
+        }
+
+        if (isCFGBuilt(method)) {
+            clearEdges(method.getBeginNode());
+            clearEdges(method.getEndNode());
+        }
+
+        method.buildCFG();
+    }
+
+    /**
+     * Removes the instruction from the method, moving its labels to the instruction that follows it.
+     * <p>
+     * The control-flow graph is left as it was and must be rebuilt.
+     *
+     * @return false if the instruction has labels but is the last one of the method, in which case it is kept
+     */
+    public static boolean removeInstruction(Method method, Instruction instruction) {
+        var instructions = method.getInstructions();
+        var index = instructions.indexOf(instruction);
+        if (index < 0) {
+            throw new RuntimeException("Instruction is not part of method '" + method.getMethodName() + "'");
+        }
+
+        var labels = method.getLabels();
+        var hasLabels = labels.containsValue(instruction);
+        if (hasLabels && index == instructions.size() - 1) {
+            return false;
+        }
+
+        instructions.remove(index);
+        if (hasLabels) {
+            var next = instructions.get(index);
+            labels.replaceAll((label, target) -> target == instruction ? next : target);
+        }
+
+        return true;
+    }
+
+    /**
+     * Puts the replacement in the place of the instruction, with its labels.
+     * <p>
+     * The control-flow graph is left as it was and must be rebuilt.
+     */
+    public static void replaceInstruction(Method method, Instruction instruction, Instruction replacement) {
+        var instructions = method.getInstructions();
+        var index = instructions.indexOf(instruction);
+        if (index < 0) {
+            throw new RuntimeException("Instruction is not part of method '" + method.getMethodName() + "'");
+        }
+
+        instructions.set(index, replacement);
+        method.getLabels().replaceAll((label, target) -> target == instruction ? replacement : target);
+    }
+
+    /**
+     * Drops the local variables that no instruction of the method uses anymore, and numbers the registers of the
+     * remaining ones consecutively, keeping their order.
+     */
+    public static void removeUnusedVariables(Method method) {
+        var used = new HashSet<String>();
+        for (var instruction : method.getInstructions()) {
+            addNames(instruction, used);
+        }
+
+        var varTable = method.getVarTable();
+        varTable.entrySet().removeIf(entry -> entry.getValue().getScope() == VarScope.LOCAL
+                && !"this".equals(entry.getKey()) && !used.contains(entry.getKey()));
+
+        // 'this' and the parameters keep their registers
+        var next = method.isStaticMethod() ? 0 : 1;
+        for (var entry : varTable.entrySet()) {
+            if (entry.getValue().getScope() == VarScope.PARAMETER || "this".equals(entry.getKey())) {
+                next = Math.max(next, entry.getValue().getVirtualReg() + 1);
+            }
+        }
+
+        var locals = varTable.entrySet().stream()
+                .filter(entry -> entry.getValue().getScope() == VarScope.LOCAL && !"this".equals(entry.getKey()))
+                .map(entry -> entry.getValue())
+                .sorted(Comparator.comparingInt(Descriptor::getVirtualReg))
+                .toList();
+        for (var descriptor : locals) {
+            descriptor.setVirtualReg(next++);
+        }
+    }
+
+    private static void addNames(TreeNode node, Set<String> names) {
+        if (node instanceof Operand operand) {
+            names.add(operand.getName());
+        }
+
+        for (var child : node.getChildren()) {
+            addNames(child, names);
+        }
+    }
 
+    /**
+     * Tells if computing the value of the instruction has no other effect, so that it can be removed or moved.
+     * <p>
+     * Literals, variables, arithmetic, field reads and 'arraylength' are pure. Calls, object creation, array element
+     * reads and divisions by a value that may be zero are not. The only pure instruction that may still throw is
+     * 'arraylength', when the array is null.
+     */
+    public static boolean isPure(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            return isPure(singleOp.getSingleOperand());
+        }
+
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            return isPure(unaryOp.getOperand());
+        }
+
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            var opType = binaryOp.getOperation().getOpType();
+            if (opType == OperationType.DIV && !(binaryOp.getRightOperand() instanceof LiteralElement divisor
+                    && !divisor.getLiteral().equals("0"))) {
+                return false;
+            }
+
+            return isPure(binaryOp.getLeftOperand()) && isPure(binaryOp.getRightOperand());
+        }
+
+        if (instruction instanceof GetFieldInstruction) {
+            return true;
+        }
+
+        return instruction instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength;
+    }
+
+    private static boolean isPure(Element element) {
+        // reading an array element may be out of bounds
+        return !(element instanceof ArrayOperand);
+    }
+
+    private static boolean isCFGBuilt(Method method) {
+        // Method only tells through the exception of getBeginNode()
+        try {
+            method.getBeginNode();
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static void clearEdges(Node node) {
+        node.getSuccessors().clear();
+        node.getPredecessors().clear();
+    }
 }
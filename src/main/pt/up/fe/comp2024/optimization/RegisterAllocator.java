@@ -0,0 +1,152 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.VarScope;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.*;
+
+/**
+ * Assigns the JVM local variables of each method by coloring the interference graph of its local variables.
+ * <p>
+ * 'this' and the parameters keep their registers, as required by the calling convention. Local variables that are
+ * never live at the same time share a register, starting right after the parameters.
+ */
+public class RegisterAllocator {
+
+    private final int maxRegisters;
+
+    /**
+     * @param maxRegisters the maximum number of registers of each method, or 0 to use as few as possible
+     */
+    public RegisterAllocator(int maxRegisters) {
+        if (maxRegisters < 0) {
+            throw new RuntimeException("Expected a non-negative number of registers, got " + maxRegisters);
+        }
+
+        this.maxRegisters = maxRegisters;
+    }
+
+    /**
+     * Reassigns the virtual registers of the local variables of all methods.
+     *
+     * @return an error for each method that needs more registers than allowed
+     */
+    public List<Report> allocate(ClassUnit classUnit) {
+        var reports = new ArrayList<Report>();
+
+        for (var method : classUnit.getMethods()) {
+            var registers = allocate(method);
+
+            if (maxRegisters > 0 && registers > maxRegisters) {
+                reports.add(Report.newError(Stage.OPTIMIZATION, -1, -1, "Method '" + method.getMethodName()
+                        + "' needs at least " + registers + " registers, but only " + maxRegisters
+                        + " were allowed with -r", null));
+            }
+        }
+
+        return reports;
+    }
+
+    /**
+     * @return the number of registers used by the method
+     */
+    private int allocate(Method method) {
+        OptUtils.rebuildCFG(method);
+        var liveness = Liveness.analyze(method);
+
+        // 'this' and the parameters come first
+        var firstLocal = method.isStaticMethod() ? 0 : 1;
+        for (var entry : method.getVarTable().entrySet()) {
+            var descriptor = entry.getValue();
+            if (descriptor.getScope() == VarScope.PARAMETER || "this".equals(entry.getKey())) {
+                firstLocal = Math.max(firstLocal, descriptor.getVirtualReg() + 1);
+            }
+        }
+
+        var interference = new HashMap<String, Set<String>>();
+        for (var name : method.getVarTable().keySet()) {
+            if (Liveness.isLocal(name, method)) {
+                interference.put(name, new HashSet<>());
+            }
+        }
+
+        var instructions = method.getInstructions();
+        for (var instruction : instructions) {
+            var liveOut = liveness.getLiveOut(instruction);
+            addInterference(liveOut, liveOut, interference);
+            addInterference(liveness.getDefs(instruction), liveOut, interference);
+        }
+        if (!instructions.isEmpty()) {
+            // variables read before being written are live at the start of the method
+            var liveIn = liveness.getLiveIn(instructions.get(0));
+            addInterference(liveIn, liveIn, interference);
+        }
+
+        var colors = color(interference);
+        for (var entry : colors.entrySet()) {
+            method.getVarTable().get(entry.getKey()).setVirtualReg(firstLocal + entry.getValue());
+        }
+
+        var usedColors = colors.values().stream().mapToInt(color -> color + 1).max().orElse(0);
+        return firstLocal + usedColors;
+    }
+
+    private static void addInterference(Set<String> first, Set<String> second, Map<String, Set<String>> interference) {
+        for (var a : first) {
+            for (var b : second) {
+                if (!a.equals(b)) {
+                    interference.get(a).add(b);
+                    interference.get(b).add(a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Colors the graph greedily in smallest-last order: the variable with the fewest neighbours is removed from the
+     * graph until it is empty, and variables get the lowest color not used by their neighbours in the reverse order.
+     */
+    private static Map<String, Integer> color(Map<String, Set<String>> interference) {
+        var degrees = new HashMap<String, Integer>();
+        for (var entry : interference.entrySet()) {
+            degrees.put(entry.getKey(), entry.getValue().size());
+        }
+
+        var order = new ArrayDeque<String>();
+        // sorted, so that the allocation does not depend on the iteration order of the var table
+        var remaining = new TreeSet<>(interference.keySet());
+        while (!remaining.isEmpty()) {
+            var next = remaining.stream().min(Comparator.comparingInt(degrees::get)).orElseThrow();
+            remaining.remove(next);
+            order.push(next);
+
+            for (var neighbour : interference.get(next)) {
+                if (remaining.contains(neighbour)) {
+                    degrees.merge(neighbour, -1, Integer::sum);
+                }
+            }
+        }
+
+        var colors = new HashMap<String, Integer>();
+        for (var name : order) {
+            var used = new HashSet<Integer>();
+            for (var neighbour : interference.get(name)) {
+                var color = colors.get(neighbour);
+                if (color != null) {
+                    used.add(color);
+                }
+            }
+
+            var color = 0;
+            while (used.contains(color)) {
+                color++;
+            }
+            colors.put(name, color);
+        }
+
+        return colors;
+    }
+}
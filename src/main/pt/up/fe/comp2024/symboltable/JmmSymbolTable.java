@@ -3,12 +3,22 @@ package pt.up.fe.comp2024.symboltable;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Optional;
+
+/**
+ * The symbols of a class, with hash indexes from names to symbols built once, so that resolving a name does not scan
+ * the lists of each scope.
+ * <p>
+ * The table also keeps the types inferred for the expressions of the class, by node, outside the attributes of the
+ * nodes so that they are not printed or copied with the tree.
+ */
 public class JmmSymbolTable implements SymbolTable {
     private final List<String> imports;
     private final String superClass;
@@ -21,6 +31,20 @@ public class JmmSymbolTable implements SymbolTable {
     private final Map<String, List<Symbol>> params;
     private final Map<String, List<Symbol>> locals;
 
+    private final Map<String, Map<String, Symbol>> localIndex;
+    private final Map<String, Map<String, Symbol>> paramIndex;
+    private final Map<String, Symbol> fieldIndex;
+    private final Map<String, Symbol> importIndex;
+
+    private final Map<JmmNode, InferredType> exprTypes;
+
+    /**
+     * The type inferred for an expression, with the method it was inferred in, since a name resolves to the symbols of
+     * that method.
+     */
+    private record InferredType(String method, Type type) {
+    }
+
     public JmmSymbolTable(List<String> imports,
                           String superClass,
                           List<Symbol> fields,
@@ -37,6 +61,105 @@ public class JmmSymbolTable implements SymbolTable {
         this.returnTypes = returnTypes;
         this.params = params;
         this.locals = locals;
+
+        this.localIndex = new HashMap<>();
+        locals.forEach((method, symbols) -> localIndex.put(method, index(symbols)));
+        this.paramIndex = new HashMap<>();
+        params.forEach((method, symbols) -> paramIndex.put(method, index(symbols)));
+        this.fieldIndex = index(fields);
+        this.importIndex = new HashMap<>();
+        for (var imp : imports) {
+            importIndex.putIfAbsent(imp, new Symbol(new Type(imp, false), imp));
+        }
+        // nodes are mutable and compared by their contents, so they are kept by identity
+        this.exprTypes = new IdentityHashMap<>();
+    }
+
+    /**
+     * @return the symbols by name, keeping the first of symbols with the same name, as a scan of the list would find
+     */
+    private static Map<String, Symbol> index(List<Symbol> symbols) {
+        var index = new HashMap<String, Symbol>();
+        for (var symbol : symbols) {
+            index.putIfAbsent(symbol.getName(), symbol);
+        }
+
+        return index;
+    }
+
+    /**
+     * Looks up a name as seen from inside a method: locals hide parameters, which hide fields, which hide imported
+     * classes. An imported class resolves to a symbol whose type is the class.
+     *
+     * @param method the method the name is used in, or null outside methods
+     * @return the symbol the name refers to, if any
+     */
+    public Optional<ResolvedSymbol> resolve(String method, String name) {
+        var symbol = localIndex.getOrDefault(method, Map.of()).get(name);
+        if (symbol != null) {
+            return Optional.of(new ResolvedSymbol(symbol, ResolvedSymbol.Scope.LOCAL));
+        }
+
+        symbol = paramIndex.getOrDefault(method, Map.of()).get(name);
+        if (symbol != null) {
+            return Optional.of(new ResolvedSymbol(symbol, ResolvedSymbol.Scope.PARAMETER));
+        }
+
+        symbol = fieldIndex.get(name);
+        if (symbol != null) {
+            return Optional.of(new ResolvedSymbol(symbol, ResolvedSymbol.Scope.FIELD));
+        }
+
+        return Optional.ofNullable(importIndex.get(name))
+                .map(imp -> new ResolvedSymbol(imp, ResolvedSymbol.Scope.IMPORT));
+    }
+
+    /**
+     * @return the symbol the name refers to in the method, if any
+     * @see #resolve(String, String)
+     */
+    public static Optional<ResolvedSymbol> resolve(SymbolTable table, String method, String name) {
+        return of(table).resolve(method, name);
+    }
+
+    /**
+     * @return true if the name is a class imported by the program
+     */
+    public boolean isImported(String name) {
+        return importIndex.containsKey(name);
+    }
+
+    public static boolean isImported(SymbolTable table, String name) {
+        return of(table).isImported(name);
+    }
+
+    /**
+     * Stores the type of an expression of the method. Types are stored before the tree is analysed, and only read while
+     * it is.
+     */
+    public void putExprType(JmmNode expr, String method, Type type) {
+        exprTypes.put(expr, new InferredType(method, type));
+    }
+
+    /**
+     * @return the type stored for the expression, if it was stored for the same method
+     */
+    public Optional<Type> getExprType(JmmNode expr, String method) {
+        var inferred = exprTypes.get(expr);
+        if (inferred == null || !inferred.method().equals(method)) {
+            return Optional.empty();
+        }
+
+        return Optional.of(inferred.type());
+    }
+
+    private static JmmSymbolTable of(SymbolTable table) {
+        if (!(table instanceof JmmSymbolTable jmmTable)) {
+            throw new RuntimeException("Expected a symbol table built by JmmSymbolTableBuilder, got "
+                    + table.getClass().getName());
+        }
+
+        return jmmTable;
     }
 
 
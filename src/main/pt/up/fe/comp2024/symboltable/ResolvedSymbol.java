@@ -0,0 +1,23 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+
+/**
+ * A name found in the symbol table, with the scope it was declared in.
+ */
+public record ResolvedSymbol(Symbol symbol, Scope scope) {
+
+    /**
+     * The scopes a name is looked up in, from the innermost.
+     */
+    public enum Scope {
+        LOCAL,
+        PARAMETER,
+        FIELD,
+        IMPORT
+    }
+
+    public boolean isField() {
+        return scope == Scope.FIELD;
+    }
+}
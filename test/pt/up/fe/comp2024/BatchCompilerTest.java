@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Test;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BatchCompilerTest {
+
+    private static final String RESOURCES = "pt/up/fe/comp/cpf/5_optimizations/inst_selection/";
+
+    static List<File> copyResources(File folder, String... filenames) {
+        var files = new ArrayList<File>();
+        for (var filename : filenames) {
+            var file = new File(folder, filename);
+            SpecsIo.write(file, SpecsIo.getResource(RESOURCES + filename));
+            files.add(file);
+        }
+
+        return files;
+    }
+
+    @Test
+    public void compilesAllFilesAndWritesOutputs() {
+        var inputDir = SpecsIo.mkdir(SpecsIo.getTempFolder("jmm-batch-test"), "input");
+        var outputDir = SpecsIo.mkdir(SpecsIo.getTempFolder("jmm-batch-test"), "output");
+        SpecsIo.deleteFolderContents(inputDir);
+        SpecsIo.deleteFolderContents(outputDir);
+
+        var inputs = copyResources(inputDir, "InstSelection_iconst_0.jmm", "InstSelection_bipush_6.jmm");
+        // a file with a syntax error must not stop the rest of the batch
+        var broken = new File(inputDir, "Broken.jmm");
+        SpecsIo.write(broken, "class Broken {");
+        inputs.add(1, broken);
+
+        var results = new BatchCompiler(outputDir).compile(inputs, CompilerConfig.getDefault());
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(2).isSuccess());
+
+        assertTrue(new File(outputDir, "InstSelection_iconst_0.ollir").isFile());
+        assertTrue(new File(outputDir, "InstSelection_iconst_0.j").isFile());
+        assertTrue(new File(outputDir, "InstSelection_bipush_6.j").isFile());
+        assertFalse(new File(outputDir, "Broken.j").exists());
+
+        var report = SpecsIo.read(new File(outputDir, BatchCompiler.REPORT_FILENAME));
+        assertTrue(report.contains("Compiled 3 file(s): 2 succeeded, 1 failed"));
+    }
+
+    @Test
+    public void inputsWithTheSameNameDoNotOverwriteEachOther() {
+        var inputDir = SpecsIo.mkdir(SpecsIo.getTempFolder("jmm-batch-test"), "collision");
+        SpecsIo.deleteFolderContents(inputDir);
+        var outputDir = new File(inputDir, "out");
+
+        var first = copyResources(SpecsIo.mkdir(inputDir, "a"), "InstSelection_iconst_0.jmm").get(0);
+        var second = copyResources(SpecsIo.mkdir(inputDir, "b"), "InstSelection_iconst_0.jmm").get(0);
+        SpecsIo.write(second, SpecsIo.read(second).replace("return", "a = 1;\n        return"));
+
+        var results = new BatchCompiler(outputDir, 2).compile(List.of(first, second), CompilerConfig.getDefault());
+
+        assertTrue(results.get(0).isSuccess());
+        assertFalse(results.get(1).isSuccess());
+        assertTrue(results.get(1).getReports().stream()
+                .anyMatch(report -> report.getMessage().contains("already written for '" + first + "'")));
+        // the outputs are the ones of the first input
+        assertEquals(results.get(0).getJasminCode().orElseThrow(),
+                SpecsIo.read(new File(outputDir, "InstSelection_iconst_0.j")));
+    }
+
+    @Test
+    public void parallelCompilationIsDeterministic() {
+        var inputDir = SpecsIo.mkdir(SpecsIo.getTempFolder("jmm-batch-test"), "parallel");
+        SpecsIo.deleteFolderContents(inputDir);
+
+        var inputs = copyResources(inputDir, "InstSelection_iconst_0.jmm", "InstSelection_bipush_6.jmm",
+                "InstSelection_if_lt.jmm", "InstSelection_iinc.jmm", "InstSelection_ldc_32768.jmm",
+                "InstSelection_load_1.jmm", "InstSelection_sipush_32767.jmm", "InstSelection_store_1.jmm");
+
+        var sequential = new BatchCompiler(new File(inputDir, "out1"), 1)
+                .compile(inputs, CompilerConfig.getDefault());
+        var parallel = new BatchCompiler(new File(inputDir, "out4"), 4)
+                .compile(inputs, CompilerConfig.getDefault());
+
+        assertEquals(sequential.size(), parallel.size());
+        for (int i = 0; i < sequential.size(); i++) {
+            assertEquals(inputs.get(i), parallel.get(i).getInputFile());
+            assertEquals(sequential.get(i).getOllirCode(), parallel.get(i).getOllirCode());
+            assertEquals(sequential.get(i).getJasminCode(), parallel.get(i).getJasminCode());
+        }
+    }
+}
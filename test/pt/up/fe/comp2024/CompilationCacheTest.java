@@ -0,0 +1,203 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CompilationCacheTest {
+
+    private static final String RESOURCES = "pt/up/fe/comp/cpf/5_optimizations/inst_selection/";
+
+    static File getCacheDir(String name) {
+        var cacheDir = SpecsIo.mkdir(SpecsIo.getTempFolder("jmm-cache-test"), name);
+        SpecsIo.deleteFolderContents(cacheDir);
+        return cacheDir;
+    }
+
+    static File copyResource(String filename) {
+        var file = new File(SpecsIo.getTempFolder("jmm-cache-test"), filename);
+        SpecsIo.write(file, SpecsIo.getResource(RESOURCES + filename));
+        return file;
+    }
+
+    static boolean isCacheHit(CompilationResult result) {
+        return result.getReports().stream().anyMatch(r -> r.getMessage().startsWith("Loaded from compilation cache"));
+    }
+
+    @Test
+    public void hitReturnsStoredOutputs() {
+        var source = copyResource("InstSelection_bipush_6.jmm");
+        var compiler = new JmmCompiler(new CompilationCache(getCacheDir("hit"), 1024 * 1024));
+
+        var first = compiler.compile(source, CompilerConfig.getDefault());
+        var second = compiler.compile(source, CompilerConfig.getDefault());
+
+        assertTrue(first.isSuccess());
+        assertFalse(isCacheHit(first));
+        assertTrue(second.isSuccess());
+        assertTrue(isCacheHit(second));
+
+        assertEquals(first.getClassName(), second.getClassName());
+        assertEquals(first.getOllirCode(), second.getOllirCode());
+        assertEquals(first.getJasminCode(), second.getJasminCode());
+        assertArrayEquals(first.getClassBytes().get(), second.getClassBytes().get());
+    }
+
+    @Test
+    public void optionsArePartOfTheKey() {
+        var source = copyResource("InstSelection_bipush_6.jmm");
+        var compiler = new JmmCompiler(new CompilationCache(getCacheDir("options"), 1024 * 1024));
+
+        var config = CompilerConfig.getDefault();
+        compiler.compile(source, config);
+
+        config.put("optimize", "true");
+        assertFalse(isCacheHit(compiler.compile(source, config)));
+        assertTrue(isCacheHit(compiler.compile(source, config)));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        var cacheDir = getCacheDir("lru");
+        var iconst = copyResource("InstSelection_iconst_0.jmm");
+        var bipush = copyResource("InstSelection_bipush_6.jmm");
+        var sipush = copyResource("InstSelection_sipush_32767.jmm");
+
+        // measure how much a single entry takes
+        var probe = new CompilationCache(getCacheDir("lru-probe"), Long.MAX_VALUE);
+        new JmmCompiler(probe).compile(sipush, CompilerConfig.getDefault());
+        var entrySize = probe.getCurrentBytes();
+
+        // room for two entries
+        var cache = new CompilationCache(cacheDir, entrySize * 2 + entrySize / 2);
+        var compiler = new JmmCompiler(cache);
+
+        compiler.compile(iconst, CompilerConfig.getDefault());
+        compiler.compile(bipush, CompilerConfig.getDefault());
+        // touch iconst, so that bipush becomes the least recently used
+        assertTrue(isCacheHit(compiler.compile(iconst, CompilerConfig.getDefault())));
+        compiler.compile(sipush, CompilerConfig.getDefault());
+
+        assertTrue(isCacheHit(compiler.compile(iconst, CompilerConfig.getDefault())));
+        assertTrue(isCacheHit(compiler.compile(sipush, CompilerConfig.getDefault())));
+        assertFalse(isCacheHit(compiler.compile(bipush, CompilerConfig.getDefault())));
+
+        // entries survive between runs
+        var reopened = new JmmCompiler(new CompilationCache(cacheDir, Long.MAX_VALUE));
+        assertTrue(isCacheHit(reopened.compile(bipush, CompilerConfig.getDefault())));
+    }
+
+    @Test
+    public void concurrentStoresKeepTheCacheConsistent() throws Exception {
+        var cacheDir = getCacheDir("concurrent");
+        // room for about half of the entries, so that stores also evict
+        var cache = new CompilationCache(cacheDir, 20 * 100);
+
+        var pool = Executors.newFixedThreadPool(4);
+        try {
+            var tasks = new ArrayList<Future<?>>();
+            for (int thread = 0; thread < 4; thread++) {
+                tasks.add(pool.submit(() -> {
+                    for (int i = 0; i < 40; i++) {
+                        // the threads store and look up the same keys
+                        var key = "entry" + i;
+                        var result = new CompilationResult(new File(key + ".jmm"), key, "o".repeat(50), null,
+                                new byte[50], List.of(), 0);
+                        cache.put(key, result);
+                        cache.get(key, result.getInputFile())
+                                .ifPresent(hit -> assertEquals(key, hit.getClassName().orElseThrow()));
+                    }
+                }));
+            }
+            for (var task : tasks) {
+                task.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // an entry evicted while another thread stored it again loses its folder, and is forgotten when looked up
+        for (int i = 0; i < 40; i++) {
+            cache.get("entry" + i, new File("entry" + i + ".jmm"));
+        }
+
+        var folders = cacheDir.listFiles();
+        long onDisk = 0;
+        for (var folder : folders) {
+            assertFalse(folder.getName(), folder.getName().endsWith(".tmp"));
+            for (var file : SpecsIo.getFilesRecursive(folder)) {
+                onDisk += file.length();
+            }
+        }
+
+        assertTrue(cache.getCurrentBytes() <= 20 * 100);
+        assertEquals(onDisk, cache.getCurrentBytes());
+    }
+
+    @Test
+    public void failedStoreOnlyWarns() {
+        var source = copyResource("InstSelection_bipush_6.jmm");
+        var cacheDir = getCacheDir("failed-store");
+        var compiler = new JmmCompiler(new CompilationCache(cacheDir, 1024 * 1024));
+
+        // entries can no longer be written under the cache folder
+        SpecsIo.deleteFolder(cacheDir);
+        SpecsIo.write(cacheDir, "not a folder");
+
+        try {
+            var result = compiler.compile(source, CompilerConfig.getDefault());
+
+            assertTrue(result.isSuccess());
+            assertTrue(result.getReports().stream().anyMatch(report -> report.getType() == ReportType.WARNING
+                    && report.getMessage().startsWith("Could not store compilation cache entry")));
+        } finally {
+            cacheDir.delete();
+        }
+    }
+
+    @Test
+    public void cacheIsDisabledWithoutACompilerStamp() {
+        var source = copyResource("InstSelection_bipush_6.jmm");
+        var cacheDir = getCacheDir("no-stamp");
+        assertTrue(new CompilationCache(cacheDir, 1024 * 1024).isEnabled());
+
+        var cache = new CompilationCache(cacheDir, 1024 * 1024, () -> {
+            throw new IOException("no location");
+        });
+        var compiler = new JmmCompiler(cache);
+
+        for (int run = 0; run < 2; run++) {
+            var result = compiler.compile(source, CompilerConfig.getDefault());
+
+            assertTrue(result.isSuccess());
+            assertFalse(isCacheHit(result));
+            assertTrue(result.getReports().stream().anyMatch(report -> report.getType() == ReportType.WARNING
+                    && report.getMessage().startsWith("Compilation cache disabled")));
+        }
+        assertEquals(0, cacheDir.listFiles().length);
+    }
+
+    @Test
+    public void stampChangesWhenNestedClassesAreRebuilt() throws Exception {
+        var classes = getCacheDir("stamp");
+        var classFile = new File(SpecsIo.mkdir(classes, "pt/up"), "Compiler.class");
+        SpecsIo.write(classFile, "old");
+        var folderModified = classes.lastModified();
+        var before = CompilationCache.getCompilerStamp(classes);
+
+        SpecsIo.write(classFile, "rebuilt");
+        classes.setLastModified(folderModified);
+
+        assertNotEquals(before, CompilationCache.getCompilerStamp(classes));
+        assertEquals(CompilationCache.getCompilerStamp(classes), CompilationCache.getCompilerStamp(classes));
+    }
+}
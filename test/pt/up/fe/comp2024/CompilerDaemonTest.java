@@ -0,0 +1,71 @@
+package pt.up.fe.comp2024;
+
+import org.junit.Test;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+public class CompilerDaemonTest {
+
+    static String serve(String requests) throws IOException {
+        var out = new StringWriter();
+        new CompilerDaemon(CompilerConfig.getDefault()).serve(new BufferedReader(new StringReader(requests)), out);
+
+        return out.toString();
+    }
+
+    @Test
+    public void answersSeveralRequestsUntilShutdown() throws IOException {
+        var source = new File(SpecsIo.getTempFolder("jmm-daemon-test"), "InstSelection_iconst_0.jmm");
+        SpecsIo.write(source,
+                SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/inst_selection/InstSelection_iconst_0.jmm"));
+
+        var request = "-i=" + source.getAbsolutePath();
+        var output = serve("ping\n" + request + "\n-i=missing.jmm\n" + request + " -o\nshutdown\n" + request + "\n");
+
+        var responses = output.split("=== end ", -1);
+        // ping, three compilations and shutdown, nothing after the shutdown
+        assertEquals(6, responses.length);
+
+        assertTrue(responses[0].startsWith("pong"));
+        assertTrue(responses[1].contains("=== ollir"));
+        assertTrue(responses[1].contains("=== jasmin"));
+        assertTrue(responses[1].contains("iconst_0"));
+        assertTrue(responses[2].startsWith("ok"));
+        assertTrue(responses[2].contains("Could not find input file 'missing.jmm'"));
+        assertTrue(responses[3].startsWith("failed"));
+        assertTrue(responses[4].startsWith("ok"));
+        assertEquals("ok\n", responses[5]);
+    }
+
+    @Test
+    public void escapedWhitespaceIsPartOfTheOption() throws IOException {
+        assertArrayEquals(new String[]{"-i=My Files/A\\B.jmm", "-o"},
+                CompilerDaemon.splitArgs(" -i=My\\ Files/A\\\\B.jmm \t -o "));
+
+        var folder = SpecsIo.mkdir(SpecsIo.getTempFolder("jmm-daemon-test"), "with spaces");
+        var source = new File(folder, "InstSelection_iconst_0.jmm");
+        SpecsIo.write(source,
+                SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/inst_selection/InstSelection_iconst_0.jmm"));
+
+        var output = serve("-i=" + source.getAbsolutePath().replace(" ", "\\ ") + "\n");
+        assertTrue(output, output.endsWith("=== end ok\n"));
+    }
+
+    @Test
+    public void rejectsBatchAndDaemonRequests() throws IOException {
+        var output = serve("-b=libs-jmm\n-s\n");
+
+        var responses = output.split("=== end ", -1);
+        assertEquals(3, responses.length);
+        assertTrue(responses[0], responses[0].contains("'-b' and '-s' are not supported by the daemon"));
+        assertTrue(responses[1].startsWith("failed"));
+        assertTrue(responses[2].startsWith("failed"));
+    }
+}
@@ -0,0 +1,68 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CollectAllErrorsTest {
+
+    // an undeclared variable, a condition that is not a boolean and an int assigned to a boolean
+    private static final String CODE = """
+            class Errors {
+                public int foo(int a) {
+                    boolean b;
+                    if (a) {
+                        b = 1;
+                    } else {
+                        b = true;
+                    }
+                    return missing;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static List<String> getErrors(Map<String, String> config) {
+        return TestUtils.analyse(CODE, config).getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .map(Report::getMessage)
+                .toList();
+    }
+
+    @Test
+    public void stopsAtTheFirstPassByDefault() {
+        var errors = getErrors(Collections.emptyMap());
+
+        assertEquals(errors.toString(), 1, errors.size());
+        assertTrue(errors.get(0), errors.get(0).contains("'missing'"));
+    }
+
+    @Test
+    public void reportsEveryPassWithAllErrors() {
+        var errors = getErrors(Map.of("allErrors", "true"));
+
+        assertTrue(errors.toString(), errors.get(0).contains("'missing'"));
+        assertTrue(errors.toString(), errors.contains("Not Bool in If Condition"));
+        assertTrue(errors.toString(), errors.size() >= 3);
+    }
+
+    @Test
+    public void capsTheNumberOfErrors() {
+        var reports = TestUtils.analyse(CODE, Map.of("allErrors", "2")).getReports();
+
+        assertEquals(reports.toString(), 2, reports.stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .count());
+        var last = reports.get(reports.size() - 1);
+        assertEquals(ReportType.LOG, last.getType());
+        assertTrue(last.getMessage(), last.getMessage().startsWith("Stopped after 2 errors"));
+    }
+}
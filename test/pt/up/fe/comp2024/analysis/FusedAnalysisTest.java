@@ -0,0 +1,78 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.ast.Kind;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FusedAnalysisTest {
+
+    private static List<File> getSemanticFiles() {
+        var files = new File("test/pt/up/fe/comp/cp2/semanticanalysis").listFiles((dir, name) -> name.endsWith(".jmm"));
+        assertNotNull(files);
+        Arrays.sort(files);
+        return List.of(files);
+    }
+
+    private static List<String> toText(List<Report> reports) {
+        return reports.stream().map(Report::toString).toList();
+    }
+
+    @Test
+    public void reportsLikeSeparateTraversals() {
+        for (var file : getSemanticFiles()) {
+            var root = TestUtils.parse(SpecsIo.read(file)).getRootNode();
+            var table = JmmSymbolTableBuilder.build(root);
+
+            var separate = JmmAnalysisImpl.createPasses();
+            var fused = new FusedAnalysis(JmmAnalysisImpl.createPasses()).run(root, table);
+
+            assertEquals(separate.size(), fused.size());
+            for (int i = 0; i < separate.size(); i++) {
+                var expected = separate.get(i).analyze(root, table);
+                var result = fused.get(i);
+
+                assertFalse(file.getName() + ": " + result.pass(), result.failed());
+                assertEquals(file.getName() + ": " + result.pass(), toText(expected), toText(result.reports()));
+            }
+        }
+    }
+
+    @Test
+    public void stopsGivingNodesToAFailedPass() {
+        var root = TestUtils.parse("""
+                class Fused {
+                    public int foo(int a) {
+                        return a + 1;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """).getRootNode();
+
+        var visits = new int[1];
+        var failing = new AnalysisVisitor() {
+            @Override
+            protected void buildVisitor() {
+                addVisit(Kind.METHOD_DECL, (node, table) -> {
+                    visits[0]++;
+                    throw new RuntimeException("failed on " + node.get("name"));
+                });
+            }
+        };
+
+        var results = new FusedAnalysis(List.of(failing)).run(root, JmmSymbolTableBuilder.build(root));
+
+        assertEquals(1, visits[0]);
+        assertTrue(results.get(0).failed());
+        assertEquals("failed on foo", results.get(0).exception().getMessage());
+    }
+}
@@ -0,0 +1,65 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ParallelAnalysisTest {
+
+    private static List<String> toText(List<FusedAnalysis.PassResult> results) {
+        return results.stream()
+                .map(result -> result.pass().getClass().getSimpleName() + " " + result.failed() + " "
+                        + result.reports())
+                .toList();
+    }
+
+    private static void assertSameAsFused(String name, JmmNode root) {
+        var table = JmmSymbolTableBuilder.build(root);
+
+        var fused = new FusedAnalysis(JmmAnalysisImpl.createPasses()).run(root, table);
+        var parallel = new ParallelAnalysis(JmmAnalysisImpl::createPasses, true).run(root, table);
+
+        assertEquals(name, toText(fused), toText(parallel));
+    }
+
+    @Test
+    public void reportsLikeASingleTraversal() {
+        var files = new File("test/pt/up/fe/comp/cp2/semanticanalysis").listFiles((dir, name) -> name.endsWith(".jmm"));
+        assertNotNull(files);
+        Arrays.sort(files);
+
+        for (var file : files) {
+            assertSameAsFused(file.getName(), TestUtils.parse(SpecsIo.read(file)).getRootNode());
+        }
+    }
+
+    @Test
+    public void mergesReportsInMethodOrder() {
+        var code = new StringBuilder("class Many {\n    int f;\n");
+        for (int i = 0; i < 200; i++) {
+            // every third method uses an undeclared variable, every fifth has a condition that is not a boolean
+            code.append("    public int m").append(i).append("(int a) {\n")
+                    .append("        if (").append(i % 5 == 0 ? "a" : "a < 1").append(") { a = 1; } else { a = 2; }\n")
+                    .append("        return a + ").append(i % 3 == 0 ? "missing" + i : "f").append(";\n")
+                    .append("    }\n");
+        }
+        code.append("    public static void main(String[] args) {\n    }\n}\n");
+
+        var root = TestUtils.parse(code.toString()).getRootNode();
+        assertSameAsFused("Many", root);
+
+        var reports = new ParallelAnalysis(JmmAnalysisImpl::createPasses, true).run(root, JmmSymbolTableBuilder.build(root))
+                .get(0).reports();
+        assertEquals(67, reports.size());
+        assertTrue(reports.get(0).getMessage(), reports.get(0).getMessage().contains("'missing0'"));
+        assertTrue(reports.get(66).getMessage(), reports.get(66).getMessage().contains("'missing198'"));
+    }
+}
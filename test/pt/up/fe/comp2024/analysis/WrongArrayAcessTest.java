@@ -0,0 +1,52 @@
+package pt.up.fe.comp2024.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class WrongArrayAcessTest {
+
+    // an int field, an int parameter and an int array local, all used as arrays in the statement
+    private static final String CODE = """
+            class Arrays {
+                int field;
+                public int foo(int param) {
+                    int x;
+                    int[] local;
+                    local = new int[2];
+                    %s
+                    return 0;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static List<String> getErrors(String statement) {
+        return TestUtils.analyse(CODE.formatted(statement), Collections.emptyMap()).getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .map(Report::getMessage)
+                .toList();
+    }
+
+    @Test
+    public void assigningToAnElementOfANonArrayFails() {
+        assertEquals(List.of("Not an Array"), getErrors("param[0] = 1;"));
+        assertEquals(List.of("Not an Array"), getErrors("field[0] = 1;"));
+        assertEquals(List.of(), getErrors("local[0] = 1;"));
+    }
+
+    @Test
+    public void accessingAnElementOfANonArrayFails() {
+        // parameters are resolved like locals and fields
+        assertEquals(List.of("It is not an array"), getErrors("x = param[0];"));
+        assertEquals(List.of("It is not an array"), getErrors("x = field[0];"));
+        assertEquals(List.of(), getErrors("x = local[0];"));
+    }
+}
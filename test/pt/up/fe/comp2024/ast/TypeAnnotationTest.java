@@ -0,0 +1,80 @@
+package pt.up.fe.comp2024.ast;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TypeAnnotationTest {
+
+    private static final String CODE = """
+            class Types {
+                boolean a;
+                public int foo(int a) {
+                    int b;
+                    b = (a + 1) * 2;
+                    if (!(b < a)) {
+                        b = 0;
+                    } else {
+                        b = 1;
+                    }
+                    return b;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static JmmSemanticsResult analyse() {
+        var result = TestUtils.analyse(CODE, Collections.emptyMap());
+        TestUtils.noErrors(result);
+        return result;
+    }
+
+    private static JmmNode find(JmmNode root, Kind kind, String attribute, String value) {
+        return root.getDescendants(kind.getNodeName()).stream()
+                .filter(node -> node.getOptional(attribute).orElse("").equals(value))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    @Test
+    public void analysisStoresTheTypeOfEachExpression() {
+        var result = analyse();
+        var table = result.getSymbolTable();
+        var comparison = find(result.getRootNode(), Kind.BINARY_OP, "op", "<");
+
+        var type = TypeUtils.getExprType(comparison, table, "foo");
+        assertEquals("boolean", type.getName());
+        // read from the table rather than computed again
+        assertSame(type, TypeUtils.getExprType(comparison, table, "foo"));
+
+        var negation = comparison.getAncestor(Kind.NEGATION.getNodeName()).orElseThrow();
+        assertEquals("boolean", TypeUtils.getExprType(negation, table, "foo").getName());
+        var product = find(result.getRootNode(), Kind.BINARY_OP, "op", "*");
+        assertEquals("int", TypeUtils.getExprType(product, table, "foo").getName());
+    }
+
+    @Test
+    public void namesAreTypedInTheMethodTheyAreIn() {
+        var result = analyse();
+        var table = result.getSymbolTable();
+        var identifier = find(result.getRootNode(), Kind.IDENTIFIER, "value", "a");
+
+        // the parameter hides the field
+        assertEquals("int", TypeUtils.getExprType(identifier, table, "foo").getName());
+        assertEquals("boolean", TypeUtils.getExprType(identifier, table, "main").getName());
+    }
+
+    @Test
+    public void typesAreNotAttributesOfTheNodes() {
+        var parsed = TestUtils.parse(CODE).getRootNode();
+        var analysed = analyse().getRootNode();
+
+        assertEquals(parsed.toTree(), analysed.toTree());
+    }
+}
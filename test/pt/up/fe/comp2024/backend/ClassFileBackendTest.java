@@ -0,0 +1,99 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ClassFileBackendTest {
+
+    private static final String RESOURCES = "pt/up/fe/comp/cpf/4_jasmin/";
+
+    private static final List<String> PROGRAMS = List.of(
+            "arithmetic/Arithmetic_and.ollir",
+            "arithmetic/Arithmetic_less.ollir",
+            "arithmetic/Arithmetic_not.ollir",
+            "arrays/ArrayAccess.ollir",
+            "arrays/ComplexArrayAccess.ollir",
+            "arrays/ArrayInit.ollir",
+            "calls/ConditionArgsFuncCall.ollir",
+            "control_flow/IfWhileNested.ollir",
+            "control_flow/SimpleIfElseNot.ollir",
+            "control_flow/SimpleIfElseStat.ollir",
+            "control_flow/SimpleWhileStat.ollir");
+
+    // a comparison stored in a boolean and then negated, which only works if true is 1
+    private static final String NEGATED_COMPARISON = """
+            import io;
+            Negation {
+                .construct Negation().V {
+                    invokespecial(this, "<init>").V;
+                }
+
+                .method public static main(args.array.String).V {
+                    a.i32 :=.i32 2.i32;
+                    c.i32 :=.i32 3.i32;
+                    b.bool :=.bool a.i32 <.bool c.i32;
+                    if (b.bool) goto negate;
+                    invokestatic(io, "println", 0.i32).V;
+                    negate:
+                    b.bool :=.bool !.bool b.bool;
+                    if (b.bool) goto wrong;
+                    invokestatic(io, "println", 1.i32).V;
+                    ret.V;
+                    wrong:
+                    invokestatic(io, "println", 2.i32).V;
+                    ret.V;
+                }
+            }
+            """;
+
+    private static OllirResult getOllir(String resource) {
+        return new OllirResult(SpecsIo.getResource(RESOURCES + resource), Collections.emptyMap());
+    }
+
+    @Test
+    public void sameOutputAsJasminBackend() {
+        for (var program : PROGRAMS) {
+            var expected = JasminAssembler.assemble(new JasminBackendImpl().toJasmin(getOllir(program))).run();
+
+            var result = (ClassFileResult) new ClassFileBackend().toJasmin(getOllir(program));
+            assertEquals(program, expected, result.toAssembledClass().run());
+        }
+    }
+
+    @Test
+    public void sameOutputForNegatedComparisons() {
+        var jasmin = new JasminBackendImpl().toJasmin(new OllirResult(NEGATED_COMPARISON, Collections.emptyMap()));
+        var result = (ClassFileResult) new ClassFileBackend()
+                .toJasmin(new OllirResult(NEGATED_COMPARISON, Collections.emptyMap()));
+
+        assertEquals("1", result.toAssembledClass().run().strip());
+        assertEquals(result.toAssembledClass().run(), JasminAssembler.assemble(jasmin).run());
+    }
+
+    @Test
+    public void listingAssemblesToEquivalentClass() {
+        for (var program : PROGRAMS) {
+            var result = (ClassFileResult) new ClassFileBackend().toJasmin(getOllir(program));
+
+            var fromListing = JasminAssembler.assemble(result);
+            assertEquals(program, result.toAssembledClass().run(), fromListing.run());
+        }
+    }
+
+    @Test
+    public void selectsShortInstructions() {
+        var result = new ClassFileBackend().toJasmin(getOllir("limits/LocalLimits.ollir"));
+        var jasminCode = result.getJasminCode();
+
+        assertTrue(jasminCode, jasminCode.contains("iload_2"));
+        assertTrue(jasminCode, jasminCode.contains("iconst_3"));
+        assertTrue(jasminCode, jasminCode.contains("bipush 10"));
+        assertFalse(jasminCode, jasminCode.contains("null"));
+    }
+}
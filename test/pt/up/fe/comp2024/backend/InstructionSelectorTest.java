@@ -0,0 +1,63 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class InstructionSelectorTest {
+
+    @Test
+    public void constantsUseTheShortestForm() {
+        assertEquals("iconst_m1", InstructionSelector.constant(-1));
+        assertEquals("iconst_5", InstructionSelector.constant(5));
+        assertEquals("bipush 6", InstructionSelector.constant(6));
+        assertEquals("bipush -128", InstructionSelector.constant(-128));
+        assertEquals("sipush 128", InstructionSelector.constant(128));
+        assertEquals("sipush 32767", InstructionSelector.constant(32767));
+        assertEquals("ldc 32768", InstructionSelector.constant(32768));
+        assertEquals("ldc -32769", InstructionSelector.constant(-32769));
+    }
+
+    @Test
+    public void localsUseTheShortestForm() {
+        assertEquals("iload_0", InstructionSelector.load(false, 0));
+        assertEquals("aload_3", InstructionSelector.load(true, 3));
+        assertEquals("istore 4", InstructionSelector.store(false, 4));
+        assertEquals("astore_2", InstructionSelector.store(true, 2));
+        assertEquals(BytecodeBuilder.IFGT,
+                InstructionSelector.getZeroComparisonOpcode(InstructionSelector.swap(OperationType.LTH)));
+    }
+
+    @Test
+    public void incrementsUseIincWhenTheyFit() {
+        var ollirResult = new OllirResult("""
+                Incs {
+                    .construct Incs().V {
+                        invokespecial(this, "<init>").V;
+                    }
+
+                    .method public static main(args.array.String).V {
+                        a.i32 :=.i32 0.i32;
+                        a.i32 :=.i32 a.i32 +.i32 1000.i32;
+                        a.i32 :=.i32 a.i32 -.i32 40000.i32;
+                        a.i32 :=.i32 7.i32 -.i32 a.i32;
+                        a.i32 :=.i32 2.i32 +.i32 a.i32;
+                        ret.V;
+                    }
+                }
+                """, Collections.emptyMap());
+
+        var jasminCode = new JasminGenerator(ollirResult).build();
+
+        assertTrue(jasminCode, jasminCode.contains("iinc 1 1000"));
+        assertTrue(jasminCode, jasminCode.contains("iinc 1 2"));
+        // too large for iinc, and a subtraction from a constant is not an increment
+        assertTrue(jasminCode, jasminCode.contains("ldc 40000"));
+        assertEquals(jasminCode, 2, jasminCode.split("iinc", -1).length - 1);
+        JasminAssembler.assemble("Incs", jasminCode);
+    }
+}
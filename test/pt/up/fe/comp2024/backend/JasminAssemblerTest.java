@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class JasminAssemblerTest {
+
+    private static JasminResult getJasmin(String filename) {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cp2/apps/example_jasmin/" + filename);
+        return new JasminResult(filename.substring(0, filename.lastIndexOf('.')), code, Collections.emptyList());
+    }
+
+    @Test
+    public void sameOutputAsExternalProcess() {
+        var jasminResult = getJasmin("Simple.j");
+        var assembled = JasminAssembler.assemble(jasminResult);
+
+        assertEquals("Simple", assembled.getClassName());
+        assertEquals(0xCAFEBABE, ByteBuffer.wrap(assembled.getBytes()).getInt());
+        assertEquals(jasminResult.run(), assembled.run());
+    }
+
+    @Test
+    public void runsDoNotShareState() {
+        var assembled = JasminAssembler.assemble("Counter", """
+                .class public Counter
+                .super java/lang/Object
+                .field static count I
+                .method public static main([Ljava/lang/String;)V
+                .limit stack 2
+                .limit locals 1
+                getstatic Counter/count I
+                iconst_1
+                iadd
+                putstatic Counter/count I
+                getstatic java/lang/System/out Ljava/io/PrintStream;
+                getstatic Counter/count I
+                invokevirtual java/io/PrintStream/println(I)V
+                return
+                .end method
+                """);
+
+        var first = assembled.runWithFullOutput();
+        var second = assembled.runWithFullOutput();
+
+        assertEquals(0, first.getReturnValue());
+        assertEquals("1\n", first.getOutput());
+        assertEquals("1\n", second.getOutput());
+    }
+
+    @Test
+    public void programsThatTimeOutDoNotWriteToLaterRuns() {
+        // prints for a second, well after its run timed out
+        var ticker = JasminAssembler.assemble("Ticker", """
+                .class public Ticker
+                .super java/lang/Object
+                .method public static main([Ljava/lang/String;)V
+                .limit stack 4
+                .limit locals 3
+                invokestatic java/lang/System/currentTimeMillis()J
+                sipush 1000
+                i2l
+                ladd
+                lstore_1
+                loop:
+                getstatic java/lang/System/out Ljava/io/PrintStream;
+                ldc "tick"
+                invokevirtual java/io/PrintStream/println(Ljava/lang/String;)V
+                invokestatic java/lang/System/currentTimeMillis()J
+                lload_1
+                lcmp
+                iflt loop
+                return
+                .end method
+                """);
+        var hello = JasminAssembler.assemble(getJasmin("HelloWorld.j"));
+        var expected = hello.run();
+
+        var timedOut = new AssembledClass(ticker.getClassName(), ticker.getBytes(), 100).runWithFullOutput();
+
+        assertEquals(-1, timedOut.getReturnValue());
+        assertTrue(timedOut.getStdErr(), timedOut.getStdErr().startsWith("Timeout: Ticker"));
+        // the ticker is still running
+        assertEquals(expected, hello.run());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void invalidCodeFails() {
+        JasminAssembler.assemble("Broken", ".class public Broken\n.super java/lang/Object\n"
+                + ".method public foo()V\nnot_an_instruction\n.end method\n");
+    }
+}
@@ -0,0 +1,91 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class JasminGeneratorTest {
+
+    /**
+     * A main method with the given number of conditional branches, each to a label of its own, that prints how many
+     * labels were reached.
+     */
+    private static OllirResult branchingProgram(int branches) {
+        var code = new StringBuilder();
+
+        code.append("import io;\nBranches {\n");
+        code.append(".construct Branches().V {\ninvokespecial(this, \"<init>\").V;\n}\n");
+        code.append(".method public static main(args.array.String).V {\n");
+        code.append("i.i32 :=.i32 0.i32;\n");
+        for (int label = 0; label < branches; label++) {
+            code.append("if (i.i32 <.bool ").append(branches).append(".i32) goto label_").append(label).append(";\n");
+            code.append("label_").append(label).append(":\n");
+            code.append("i.i32 :=.i32 i.i32 +.i32 1.i32;\n");
+        }
+        code.append("invokestatic(io, \"println\", i.i32).V;\n");
+        code.append("ret.V;\n}\n}\n");
+
+        return new OllirResult(code.toString(), Collections.emptyMap());
+    }
+
+    @Test
+    public void labelsPrecedeTheirInstructions() {
+        var jasminCode = new JasminGenerator(branchingProgram(1000)).build();
+
+        assertEquals(1000, jasminCode.lines().filter(line -> line.matches("label_\\d+:")).count());
+        assertTrue(jasminCode, jasminCode.contains("label_999:\n   iinc 1 1"));
+        assertEquals("1000", JasminAssembler.assemble("Branches", jasminCode).run().strip());
+    }
+
+    @Test
+    public void indexesEachLabelUnderItsInstruction() {
+        var method = branchingProgram(1000).getOllirClass().getMethods().stream()
+                .filter(m -> m.getMethodName().equals("main"))
+                .findFirst()
+                .orElseThrow();
+
+        var index = JasminGenerator.indexLabels(method);
+
+        // built in one pass over the labels, each found by its instruction alone
+        assertEquals(1000, index.size());
+        assertEquals(1000, index.values().stream().mapToInt(List::size).sum());
+        for (var label : method.getLabels().entrySet()) {
+            assertEquals(List.of(label.getKey()), index.get(label.getValue()));
+        }
+    }
+
+    @Test
+    public void comparisonsStoreOneForTrue() {
+        var code = """
+                import io;
+                class Negation {
+                    public int foo(int n) {
+                        boolean z;
+                        int r;
+                        r = 5;
+                        z = n < 3;
+                        if (z) { r = r + 16; } else { }
+                        z = !z;
+                        if (z) { r = r + 32; } else { }
+                        return r;
+                    }
+                    public static void main(String[] args) {
+                        Negation a;
+                        a = new Negation();
+                        io.println(a.foo(2));
+                    }
+                }
+                """;
+
+        var jasminResult = TestUtils.backend(code, Collections.emptyMap());
+
+        // negating with ixor only works on 0 and 1
+        assertFalse(jasminResult.getJasminCode(), jasminResult.getJasminCode().contains("iconst_m1"));
+        assertEquals("21", JasminAssembler.assemble(jasminResult).run().strip());
+    }
+}
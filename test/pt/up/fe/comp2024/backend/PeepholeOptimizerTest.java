@@ -0,0 +1,132 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class PeepholeOptimizerTest {
+
+    private static String lines(String code) {
+        return code.stripIndent().lines().map(line -> line.endsWith(":") ? line : "   " + line)
+                .reduce("", (result, line) -> result + line + "\n");
+    }
+
+    @Test
+    public void removesSingleUseStoresAndDoubleNegations() {
+        var optimizer = new PeepholeOptimizer();
+
+        var code = optimizer.optimize(lines("""
+                iload_1
+                iconst_1
+                ixor
+                iconst_1
+                ixor
+                istore 4
+                iload 4
+                ireturn
+                """));
+
+        assertEquals(lines("""
+                iload_1
+                ireturn
+                """), code);
+        assertEquals(1, (int) optimizer.getHits().get("double-negation"));
+        assertEquals(1, (int) optimizer.getHits().get("store-load-single-use"));
+    }
+
+    @Test
+    public void duplicatesValuesThatAreReadAgain() {
+        var code = new PeepholeOptimizer().optimize(lines("""
+                iload_1
+                istore_2
+                iload_2
+                iload_2
+                iadd
+                istore_3
+                iload_3
+                iload_3
+                iadd
+                invokestatic io/println(I)V
+                iload_2
+                ireturn
+                """));
+
+        // register 3 is not read anymore once its value is duplicated
+        assertEquals(lines("""
+                iload_1
+                dup
+                dup
+                istore_2
+                iadd
+                dup
+                iadd
+                invokestatic io/println(I)V
+                iload_2
+                ireturn
+                """), code);
+    }
+
+    @Test
+    public void simplifiesJumps() {
+        var optimizer = new PeepholeOptimizer();
+
+        var code = optimizer.optimize(lines("""
+                iload_1
+                ifne body
+                goto end
+                body:
+                iinc 1 -1
+                goto end
+                iconst_0
+                end:
+                return
+                """));
+
+        assertEquals(lines("""
+                iload_1
+                ifeq end
+                iinc 1 -1
+                end:
+                return
+                """), code);
+        assertEquals(1, (int) optimizer.getHits().get("branch-over-goto"));
+        assertEquals(1, (int) optimizer.getHits().get("goto-next"));
+        assertEquals(1, (int) optimizer.getHits().get("unreachable"));
+    }
+
+    @Test
+    public void runsOnlyWithOptimizations() {
+        var ollir = """
+                Loop {
+                    .construct Loop().V {
+                        invokespecial(this, "<init>").V;
+                    }
+
+                    .method public static main(args.array.String).V {
+                        i.i32 :=.i32 3.i32;
+                        cond:
+                        if (0.i32 <.bool i.i32) goto body;
+                        goto end;
+                        body:
+                        i.i32 :=.i32 i.i32 -.i32 1.i32;
+                        goto cond;
+                        end:
+                        ret.V;
+                    }
+                }
+                """;
+
+        var plain = new JasminGenerator(new OllirResult(ollir, Map.of()));
+        var optimized = new JasminGenerator(new OllirResult(ollir, Map.of("optimize", "true")));
+
+        assertTrue(plain.build().contains("goto end"));
+        assertFalse(optimized.build().contains("goto end"));
+        assertTrue(plain.getReports().isEmpty());
+        assertTrue(optimized.getReports().stream()
+                .anyMatch(report -> report.getMessage().equals("Peephole rule 'branch-over-goto': 1 hits")));
+        JasminAssembler.assemble("Loop", optimized.build()).run();
+    }
+}
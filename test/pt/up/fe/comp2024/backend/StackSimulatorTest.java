@@ -0,0 +1,95 @@
+package pt.up.fe.comp2024.backend;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StackSimulatorTest {
+
+    @Test
+    public void branchesDoNotAddUp() {
+        var code = """
+                iload_1
+                ifeq else
+                iconst_1
+                iconst_2
+                iadd
+                goto end
+                else:
+                iconst_3
+                end:
+                ireturn
+                """;
+
+        assertEquals(2, StackSimulator.maxStack(code));
+    }
+
+    @Test
+    public void invokeUsesDescriptor() {
+        var code = """
+                new Foo
+                dup
+                invokespecial Foo/<init>()V
+                iconst_1
+                iconst_2
+                iconst_3
+                invokevirtual Foo/sum(II)I
+                pop
+                pop
+                getstatic java/lang/System/out Ljava/io/PrintStream;
+                aload_0
+                iconst_0
+                aaload
+                invokevirtual java/io/PrintStream/println(Ljava/lang/String;)V
+                return
+                """;
+
+        assertEquals(4, StackSimulator.maxStack(code));
+    }
+
+    @Test
+    public void unreachableCodeIsIgnored() {
+        var code = """
+                iconst_1
+                ireturn
+                iconst_1
+                iconst_2
+                iconst_3
+                ireturn
+                """;
+
+        assertEquals(1, StackSimulator.maxStack(code));
+    }
+
+    @Test
+    public void loopsReachAFixedPoint() {
+        var code = """
+                iconst_0
+                istore_1
+                loop:
+                iload_1
+                bipush 10
+                if_icmpge end
+                iinc 1 1
+                goto loop
+                end:
+                return
+                """;
+
+        assertEquals(2, StackSimulator.maxStack(code));
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void inconsistentDepthFails() {
+        StackSimulator.maxStack("""
+                loop:
+                iconst_1
+                goto loop
+                """);
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void underflowFails() {
+        StackSimulator.maxStack("pop\nreturn\n");
+    }
+}
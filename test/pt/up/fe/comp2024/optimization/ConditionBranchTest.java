@@ -0,0 +1,57 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.backend.JasminAssembler;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ConditionBranchTest {
+
+    private static final String LOOP = """
+            import io;
+            class Branches {
+                public static void main(String[] args) {
+                    int i;
+                    int s;
+                    i = 0;
+                    s = 0;
+                    while (i < 20) {
+                        if (i < 5 && !(i == 2) || 15 < i) {
+                            s = s + i;
+                        } else {
+                            if (i < 10) {
+                                s = s + 1;
+                            } else {
+                                s = s - 1;
+                            }
+                        }
+                        i = i + 1;
+                    }
+                    io.println(s);
+                }
+            }
+            """;
+
+    @Test
+    public void branchesOnComparisonsDirectly() {
+        var ollir = TestUtils.optimize(LOOP, Collections.emptyMap()).getOllirCode();
+
+        assertFalse(ollir, ollir.contains(".bool :=.bool"));
+        assertTrue(ollir, ollir.contains("if (i.i32 <.bool 20.i32) goto whileLoop0;"));
+        // the && jumps past its right operand as soon as the left one is false
+        assertTrue(ollir, ollir.contains("if (i.i32 >=.bool 5.i32) goto cond_skip_0;"));
+        assertTrue(ollir, ollir.contains("if (i.i32 !=.bool 2.i32) goto if_then_0;"));
+    }
+
+    @Test
+    public void emitsCompareAndJump() {
+        var jasminCode = TestUtils.backend(LOOP, Collections.emptyMap()).getJasminCode();
+
+        assertTrue(jasminCode, jasminCode.matches("(?s).*if_icmplt\\s+whileLoop0.*"));
+        assertFalse(jasminCode, jasminCode.contains("ifne"));
+        assertEquals("78", JasminAssembler.assemble("Branches", jasminCode).run().strip());
+    }
+}
@@ -0,0 +1,116 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp2024.backend.JasminAssembler;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ConstantPropagationTest {
+
+    private static final Map<String, String> OPTIMIZE = Map.of("optimize", "true");
+
+    private static String optimize(String body) {
+        var code = """
+                class Constants {
+                    public int foo(int x) {
+                        int a;
+                        int b;
+                        int i;
+                %s
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """.formatted(body);
+
+        return TestUtils.optimize(code, OPTIMIZE).getOllirCode();
+    }
+
+    @Test
+    public void foldsChainedAssignments() {
+        var ollir = optimize("""
+                a = 3;
+                b = (a + 1) * 4;
+                return b - a;
+                """);
+
+        assertTrue(ollir, ollir.contains("b.i32 :=.i32 16.i32;"));
+        assertTrue(ollir, ollir.contains("ret.i32 13.i32;"));
+    }
+
+    @Test
+    public void keepsOnlyValuesBothBranchesAgreeOn() {
+        var ollir = optimize("""
+                a = 1;
+                b = 2;
+                if (x < 1) {
+                    a = 3;
+                    b = 2;
+                } else {
+                    a = 4;
+                }
+                return a + b;
+                """);
+
+        assertTrue(ollir, ollir.contains("a.i32 +.i32 2.i32"));
+    }
+
+    @Test
+    public void doesNotPropagateValuesChangedInLoop() {
+        var ollir = optimize("""
+                a = 5;
+                b = 0;
+                i = 0;
+                while (i < a) {
+                    b = b + a;
+                    i = i + 1;
+                }
+                return b;
+                """);
+
+        assertTrue(ollir, ollir.contains("i.i32 <.bool 5.i32"));
+        assertTrue(ollir, ollir.contains("b.i32 +.i32 5.i32"));
+        assertTrue(ollir, ollir.contains("ret.i32 b.i32;"));
+    }
+
+    @Test
+    public void doesNotFoldNegativeOrDivisionByZero() {
+        var ollir = optimize("""
+                a = 0;
+                b = 2 - 3;
+                return b / a;
+                """);
+
+        assertTrue(ollir, ollir.contains("2.i32 -.i32 3.i32"));
+        assertTrue(ollir, ollir.contains("/.i32 0.i32"));
+    }
+
+    @Test
+    public void loopsKeepTheirResult() {
+        var code = """
+                import ioPlus;
+                class Constants {
+                    public static void main(String[] args) {
+                        int a;
+                        int i;
+                        a = 2;
+                        i = 0;
+                        while (0 < a) {
+                            a = a - 1;
+                            i = i + a * 3;
+                        }
+                        ioPlus.printResult(i);
+                    }
+                }
+                """;
+
+        var original = TestUtils.backend(code, Collections.emptyMap());
+        var optimized = TestUtils.backend(code, OPTIMIZE);
+
+        assertEquals(JasminAssembler.assemble(original).run(), JasminAssembler.assemble(optimized).run());
+    }
+}
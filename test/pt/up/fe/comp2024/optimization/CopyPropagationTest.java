@@ -0,0 +1,70 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CopyPropagationTest {
+
+    private static Method optimize(String body) {
+        var classUnit = PassTestUtils.parse("public foo(x.i32, y.i32).i32", body).getOllirClass();
+        var passes = List.of(new CopyPropagation(), new DeadCodeElimination());
+        new OllirPassManager(passes, 10).run(classUnit);
+        return classUnit.getMethod(1);
+    }
+
+    @Test
+    public void computesIntoDestination() {
+        var method = optimize("""
+                tmp0.i32 :=.i32 x.i32 *.i32 y.i32;
+                a.i32 :=.i32 tmp0.i32;
+                tmp1.i32 :=.i32 a.i32 +.i32 x.i32;
+                b.i32 :=.i32 tmp1.i32;
+                ret.i32 b.i32;
+                """);
+
+        var code = PassTestUtils.getCode(method);
+        assertEquals(code, 3, method.getInstructions().size());
+        assertFalse(code, code.contains("tmp"));
+
+        // this, x, y, a and b
+        assertFalse(method.getVarTable().containsKey("tmp0"));
+        assertEquals(4, method.getVarTable().values().stream().mapToInt(d -> d.getVirtualReg()).max().getAsInt());
+    }
+
+    @Test
+    public void propagatesCopiesUntilRedefined() {
+        var method = optimize("""
+                a.i32 :=.i32 x.i32;
+                b.i32 :=.i32 a.i32 +.i32 1.i32;
+                x.i32 :=.i32 b.i32;
+                c.i32 :=.i32 a.i32 +.i32 b.i32;
+                ret.i32 c.i32;
+                """);
+
+        var code = PassTestUtils.getCode(method);
+        // 'a' is still read after 'x' changed, so its copy stays
+        assertTrue(code, code.contains("Operand: b.INT32 = Inst: BINARYOPER Operand: x.INT32 ADD"));
+        assertTrue(code, code.contains("Operand: a.INT32 ADD Operand: b.INT32"));
+        assertTrue(code, code.contains("Operand: a.INT32 = Inst: NOPER (SingleOp) Operand: x.INT32"));
+    }
+
+    @Test
+    public void doesNotPropagateAcrossJoins() {
+        var method = optimize("""
+                a.i32 :=.i32 x.i32;
+                if (x.i32 <.bool y.i32) goto other;
+                goto join;
+                other:
+                a.i32 :=.i32 y.i32;
+                join:
+                ret.i32 a.i32;
+                """);
+
+        var code = PassTestUtils.getCode(method);
+        assertTrue(code, code.contains("RETURN.INT32 Operand: a.INT32"));
+    }
+}
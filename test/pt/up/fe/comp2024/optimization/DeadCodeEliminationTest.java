@@ -0,0 +1,66 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+
+import static org.junit.Assert.*;
+
+public class DeadCodeEliminationTest {
+
+    private static Method optimize(String body) {
+        return PassTestUtils.optimize("public foo(x.i32).i32", body, new DeadCodeElimination());
+    }
+
+    @Test
+    public void removesDeadComputationsButKeepsCalls() {
+        var method = optimize("""
+                a.array.i32 :=.array.i32 new(array, x.i32).array.i32;
+                tmp0.i32 :=.i32 x.i32 +.i32 1.i32;
+                tmp1.i32 :=.i32 tmp0.i32 *.i32 2.i32;
+                tmp2.i32 :=.i32 arraylength(a.array.i32).i32;
+                tmp3.i32 :=.i32 invokestatic(io, "read").i32;
+                tmp4.i32 :=.i32 x.i32 /.i32 x.i32;
+                ret.i32 x.i32;
+                """);
+
+        // the array creation, the call, the division and the return
+        assertEquals(PassTestUtils.getCode(method), 4, method.getInstructions().size());
+        var code = PassTestUtils.getCode(method);
+        assertFalse(code, code.contains("tmp0"));
+        assertFalse(code, code.contains("tmp1"));
+        assertFalse(code, code.contains("tmp2"));
+    }
+
+    @Test
+    public void keepsStoresReadInLoop() {
+        var method = optimize("""
+                i.i32 :=.i32 0.i32;
+                s.i32 :=.i32 0.i32;
+                loop:
+                s.i32 :=.i32 s.i32 +.i32 i.i32;
+                dead.i32 :=.i32 s.i32 +.i32 1.i32;
+                i.i32 :=.i32 i.i32 +.i32 1.i32;
+                if (i.i32 <.bool x.i32) goto loop;
+                ret.i32 s.i32;
+                """);
+
+        assertEquals(PassTestUtils.getCode(method), 6, method.getInstructions().size());
+        assertFalse(PassTestUtils.getCode(method).contains("dead"));
+    }
+
+    @Test
+    public void removesUnreachableCodeAndMovesLabels() {
+        var method = optimize("""
+                goto end;
+                skipped:
+                invokestatic(io, "print", x.i32).V;
+                goto skipped;
+                end:
+                ret.i32 x.i32;
+                """);
+
+        assertEquals(PassTestUtils.getCode(method), 2, method.getInstructions().size());
+        assertSame(method.getInstructions().get(1), method.getLabels().get("end"));
+        assertSame(method.getInstructions().get(1), method.getLabels().get("skipped"));
+    }
+}
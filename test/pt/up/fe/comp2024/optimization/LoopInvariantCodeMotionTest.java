@@ -0,0 +1,98 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.Method;
+
+import static org.junit.Assert.*;
+
+public class LoopInvariantCodeMotionTest {
+
+    private static Method optimize(String body) {
+        return PassTestUtils.optimize("public foo(a.array.i32, x.i32).i32", body, new LoopInvariantCodeMotion());
+    }
+
+    private static int indexOf(Method method, String text) {
+        var instructions = method.getInstructions();
+        for (int i = 0; i < instructions.size(); i++) {
+            if (instructions.get(i).toString().contains(text)) {
+                return i;
+            }
+        }
+
+        fail("No instruction with '" + text + "'");
+        return -1;
+    }
+
+    private static int headerIndex(Method method) {
+        return method.getInstructions().indexOf(method.getLabels().get("cond"));
+    }
+
+    @Test
+    public void hoistsLengthAndFieldReads() {
+        var method = optimize("""
+                i.i32 :=.i32 0.i32;
+                s.i32 :=.i32 0.i32;
+                cond:
+                len.i32 :=.i32 arraylength(a.array.i32).i32;
+                c.bool :=.bool i.i32 <.bool len.i32;
+                if (c.bool) goto body;
+                goto end;
+                body:
+                f.i32 :=.i32 getfield(this, n.i32).i32;
+                k.i32 :=.i32 f.i32 *.i32 x.i32;
+                s.i32 :=.i32 s.i32 +.i32 k.i32;
+                i.i32 :=.i32 i.i32 +.i32 1.i32;
+                goto cond;
+                end:
+                ret.i32 s.i32;
+                """);
+
+        var header = headerIndex(method);
+        assertTrue(indexOf(method, "arraylength") < header);
+        assertTrue(indexOf(method, "GETFIELD") < header);
+        assertTrue(indexOf(method, "Operand: k.INT32 =") < header);
+        assertTrue(indexOf(method, "Operand: s.INT32 = Inst: BINARYOPER") > header);
+        assertTrue(indexOf(method, "Operand: c.BOOLEAN") >= header);
+    }
+
+    @Test
+    public void keepsFieldReadsWhenLoopCalls() {
+        var method = optimize("""
+                i.i32 :=.i32 0.i32;
+                cond:
+                if (i.i32 <.bool x.i32) goto body;
+                goto end;
+                body:
+                f.i32 :=.i32 getfield(this, n.i32).i32;
+                invokestatic(io, "print", f.i32).V;
+                i.i32 :=.i32 i.i32 +.i32 1.i32;
+                goto cond;
+                end:
+                ret.i32 i.i32;
+                """);
+
+        assertTrue(indexOf(method, "GETFIELD") > headerIndex(method));
+    }
+
+    @Test
+    public void keepsValuesNeededWhenLoopDoesNotRun() {
+        var method = optimize("""
+                i.i32 :=.i32 0.i32;
+                k.i32 :=.i32 0.i32;
+                cond:
+                if (i.i32 <.bool x.i32) goto body;
+                goto end;
+                body:
+                k.i32 :=.i32 x.i32 *.i32 2.i32;
+                len.i32 :=.i32 arraylength(a.array.i32).i32;
+                i.i32 :=.i32 i.i32 +.i32 len.i32;
+                goto cond;
+                end:
+                ret.i32 k.i32;
+                """);
+
+        // 'k' is read after the loop, and the length is not read when the loop does not run
+        assertTrue(indexOf(method, "Operand: k.INT32 = Inst: BINARYOPER") > headerIndex(method));
+        assertTrue(indexOf(method, "arraylength") > headerIndex(method));
+    }
+}
@@ -0,0 +1,127 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.AssembledClass;
+import pt.up.fe.comp2024.backend.JasminAssembler;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class LoopInversionTest {
+
+    private static final int ITERATIONS = 20_000_000;
+
+    private static final String COUNTING = """
+            import io;
+            class Counting {
+                public static void main(String[] args) {
+                    int i;
+                    int s;
+                    i = 0;
+                    s = 0;
+                    while (i < %d) {
+                        s = s + i;
+                        i = i + 1;
+                    }
+                    io.println(s);
+                }
+            }
+            """.formatted(ITERATIONS);
+
+    // the same loop tested at the top, as it was generated before
+    private static final String TOP_TESTED = """
+            import io;
+            Counting {
+                .construct Counting().V {
+                    invokespecial(this, "<init>").V;
+                }
+
+                .method public static main(args.array.String).V {
+                    i.i32 :=.i32 0.i32;
+                    s.i32 :=.i32 0.i32;
+                    whileCond0:
+                    if (i.i32 <.bool %d.i32) goto whileLoop0;
+                    goto whileEnd0;
+                    whileLoop0:
+                    s.i32 :=.i32 s.i32 +.i32 i.i32;
+                    i.i32 :=.i32 i.i32 +.i32 1.i32;
+                    goto whileCond0;
+                    whileEnd0:
+                    invokestatic(io, "println", s.i32).V;
+                    ret.V;
+                }
+            }
+            """.formatted(ITERATIONS);
+
+    /**
+     * @return the best time of a few runs, in milliseconds
+     */
+    private static long timeRuns(AssembledClass assembledClass, String expected) {
+        var best = Long.MAX_VALUE;
+
+        for (int run = 0; run < 5; run++) {
+            var start = System.nanoTime();
+            assertEquals(expected, assembledClass.run().strip());
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        return best / 1_000_000;
+    }
+
+    @Test
+    public void testsTheConditionAtTheBottom() {
+        var ollir = TestUtils.optimize(COUNTING, Collections.emptyMap()).getOllirCode();
+
+        // the guard and the branch back, with no goto
+        assertEquals(ollir, 2, ollir.split("\\) goto ", -1).length - 1);
+        assertTrue(ollir, ollir.contains("if (i.i32 >=.bool " + ITERATIONS + ".i32) goto whileEnd0;"));
+        assertTrue(ollir, ollir.contains("if (i.i32 <.bool " + ITERATIONS + ".i32) goto whileLoop0;"));
+        assertFalse(ollir, ollir.lines().anyMatch(line -> line.strip().startsWith("goto ")));
+    }
+
+    @Test
+    public void skipsLoopsWhoseConditionStartsFalse() {
+        var code = """
+                import io;
+                class Counting {
+                    public static void main(String[] args) {
+                        int i;
+                        i = 5;
+                        while (i < 3 || i == 7) {
+                            io.println(i);
+                            i = i + 2;
+                        }
+                        io.println(i);
+                    }
+                }
+                """;
+
+        assertEquals("5", JasminAssembler.assemble(TestUtils.backend(code, Collections.emptyMap())).run().strip());
+    }
+
+    /**
+     * Compares the running time of the inverted loop with the top-tested one. It only reports the timings, so it is not
+     * part of the test suite: remove the {@code @Ignore} and run
+     * {@code gradle test --tests '*LoopInversionTest.countingLoopBenchmark' -i} to see them.
+     */
+    @Ignore("benchmark, run manually")
+    @Test
+    public void countingLoopBenchmark() {
+        var inverted = JasminAssembler.assemble(TestUtils.backend(COUNTING, Collections.emptyMap()));
+        var topTested = JasminAssembler.assemble("Counting",
+                new JasminGenerator(new OllirResult(TOP_TESTED, Collections.emptyMap())).build());
+
+        var expected = String.valueOf((int) ((long) ITERATIONS * (ITERATIONS - 1) / 2));
+        var topTestedTime = timeRuns(topTested, expected);
+        var invertedTime = timeRuns(inverted, expected);
+
+        // timings depend on the JIT, so they are reported rather than compared
+        System.out.println("Counting loop of " + ITERATIONS + " iterations: top-tested " + topTestedTime
+                + " ms, inverted " + invertedTime + " ms");
+    }
+}
@@ -0,0 +1,93 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import org.specs.comp.ollir.ClassUnit;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OllirPassManagerTest {
+
+    private static ClassUnit getClassUnit() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleWhileStat.ollir");
+        return new OllirResult(code, Collections.emptyMap()).getOllirClass();
+    }
+
+    /**
+     * Reports a change the first given number of times it runs on each method.
+     */
+    private static class CountingPass implements OllirPass {
+
+        private final int changingRuns;
+        private int runs;
+
+        CountingPass(int changingRuns) {
+            this.changingRuns = changingRuns;
+            this.runs = 0;
+        }
+
+        @Override
+        public int optimize(Method method) {
+            runs++;
+
+            // edges from previous builds of the CFG must be gone
+            assertEquals(1, method.getBeginNode().getSuccessors().size());
+            for (var instruction : method.getInstructions()) {
+                assertTrue(instruction.getSuccessors().size() <= 2);
+            }
+
+            return runs <= changingRuns ? 1 : 0;
+        }
+    }
+
+    @Test
+    public void stopsAtFixpoint() {
+        var pass = new CountingPass(3);
+        var reports = new OllirPassManager(List.of(pass), 10).run(getClassUnit());
+
+        // two methods, the first one changes three times and needs another run to reach the fixpoint
+        assertEquals(5, pass.runs);
+        assertEquals(1, reports.size());
+        assertTrue(reports.get(0).getMessage(), reports.get(0).getMessage().startsWith("Pass 'CountingPass': 3 changes"));
+    }
+
+    @Test
+    public void stopsAtIterationLimit() {
+        var pass = new CountingPass(Integer.MAX_VALUE);
+        var reports = new OllirPassManager(List.of(pass), 4).run(getClassUnit());
+
+        assertEquals(8, pass.runs);
+        assertTrue(reports.stream().anyMatch(report -> report.getMessage().contains("still changed after 4 iterations")));
+        assertTrue(reports.stream().noneMatch(report -> report.getType() == ReportType.ERROR));
+    }
+
+    @Test
+    public void failingPassIsReported() {
+        OllirPass failing = method -> {
+            throw new RuntimeException("failed");
+        };
+        var reports = new OllirPassManager(List.of(failing), 10).run(getClassUnit());
+
+        assertEquals(1, reports.size());
+        assertEquals(ReportType.ERROR, reports.get(0).getType());
+    }
+
+    @Test
+    public void runsOnlyWhenOptimizing() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/cpf/4_jasmin/control_flow/SimpleWhileStat.ollir");
+
+        var ollirResult = new OllirResult(code, Collections.emptyMap());
+        new JmmOptimizationImpl().optimize(ollirResult);
+        assertTrue(ollirResult.getReports().isEmpty());
+
+        var optimized = new OllirResult(code, Collections.singletonMap("optimize", "true"));
+        new JmmOptimizationImpl().optimize(optimized);
+        assertTrue(optimized.getReports().stream().noneMatch(report -> report.getType() == ReportType.ERROR));
+    }
+}
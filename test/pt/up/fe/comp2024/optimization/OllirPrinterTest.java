@@ -0,0 +1,87 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.JmmCompiler;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class OllirPrinterTest {
+
+    private static final String OLLIR = """
+            import io;
+            Printed extends Object {
+            .field public count.i32;
+
+            .method public step(values.array.i32, flag.bool).i32 {
+            tmp0.i32 :=.i32 getfield(this, count.i32).i32;
+            tmp1.i32 :=.i32 values[tmp0.i32].i32;
+            if (tmp1.i32 >=.bool 10.i32) goto done;
+            tmp2.bool :=.bool !.bool flag.bool;
+            if (tmp2.bool) goto done;
+            tmp3.i32 :=.i32 arraylength(values.array.i32).i32;
+            putfield(this, count.i32, tmp3.i32).V;
+            done:
+            ret.i32 tmp1.i32;
+            }
+
+            .method public static main(args.array.String).V {
+            p.Printed :=.Printed new(Printed).Printed;
+            invokespecial(p.Printed, "<init>").V;
+            a.array.i32 :=.array.i32 new(array, 3.i32).array.i32;
+            a[0.i32].i32 :=.i32 4.i32;
+            r.i32 :=.i32 invokevirtual(p.Printed, "step", a.array.i32, 1.bool).i32;
+            invokestatic(io, "println", r.i32).V;
+            ret.V;
+            }
+
+            .construct Printed().V {
+            invokespecial(this, "<init>").V;
+            }
+            }
+            """;
+
+    @Test
+    public void printedCodeParsesBackToTheSameClass() {
+        var parsed = new OllirResult(OLLIR, Collections.emptyMap());
+        var printed = OllirPrinter.print(parsed.getOllirClass());
+        var reparsed = new OllirResult(printed, Collections.emptyMap());
+
+        assertEquals(printed, OllirPrinter.print(reparsed.getOllirClass()));
+        assertEquals(new JasminGenerator(parsed).build(), new JasminGenerator(reparsed).build());
+    }
+
+    @Test
+    public void optimizeChangesTheEmittedOllir() {
+        var source = new File(SpecsIo.getTempFolder("jmm-printer-test"), "Simplified.jmm");
+        SpecsIo.write(source, """
+                import io;
+                class Simplified {
+                    public int foo(int x) {
+                        int a;
+                        a = x * 1;
+                        return a;
+                    }
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        var compiler = new JmmCompiler();
+        var config = CompilerConfig.getDefault();
+        var unoptimized = compiler.compile(source, config).getOllirCode().orElseThrow();
+        config.put("optimize", "true");
+        var optimized = compiler.compile(source, config).getOllirCode().orElseThrow();
+
+        assertTrue(unoptimized, unoptimized.contains("*.i32 1.i32"));
+        // the OLLIR passes ran after the code was generated
+        assertFalse(optimized, optimized.contains("*.i32"));
+        new OllirResult(optimized, config);
+    }
+}
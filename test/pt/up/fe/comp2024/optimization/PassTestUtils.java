@@ -0,0 +1,79 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Builds the classes the tests of the OLLIR passes run on: a class with an int field 'n', its constructor and a
+ * single method under test.
+ */
+class PassTestUtils {
+
+    static final String CLASS_NAME = "Passes";
+
+    private static final String CODE = """
+            import io;
+            Passes {
+                .field public n.i32;
+
+                .construct Passes().V {
+                    invokespecial(this, "<init>").V;
+                }
+
+                .method %s {
+            %s
+                }
+            }
+            """;
+
+    private PassTestUtils() {
+    }
+
+    /**
+     * @param signature the modifiers, name, parameters and return type of the method, e.g. "public foo(x.i32).i32"
+     * @param body the instructions of the method
+     */
+    static OllirResult parse(String signature, String body) {
+        return parse(signature, body, Collections.emptyMap());
+    }
+
+    static OllirResult parse(String signature, String body, Map<String, String> config) {
+        return new OllirResult(CODE.formatted(signature, body), config);
+    }
+
+    /**
+     * @return the method under test, with its control flow graph built
+     */
+    static Method getMethod(OllirResult ollirResult) {
+        var method = ollirResult.getOllirClass().getMethod(1);
+        OptUtils.rebuildCFG(method);
+        return method;
+    }
+
+    /**
+     * Runs the pass once over the method under test.
+     */
+    static Method optimize(OllirResult ollirResult, OllirPass pass) {
+        var method = getMethod(ollirResult);
+        pass.optimize(method);
+        return method;
+    }
+
+    static Method optimize(String signature, String body, OllirPass pass) {
+        return optimize(parse(signature, body), pass);
+    }
+
+    /**
+     * @return the instructions of the method, one per line
+     */
+    static String getCode(Method method) {
+        var code = new StringBuilder();
+        for (var instruction : method.getInstructions()) {
+            code.append(instruction).append("\n");
+        }
+        return code.toString();
+    }
+}
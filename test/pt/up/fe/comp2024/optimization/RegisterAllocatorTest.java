@@ -0,0 +1,81 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.backend.JasminAssembler;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+public class RegisterAllocatorTest {
+
+    private static final String REG_ALLOC = SpecsIo.getResource("pt/up/fe/comp/cpf/5_optimizations/reg_alloc/regalloc.jmm");
+
+    // a, b and c are live at the same time inside the loop
+    private static final String FIBONACCI = """
+            import ioPlus;
+            class Fibonacci {
+                public static void main(String[] args) {
+                    int a;
+                    int b;
+                    int c;
+                    int i;
+                    int d;
+                    a = 1;
+                    b = 2;
+                    i = 0;
+                    while (i < 5) {
+                        c = a + b;
+                        a = b;
+                        b = c;
+                        i = i + 1;
+                    }
+                    d = a + b;
+                    ioPlus.printResult(a);
+                    ioPlus.printResult(b);
+                    ioPlus.printResult(d);
+                }
+            }
+            """;
+
+    private static int getLocals(String jasminMethod) {
+        var matcher = Pattern.compile("\\.limit\\s+locals\\s+(\\d+)").matcher(jasminMethod);
+        assertTrue(jasminMethod, matcher.find());
+        return Integer.parseInt(matcher.group(1));
+    }
+
+    @Test
+    public void usesMinimumWithZero() {
+        var jasminResult = TestUtils.backend(REG_ALLOC, Map.of("registerAllocation", "0"));
+
+        // 'this', 'arg' and a single register for a, b, c and d
+        assertEquals(3, getLocals(CpUtils.getJasminMethod(jasminResult, "soManyRegisters")));
+    }
+
+    @Test
+    public void tooFewRegistersNamesMinimum() {
+        var ollirResult = TestUtils.optimize(REG_ALLOC, Map.of("registerAllocation", "2"));
+
+        var error = ollirResult.getReports().stream()
+                .filter(report -> report.getType() == ReportType.ERROR)
+                .findFirst();
+        assertTrue(error.isPresent());
+        assertTrue(error.get().getMessage(), error.get().getMessage().contains("needs at least 3 registers"));
+    }
+
+    @Test
+    public void interferingVariablesKeepTheirValues() {
+        var original = TestUtils.backend(FIBONACCI, Collections.emptyMap());
+        var allocated = TestUtils.backend(FIBONACCI, Map.of("registerAllocation", "0"));
+
+        // a, b and i are live in the whole loop, only c and d, computed after it, can share a register
+        assertTrue(getLocals(allocated.getJasminCode()) < getLocals(original.getJasminCode()));
+        assertEquals(JasminAssembler.assemble(original).run(), JasminAssembler.assemble(allocated).run());
+    }
+}
@@ -0,0 +1,111 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.junit.Test;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.backend.JasminAssembler;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class StrengthReductionTest {
+
+    private static final String MAIN = "public static main(args.array.String).V";
+
+    private static OllirResult parse(String body) {
+        return PassTestUtils.parse(MAIN, body);
+    }
+
+    private static OllirResult parse(String body, Map<String, String> config) {
+        return PassTestUtils.parse(MAIN, body, config);
+    }
+
+    private static String run(OllirResult ollirResult) {
+        return run(new JasminGenerator(ollirResult).build());
+    }
+
+    private static String run(String jasminCode) {
+        return JasminAssembler.assemble(PassTestUtils.CLASS_NAME, jasminCode).run().strip();
+    }
+
+    @Test
+    public void simplifiesIdentitiesAndPowersOfTwo() {
+        var ollirResult = parse("""
+                x.i32 :=.i32 7.i32;
+                a.i32 :=.i32 x.i32 +.i32 0.i32;
+                b.i32 :=.i32 1.i32 *.i32 x.i32;
+                c.i32 :=.i32 x.i32 *.i32 0.i32;
+                d.i32 :=.i32 x.i32 -.i32 x.i32;
+                e.i32 :=.i32 x.i32 *.i32 8.i32;
+                f.i32 :=.i32 x.i32 /.i32 4.i32;
+                invokestatic(io, "println", a.i32).V;
+                invokestatic(io, "println", b.i32).V;
+                invokestatic(io, "println", c.i32).V;
+                invokestatic(io, "println", d.i32).V;
+                invokestatic(io, "println", e.i32).V;
+                invokestatic(io, "println", f.i32).V;
+                ret.V;
+                """);
+
+        var code = PassTestUtils.getCode(PassTestUtils.optimize(ollirResult, new AlgebraicSimplification()));
+
+        assertEquals(code, 2, code.split("BINARYOPER", -1).length - 1);
+        assertTrue(code, code.contains("Operand: x.INT32 SHL LiteralElement: 3.INT32"));
+        // a shift would round negative values down
+        assertTrue(code, code.contains("Operand: x.INT32 DIV LiteralElement: 4.INT32"));
+        assertEquals("7\n7\n0\n0\n56\n1", run(ollirResult).replace("\r", ""));
+    }
+
+    @Test
+    public void backendSimplifiesOnlyWhenOptimizing() {
+        var body = """
+                x.i32 :=.i32 5.i32;
+                y.i32 :=.i32 x.i32 *.i32 4.i32;
+                z.i32 :=.i32 y.i32 *.i32 1.i32;
+                invokestatic(io, "println", z.i32).V;
+                ret.V;
+                """;
+
+        var unoptimized = new JasminGenerator(parse(body)).build();
+        assertFalse(unoptimized, unoptimized.contains("ishl"));
+        assertEquals(unoptimized, 2, unoptimized.split("imul", -1).length - 1);
+
+        // without the OLLIR pass
+        var optimized = new JasminGenerator(parse(body, Map.of("optimize", "true"))).build();
+        assertTrue(optimized, optimized.contains("ishl"));
+        assertFalse(optimized, optimized.contains("imul"));
+
+        assertEquals("20", run(unoptimized));
+        assertEquals("20", run(optimized));
+    }
+
+    @Test
+    public void reducesInductionVariableMultiplications() {
+        var ollirResult = parse("""
+                i.i32 :=.i32 10.i32;
+                s.i32 :=.i32 0.i32;
+                cond:
+                if (0.i32 <.bool i.i32) goto body;
+                goto end;
+                body:
+                j.i32 :=.i32 i.i32 *.i32 3.i32;
+                s.i32 :=.i32 s.i32 +.i32 j.i32;
+                i.i32 :=.i32 i.i32 -.i32 2.i32;
+                goto cond;
+                end:
+                invokestatic(io, "println", s.i32).V;
+                ret.V;
+                """);
+
+        var method = PassTestUtils.optimize(ollirResult, new InductionVariableReduction());
+        var code = PassTestUtils.getCode(method);
+        var header = method.getInstructions().indexOf(method.getLabels().get("cond"));
+
+        // the only multiplication left runs once, before the loop
+        assertEquals(code, 1, code.split(" MUL ", -1).length - 1);
+        assertTrue(code, code.indexOf(" MUL ") < code.indexOf(method.getInstructions().get(header).toString()));
+        assertTrue(code, code.contains("SUB LiteralElement: 6.INT32"));
+        assertEquals("90", run(ollirResult));
+    }
+}
@@ -0,0 +1,75 @@
+package pt.up.fe.comp2024.symboltable;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class JmmSymbolTableTest {
+
+    private static final String CODE = """
+            import io;
+            import Other;
+            class Scopes {
+                int a;
+                boolean b;
+                Other c;
+                public int foo(int[] b, int io) {
+                    boolean a;
+                    a = true;
+                    return 0;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private static SymbolTable getTable() {
+        return TestUtils.analyse(CODE, Collections.emptyMap()).getSymbolTable();
+    }
+
+    @Test
+    public void localsHideParametersAndParametersHideFields() {
+        var table = getTable();
+
+        var local = JmmSymbolTable.resolve(table, "foo", "a").orElseThrow();
+        assertEquals(ResolvedSymbol.Scope.LOCAL, local.scope());
+        assertEquals("boolean", local.symbol().getType().getName());
+
+        var param = JmmSymbolTable.resolve(table, "foo", "b").orElseThrow();
+        assertEquals(ResolvedSymbol.Scope.PARAMETER, param.scope());
+        assertTrue(param.symbol().getType().isArray());
+
+        // a parameter also hides an import with the same name
+        assertEquals(ResolvedSymbol.Scope.PARAMETER, JmmSymbolTable.resolve(table, "foo", "io").orElseThrow().scope());
+
+        var field = JmmSymbolTable.resolve(table, "main", "a").orElseThrow();
+        assertTrue(field.isField());
+        assertEquals("int", field.symbol().getType().getName());
+    }
+
+    @Test
+    public void importsResolveToTheirClass() {
+        var table = getTable();
+
+        var imported = JmmSymbolTable.resolve(table, "main", "io").orElseThrow();
+        assertEquals(ResolvedSymbol.Scope.IMPORT, imported.scope());
+        assertEquals("io", imported.symbol().getType().getName());
+
+        assertTrue(JmmSymbolTable.isImported(table, "Other"));
+        assertFalse(JmmSymbolTable.isImported(table, "Scopes"));
+    }
+
+    @Test
+    public void unknownNamesAreNotResolved() {
+        var table = getTable();
+
+        assertTrue(JmmSymbolTable.resolve(table, "foo", "missing").isEmpty());
+        assertTrue(JmmSymbolTable.resolve(table, "unknownMethod", "missing").isEmpty());
+        assertEquals(ResolvedSymbol.Scope.FIELD,
+                JmmSymbolTable.resolve(table, "unknownMethod", "c").orElseThrow().scope());
+    }
+}